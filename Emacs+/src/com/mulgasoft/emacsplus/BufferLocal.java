@@ -9,8 +9,11 @@
  */
 package com.mulgasoft.emacsplus;
 
-import java.util.Hashtable;
-import java.util.Map;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.ui.IEditorPart;
@@ -18,21 +21,71 @@ import org.eclipse.ui.texteditor.ITextEditor;
 
 /**
  * set, get, kill, killAll, variables, hasVariable
- * 
+ *
+ * Buffer local variables are typed slots, defined once with {@link #define(String, Class)}.
+ * Editors are weakly referenced, so their variables are discarded once the editor is
+ * closed and collected; values should not (strongly) refer to their editor.
+ *
+ * Reads do not lock and may be done from any thread.
+ *
  * @author Mark Feber - initial API and implementation
  */
 public class BufferLocal {
-	
-	public static final String NARROW_REGION = "narrow"; 	//$NON_NLS_1$
-	
-	private static Map<ITextEditor,Map<String, Object>> bufferlocal = new Hashtable<ITextEditor,Map<String,Object>>();
+
+	/**
+	 * A buffer local variable
+	 *
+	 * @param <T> the type of the value
+	 */
+	public static final class Variable<T> {
+		private final String name;
+		private final Class<T> type;
+		private final int slot;
+
+		private Variable(String name, Class<T> type, int slot) {
+			this.name = name;
+			this.type = type;
+			this.slot = slot;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Class<T> getType() {
+			return type;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private static final AtomicInteger slotCount = new AtomicInteger();
+
+	/**
+	 * Define a buffer local variable
+	 *
+	 * @param name
+	 * @param type
+	 * @return the variable
+	 */
+	public static <T> Variable<T> define(String name, Class<T> type) {
+		return new Variable<T>(name, type, slotCount.getAndIncrement());
+	}
+
+	public static final Variable<IRegion> NARROW_REGION = define("narrow", IRegion.class); 	//$NON-NLS-1$
+
+	private static final ConcurrentHashMap<Object, Slots> bufferlocal = new ConcurrentHashMap<Object, Slots>();
+	private static final ReferenceQueue<IEditorPart> collected = new ReferenceQueue<IEditorPart>();
 	private static BufferLocal instance;
-	
+
 	/**
-	 * Singleton 
+	 * Singleton
 	 */
 	private BufferLocal() {};
-	
+
 	public static BufferLocal getInstance() {
 		if (instance == null) {
 			instance = new BufferLocal();
@@ -40,89 +93,178 @@ public class BufferLocal {
 		return instance;
 	}
 
-	public void set(ITextEditor editor, String variable, Object value) {
+	public <T> void set(ITextEditor editor, Variable<T> variable, T value) {
 		if (editor != null && variable != null && value != null) {
-			Map<String, Object> table = bufferlocal.get(editor);
-			if (table == null) {
-				table = new Hashtable<String, Object>();
-				bufferlocal.put(editor, table);
+			purge();
+			Slots slots = bufferlocal.get(new LookupKey(editor));
+			if (slots == null) {
+				Slots newSlots = new Slots();
+				slots = bufferlocal.putIfAbsent(new EditorKey(editor, collected), newSlots);
+				if (slots == null) {
+					slots = newSlots;
+				}
 			}
-			table.put(variable, value);
+			slots.set(variable.slot, variable.type.cast(value));
 		}
 	}
-	
-	public Object get(ITextEditor editor, String variable) {
-		Object result = null;
+
+	public <T> T get(ITextEditor editor, Variable<T> variable) {
+		T result = null;
 		if (editor != null && variable != null) {
-			Map<String, Object> table = bufferlocal.get(editor);
-			if (table != null) {
-				result = table.get(variable);
+			Slots slots = bufferlocal.get(new LookupKey(editor));
+			if (slots != null) {
+				result = variable.type.cast(slots.get(variable.slot));
 			}
-		}		
+		}
 		return result;
 	}
-	
-	public boolean hasVariable(IEditorPart editor, String variable) {
+
+	public boolean hasVariable(IEditorPart editor, Variable<?> variable) {
 		boolean result = false;
 		if (editor != null && variable != null) {
-			Map<String, Object> table = bufferlocal.get(editor);
-			if (table != null) {
-				result = table.containsKey(variable);
+			Slots slots = bufferlocal.get(new LookupKey(editor));
+			if (slots != null) {
+				result = slots.get(variable.slot) != null;
 			}
-		}		
-		
+		}
 		return result;
 	}
 
-	public boolean kill(ITextEditor editor, String variable) {
+	public boolean kill(ITextEditor editor, Variable<?> variable) {
 		boolean result = true;
 		if (editor != null && variable != null) {
-			Map<String, Object> table = bufferlocal.get(editor);
-			if (table != null) {
-				result = table.containsKey(variable);
-				if (result) {
-					table.remove(variable);
-				}
+			Slots slots = bufferlocal.get(new LookupKey(editor));
+			if (slots != null) {
+				result = slots.set(variable.slot, null) != null;
 			}
-		}		
-		
+		}
 		return result;
 	}
-	
+
 	public boolean killAll(ITextEditor editor) {
 		boolean result = true;
-		
 		if (editor != null) {
-			Map<String, Object> table = bufferlocal.get(editor);
-			if (table != null) {
-				result = true;
-				bufferlocal.remove(editor);
-			}
-		}		
+			bufferlocal.remove(new LookupKey(editor));
+		}
 		return result;
 	}
-	
+
+	/**
+	 * Remove the entries of collected editors
+	 */
+	private void purge() {
+		Reference<? extends IEditorPart> ref;
+		while ((ref = collected.poll()) != null) {
+			bufferlocal.remove(ref);
+		}
+	}
+
+	/**
+	 * The values of an editor's variables, indexed by slot.
+	 * Reads are of the (volatile) array; writes copy the array only when it must grow, 
+	 * and otherwise store in place and republish the array, so readers see the new value.
+	 */
+	private static class Slots {
+		private volatile Object[] values = new Object[Math.max(slotCount.get(), 4)];
+
+		Object get(int slot) {
+			Object[] v = values;
+			return (slot < v.length ? v[slot] : null);
+		}
+
+		synchronized Object set(int slot, Object value) {
+			Object[] v = values;
+			Object result = null;
+			if (slot >= v.length) {
+				if (value == null) {
+					return null;
+				}
+				Object[] nv = new Object[Math.max(slot + 1, v.length * 2)];
+				System.arraycopy(v, 0, nv, 0, v.length);
+				v = nv;
+			} else {
+				result = v[slot];
+			}
+			v[slot] = value;
+			// the volatile write publishes the store (and any grown array) to readers
+			values = v;
+			return result;
+		}
+	}
+
+	/**
+	 * Weak editor key, with identity equality
+	 */
+	private static class EditorKey extends WeakReference<IEditorPart> {
+		private final int hash;
+
+		EditorKey(IEditorPart editor, ReferenceQueue<IEditorPart> queue) {
+			super(editor, queue);
+			hash = System.identityHashCode(editor);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			Object editor = get();
+			if (obj instanceof EditorKey) {
+				return editor != null && editor == ((EditorKey)obj).get();
+			} else if (obj instanceof LookupKey) {
+				return editor != null && editor == ((LookupKey)obj).editor;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Strong key used only for lookup
+	 */
+	private static class LookupKey {
+		private final IEditorPart editor;
+
+		LookupKey(IEditorPart editor) {
+			this.editor = editor;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(editor);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return (obj instanceof EditorKey ? obj.equals(this) : (obj instanceof LookupKey && ((LookupKey)obj).editor == editor));
+		}
+	}
+
 	/************ For testing ****************/
-	
+
 	public void handleActivate(IEditorPart epart) {
 		if (epart instanceof ITextEditor) {
 			handleNarrowActivate((ITextEditor)epart);
 		}
 	}
-	
+
 	public void handleDeactivate(IEditorPart epart) {
 		if (hasVariable(epart, NARROW_REGION)) {
 			ITextEditor editor = (ITextEditor)epart;
-			IRegion region = (IRegion)get(editor, NARROW_REGION);				
+			IRegion region = get(editor, NARROW_REGION);
 			IRegion cregion = editor.getHighlightRange();
 			if (!region.equals(cregion)) {
 				set(editor,NARROW_REGION,cregion);
 			}
 		}
 	}
-	
+
 	private void handleNarrowActivate(ITextEditor editor) {
-		IRegion region = (IRegion)get(editor, NARROW_REGION);	
+		IRegion region = get(editor, NARROW_REGION);
 		if (region != null) {
 			IRegion cregion = editor.getHighlightRange();
 			if (!region.equals(cregion)) {
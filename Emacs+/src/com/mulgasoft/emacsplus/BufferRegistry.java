@@ -0,0 +1,318 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import org.eclipse.ui.IEditorReference;
+import org.eclipse.ui.IPartListener2;
+import org.eclipse.ui.IPropertyListener;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchPartConstants;
+import org.eclipse.ui.IWorkbenchPartReference;
+
+/**
+ * A live registry of the editors in a workbench page, for switch-to-buffer and friends
+ * 
+ * The registry is seeded once from the page's sorted editors, then maintained incrementally 
+ * from part and property (title or input) events. It keeps the editors in most recently used order, with precomputed 
+ * unique display names and a sorted completion index of those names.
+ * 
+ * @author mfeber
+ */
+public class BufferRegistry implements IPartListener2, IPropertyListener {
+
+	private static Map<IWorkbenchPage, BufferRegistry> registries = new WeakHashMap<IWorkbenchPage, BufferRegistry>();
+
+	/**
+	 * Get the registry for the page, creating and registering it on first use
+	 * 
+	 * @param page
+	 * @return the page's registry, or null if no page
+	 */
+	public static BufferRegistry getRegistry(IWorkbenchPage page) {
+		BufferRegistry result = null;
+		if (page != null) {
+			result = registries.get(page);
+			if (result == null) {
+				result = new BufferRegistry();
+				result.seed(EmacsPlusUtils.getSortedEditors(page));
+				page.addPartListener(result);
+				registries.put(page, result);
+			}
+		}
+		return result;
+	}
+
+	/** The editors in most recently used order */
+	private LinkedList<BufferRef> mru = new LinkedList<BufferRef>();
+	/** The editors by unique display name */
+	private TreeMap<String, BufferRef> index = new TreeMap<String, BufferRef>();
+	/** The editors that share a base name */
+	private Map<String, List<BufferRef>> baseNames = new HashMap<String, List<BufferRef>>();
+	
+	private BufferRegistry() {}
+
+	private void seed(IEditorReference[] refs) {
+		if (refs != null) {
+			for (IEditorReference ref : refs) {
+				mru.addLast(add(ref));
+			}
+		}
+	}
+
+	/**
+	 * @return the editors in most recently used order
+	 */
+	public List<BufferRef> getBuffers() {
+		return new ArrayList<BufferRef>(mru);
+	}
+
+	/**
+	 * @return the number of editors in the page
+	 */
+	public int size() {
+		return mru.size();
+	}
+
+	/**
+	 * @return the editors keyed by unique display name
+	 */
+	public SortedMap<String, BufferRef> getIndex() {
+		return index;
+	}
+
+	private BufferRef find(IWorkbenchPartReference partRef) {
+		for (BufferRef buf : mru) {
+			if (buf.ref == partRef) {
+				return buf;
+			}
+		}
+		return null;
+	}
+
+	private BufferRef findSource(Object source) {
+		for (BufferRef buf : mru) {
+			if (buf.ref == source || buf.ref.getPart(false) == source) {
+				return buf;
+			}
+		}
+		return null;
+	}
+
+	private BufferRef add(IEditorReference ref) {
+		BufferRef buf = new BufferRef(ref);
+		ref.addPropertyListener(this);
+		addName(buf);
+		return buf;
+	}
+
+	private void rename(BufferRef buf) {
+		removeName(buf);
+		buf.reset();
+		addName(buf);
+	}
+
+	private void addName(BufferRef buf) {
+		List<BufferRef> group = baseNames.get(buf.baseName);
+		if (group == null) {
+			group = new ArrayList<BufferRef>(1);
+			baseNames.put(buf.baseName, group);
+		}
+		group.add(buf);
+		updateGroup(group);
+	}
+
+	private void removeName(BufferRef buf) {
+		List<BufferRef> group = baseNames.get(buf.baseName);
+		if (group != null) {
+			group.remove(buf);
+			// another buffer may already have been given this name
+			index.remove(buf.name, buf);
+			if (group.isEmpty()) {
+				baseNames.remove(buf.baseName);
+			} else {
+				updateGroup(group);
+			}
+		}
+	}
+
+	/**
+	 * When there are multiple buffers with the same name, disambiguate 
+	 * all of them by adding the title tool tip to the name
+	 * 
+	 * @param group - the buffers that share a base name
+	 */
+	private void updateGroup(List<BufferRef> group) {
+		boolean collides = group.size() > 1;
+		// remove all the old names first, so a name passed within the group is not lost
+		for (BufferRef buf : group) {
+			index.remove(buf.name, buf);
+		}
+		for (BufferRef buf : group) {
+			buf.name = (collides ? buf.getUniqueName() : buf.baseName);
+			index.put(buf.name, buf);
+		}
+	}
+
+	private void remove(BufferRef buf) {
+		buf.ref.removePropertyListener(this);
+		mru.remove(buf);
+		removeName(buf);
+	}
+
+	/**
+	 * @see org.eclipse.ui.IPartListener2#partActivated(org.eclipse.ui.IWorkbenchPartReference)
+	 */
+	public void partActivated(IWorkbenchPartReference partRef) {
+		if (partRef instanceof IEditorReference) {
+			BufferRef buf = find(partRef);
+			if (buf == null) {
+				buf = add((IEditorReference)partRef);
+			} else {
+				mru.remove(buf);
+			}
+			mru.addFirst(buf);
+		}
+	}
+
+	/**
+	 * @see org.eclipse.ui.IPartListener2#partOpened(org.eclipse.ui.IWorkbenchPartReference)
+	 */
+	public void partOpened(IWorkbenchPartReference partRef) {
+		if (partRef instanceof IEditorReference && find(partRef) == null) {
+			mru.addLast(add((IEditorReference)partRef));
+		}
+	}
+
+	/**
+	 * @see org.eclipse.ui.IPartListener2#partClosed(org.eclipse.ui.IWorkbenchPartReference)
+	 */
+	public void partClosed(IWorkbenchPartReference partRef) {
+		if (partRef instanceof IEditorReference) {
+			BufferRef buf = find(partRef);
+			if (buf != null) {
+				remove(buf);
+			}
+		}
+	}
+
+	/**
+	 * The name (and tool tip) may change with the input
+	 * 
+	 * @see org.eclipse.ui.IPartListener2#partInputChanged(org.eclipse.ui.IWorkbenchPartReference)
+	 */
+	public void partInputChanged(IWorkbenchPartReference partRef) {
+		if (partRef instanceof IEditorReference) {
+			BufferRef buf = find(partRef);
+			if (buf != null) {
+				rename(buf);
+			}
+		}
+	}
+
+	/**
+	 * Editors may change their title (e.g. on save as) or input without a part input event
+	 * 
+	 * @see org.eclipse.ui.IPropertyListener#propertyChanged(java.lang.Object, int)
+	 */
+	public void propertyChanged(Object source, int propId) {
+		if (propId == IWorkbenchPartConstants.PROP_TITLE || propId == IWorkbenchPartConstants.PROP_INPUT) {
+			BufferRef buf = findSource(source);
+			if (buf != null) {
+				rename(buf);
+			}
+		}
+	}
+
+	public void partBroughtToTop(IWorkbenchPartReference partRef) {}
+
+	public void partDeactivated(IWorkbenchPartReference partRef) {}
+
+	public void partHidden(IWorkbenchPartReference partRef) {}
+
+	public void partVisible(IWorkbenchPartReference partRef) {}
+
+	/**
+	 * An editor reference with its cached names 
+	 */
+	public static class BufferRef {
+
+		private final IEditorReference ref;
+		private String baseName;
+		private String name;
+		private String toolTip = null;
+
+		BufferRef(IEditorReference ref) {
+			this.ref = ref;
+			reset();
+		}
+
+		private void reset() {
+			baseName = ref.getName().trim();
+			name = baseName;
+			toolTip = null;
+		}
+
+		/**
+		 * @return the unique display name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		public IEditorReference getRef() {
+			return ref;
+		}
+
+		/**
+		 * @return the (cached) title tool tip of the editor
+		 */
+		public String getToolTip() {
+			if (toolTip == null) {
+				toolTip = ref.getTitleToolTip();
+			}
+			return toolTip;
+		}
+
+		/**
+		 * Disambiguate the name by adding the title tool tip
+		 * 
+		 * @return a disambiguated name
+		 */
+		private String getUniqueName() {
+			String result = baseName;
+			String tip = getToolTip();
+			if (tip != null) {
+				String subPart;
+				int sublen = tip.length() - (result.length() + 1);
+				// some plugins construct inconsiderate (empty) names
+				if (sublen < 0) {
+					subPart = ref.getTitle();
+				} else {
+					// remove the buffer name part of the tip
+					subPart = tip.substring(0, sublen);
+				}
+				result = result + '(' + subPart + ')';
+			}
+			return result;
+		}
+
+		public String toString() {
+			return getName();
+		}
+	}
+}
@@ -26,6 +26,8 @@ import org.eclipse.ui.contexts.IContextService;
 import org.eclipse.ui.internal.keys.BindingService;
 import org.eclipse.ui.keys.IBindingService;
 
+import com.mulgasoft.emacsplus.execute.CommandBus;
+
 /**
  * Determine which plugin specific bindings should be added once Emacs+ has started.
  * Currently: java, javascript, pde, c++
@@ -87,7 +89,7 @@ public class DynamicInitializer {
 						Command cmd = ics.getCommand(mb.getCommandId());
 						if (mb.getEnhancer() != null) {
 							// enhance the pre-defined command with some Emacs+ behavior
-							cmd.addExecutionListener(mb.getEnhancer());
+							CommandBus.getInstance().subscribe(mb.getEnhancer(), mb.getCommandId());
 						}
 						Binding binding = new KeyBinding(mb.getTrigger(), new ParameterizedCommand(cmd, null),
 								mb.getSchemeId(), mb.getContextId(), null, null, null, Binding.SYSTEM);  // Binding.USER
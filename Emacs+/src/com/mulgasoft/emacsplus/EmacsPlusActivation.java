@@ -56,6 +56,7 @@ import org.eclipse.ui.texteditor.ITextEditor;
 import org.eclipse.ui.texteditor.TextEditorAction;
 
 import com.mulgasoft.emacsplus.KillRingListeners.EmacsActionDelegate;
+import com.mulgasoft.emacsplus.execute.CommandBus;
 import com.mulgasoft.emacsplus.execute.KbdMacroSupport;
 import com.mulgasoft.emacsplus.execute.RepeatCommandSupport;
 import com.mulgasoft.emacsplus.preferences.EmacsPlusPreferenceConstants;
@@ -134,7 +135,11 @@ public enum EmacsPlusActivation implements IPartListener2 {
 	}
 
 	private void activateRepeatListener(IWorkbench bench) {
-		((ICommandService)bench.getService(ICommandService.class)).addExecutionListener(RepeatCommandSupport.getInstance());
+		// the command bus is the only Emacs+ listener on the command service; the repeat support
+		// subscribes first so it sees each command before any other Emacs+ state changes
+		CommandBus bus = CommandBus.getInstance();
+		bus.subscribe(RepeatCommandSupport.getInstance(), CommandBus.Category.ALL);
+		bus.register((ICommandService)bench.getService(ICommandService.class));
 	}
 	
 	/**
@@ -288,6 +293,8 @@ public enum EmacsPlusActivation implements IPartListener2 {
 						}
 					}
 					removeActionListeners(editor);
+					KillRing.getInstance().untrackSelection(editor);
+					LargeFileMode.getInstance().close((ITextEditor)editor);
 				}
 			} catch (Exception e) {
 				e.printStackTrace();
@@ -389,6 +396,7 @@ public enum EmacsPlusActivation implements IPartListener2 {
 		if (epart != null) {
 			activatedPart = epart;
 			addListeners(epart);
+			KillRing.getInstance().trackSelection(getActiveEditor(epart));
 			MarkUtils.addActivationListeners(getActiveEditor(epart));
 			Runnable check = new Runnable() {
 				public void run() {
@@ -414,6 +422,7 @@ public enum EmacsPlusActivation implements IPartListener2 {
 		if (editor != null) {
 			KbdMacroSupport.getInstance().continueKbdMacro(editor);
 			BufferLocal.getInstance().handleActivate(editor);
+			LargeFileMode.getInstance().update(editor);
 			checkIMEListener(editor);			
 			// check here as key bindings are not set up until part is activated,
 			// and we need the InstallState set up as well (addListeners)
@@ -534,51 +543,24 @@ public enum EmacsPlusActivation implements IPartListener2 {
 		// install execution listeners once per editor type
 		String eclass = editor.getClass().getName(); 
 		if ((editors.get(eclass) == null)) {
-			ICommandService ics = (ICommandService) editor.getSite().getService(ICommandService.class);
-			if (ics != null) { 
-				Command com = null;
-				// remember listener install state
-				editors.put(eclass, new InstallState());
-				if ((com = ics.getCommand(IEmacsPlusCommandDefinitionIds.COPY_QUALIFIED_NAME)) != null) {
-					com.addExecutionListener(KillRingListeners.getExecListener(false));
-				}
-				if ((com = ics.getCommand(IEmacsPlusCommandDefinitionIds.KILL_FORWARD_SEXP)) != null) {
-					com.addExecutionListener(KillRingListeners.getExecListener(false));
-				}
-				if ((com = ics.getCommand(IEmacsPlusCommandDefinitionIds.KILL_BACKWARD_SEXP)) != null) {
-					com.addExecutionListener(KillRingListeners.getExecListener(true));
-				}
-				if ((com = ics.getCommand(IEmacsPlusCommandDefinitionIds.EMP_CUT)) != null) {
-					com.addExecutionListener(KillRingListeners.getExecListener(false));
-				}
-				if ((com = ics.getCommand(IEmacsPlusCommandDefinitionIds.EMP_COPY)) != null) {
-					com.addExecutionListener(KillRingListeners.getCopyExecListener(false));
-				}
-				if ((com = ics.getCommand(IEmacsPlusCommandDefinitionIds.CUT_LINE)) != null) {
-					com.addExecutionListener(KillRingListeners.getExecListener(false));
-				}
-				if ((com = ics.getCommand(IEmacsPlusCommandDefinitionIds.CUT_LINE_TO_BEGINNING)) != null) {
-					com.addExecutionListener(KillRingListeners.getExecListener(true));
-				}
-				if ((com = ics.getCommand(IEmacsPlusCommandDefinitionIds.CUT_LINE_TO_END)) != null) {
-					com.addExecutionListener(KillRingListeners.getExecListener(false));
-				}
-				if ((com = ics.getCommand(IEmacsPlusCommandDefinitionIds.DELETE_LINE)) != null) {
-					com.addExecutionListener(KillRingListeners.getExecListener(false));
-				}
-				if ((com = ics.getCommand(IEmacsPlusCommandDefinitionIds.DELETE_LINE_TO_BEGINNING)) != null) {
-					com.addExecutionListener(KillRingListeners.getExecListener(true));
-				}
-				if ((com = ics.getCommand(IEmacsPlusCommandDefinitionIds.DELETE_LINE_TO_END)) != null) {
-					com.addExecutionListener(KillRingListeners.getExecListener(false));
-				}
-				if ((com = ics.getCommand(IEmacsPlusCommandDefinitionIds.DELETE_NEXT_WORD)) != null) {
-					com.addExecutionListener(KillRingListeners.getExecListener(false));
-				} 
-				if ((com = ics.getCommand(IEmacsPlusCommandDefinitionIds.DELETE_PREVIOUS_WORD)) != null) {
-					com.addExecutionListener(KillRingListeners.getExecListener(true));
-				}
-			}
+			// remember listener install state
+			editors.put(eclass, new InstallState());
+			CommandBus bus = CommandBus.getInstance();
+			bus.subscribe(KillRingListeners.getExecListener(false),
+					IEmacsPlusCommandDefinitionIds.COPY_QUALIFIED_NAME,
+					IEmacsPlusCommandDefinitionIds.KILL_FORWARD_SEXP,
+					IEmacsPlusCommandDefinitionIds.EMP_CUT,
+					IEmacsPlusCommandDefinitionIds.CUT_LINE,
+					IEmacsPlusCommandDefinitionIds.CUT_LINE_TO_END,
+					IEmacsPlusCommandDefinitionIds.DELETE_LINE,
+					IEmacsPlusCommandDefinitionIds.DELETE_LINE_TO_END,
+					IEmacsPlusCommandDefinitionIds.DELETE_NEXT_WORD);
+			bus.subscribe(KillRingListeners.getExecListener(true),
+					IEmacsPlusCommandDefinitionIds.KILL_BACKWARD_SEXP,
+					IEmacsPlusCommandDefinitionIds.CUT_LINE_TO_BEGINNING,
+					IEmacsPlusCommandDefinitionIds.DELETE_LINE_TO_BEGINNING,
+					IEmacsPlusCommandDefinitionIds.DELETE_PREVIOUS_WORD);
+			bus.subscribe(KillRingListeners.getCopyExecListener(false), IEmacsPlusCommandDefinitionIds.EMP_COPY);
 		}
 	}
 
@@ -21,6 +21,8 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleEvent;
 import org.osgi.framework.BundleListener;
 
+import com.mulgasoft.emacsplus.e4.commands.WindowTopology;
+import com.mulgasoft.emacsplus.execute.CommandBus;
 import com.mulgasoft.emacsplus.execute.KbdMacroSupport;
 
 /**
@@ -107,6 +109,9 @@ public class EmacsPlusActivator extends AbstractUIPlugin {
 	 */
 	@Override
 	public void stop(BundleContext context) throws Exception {
+		TecoRegister.shutdown();
+		WindowTopology.shutdown();
+		CommandBus.getInstance().unregister();
 		super.stop(context);
 	}
 
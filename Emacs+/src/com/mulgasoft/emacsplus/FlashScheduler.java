@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+
+/**
+ * Drive a visual bell from Display.timerExec so the UI thread never sleeps.
+ * 
+ * Beeps that arrive while a flash is in progress are coalesced into the current flash, 
+ * and the next key press cancels the flash and restores the flashed item.
+ * 
+ * @author mfeber
+ */
+public class FlashScheduler {
+
+	private static FlashScheduler instance = null;
+	private FlashScheduler() {}
+
+	/**
+	 * Singleton pattern
+	 * 
+	 * @return the cached instance
+	 */
+	public static FlashScheduler getInstance() {
+		if (instance == null) {
+			instance = new FlashScheduler();
+		}
+		return instance;
+	}
+
+	private Display display = null;
+	private Flasher flasher = null;
+	private int remaining = 0;
+	private int waitTime = 0;
+	private boolean flashOn = false;
+
+	// single instance, so timerExec(-1, stepper) can cancel a pending step
+	private final Runnable stepper = () -> step();
+
+	// the next key press cancels the flash
+	private final Listener keyCanceler = new Listener() {
+		public void handleEvent(Event event) {
+			cancel();
+		}
+	};
+
+	/**
+	 * @return true if a flash sequence is in progress
+	 */
+	public boolean isFlashing() {
+		return flasher != null;
+	}
+
+	/**
+	 * Start flashing count times, or coalesce into the flash already in progress
+	 * 
+	 * @param display the UI display
+	 * @param flash the flasher to drive
+	 * @param count the number of on/off cycles
+	 * @param wait the time in ms for each half cycle
+	 */
+	public void schedule(Display display, Flasher flash, int count, int wait) {
+		if (display == null || display.isDisposed() || count <= 0 || isFlashing()) {
+			return;
+		}
+		this.display = display;
+		this.flasher = flash;
+		this.remaining = count;
+		this.waitTime = wait;
+		this.flashOn = false;
+		display.addFilter(SWT.KeyDown, keyCanceler);
+		flash.flashBegin();
+		display.timerExec(0, stepper);
+	}
+
+	/**
+	 * Stop any flash in progress and restore the flashed item
+	 */
+	public void cancel() {
+		if (isFlashing()) {
+			if (!display.isDisposed()) {
+				display.timerExec(-1, stepper);
+			}
+			if (flashOn) {
+				flasher.flashOff(remaining);
+			}
+			finish();
+		}
+	}
+
+	private void step() {
+		if (!isFlashing()) {
+			return;
+		}
+		if (flashOn) {
+			flasher.flashOff(remaining);
+			flashOn = false;
+			if (--remaining <= 0) {
+				finish();
+				return;
+			}
+		} else {
+			flasher.flashOn(remaining);
+			flashOn = true;
+		}
+		display.timerExec(waitTime, stepper);
+	}
+
+	private void finish() {
+		Flasher flash = flasher;
+		flasher = null;
+		flashOn = false;
+		remaining = 0;
+		if (!display.isDisposed()) {
+			display.removeFilter(SWT.KeyDown, keyCanceler);
+		}
+		flash.flashEnd();
+	}
+}
@@ -20,6 +20,30 @@ import org.eclipse.swt.widgets.Display;
 public interface Flasher {
 	
 	public void flash(Display display);
+
+	/**
+	 * Called on the UI thread once, before the first flashOn of a sequence
+	 */
+	default void flashBegin() {}
+
+	/**
+	 * Show the flash
+	 * 
+	 * @param count the number of cycles remaining
+	 */
+	void flashOn(int count);
+
+	/**
+	 * Restore the flashed item
+	 * 
+	 * @param count the number of cycles remaining
+	 */
+	void flashOff(int count);
+
+	/**
+	 * Called on the UI thread once, after the sequence completes or is cancelled
+	 */
+	default void flashEnd() {}
 	
 	static Color invertColor(Color c) {
 		RGB rgb = c.getRGB();
@@ -17,23 +17,32 @@ import static com.mulgasoft.emacsplus.preferences.PrefVars.DELETE_WORD_TO_CLIPBO
 import static com.mulgasoft.emacsplus.preferences.PrefVars.KILL_RING_MAX;
 import static com.mulgasoft.emacsplus.preferences.PrefVars.REPLACE_TEXT_TO_KILLRING;
 
+import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.Map;
 
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.ITextSelection;
 import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.ISelectionChangedListener;
+import org.eclipse.jface.viewers.ISelectionProvider;
+import org.eclipse.jface.viewers.SelectionChangedEvent;
 import org.eclipse.swt.dnd.Clipboard;
 import org.eclipse.swt.dnd.DND;
 import org.eclipse.swt.dnd.TextTransfer;
 import org.eclipse.swt.dnd.Transfer;
 import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.IPropertyListener;
+import org.eclipse.ui.IWorkbenchPartConstants;
 import org.eclipse.ui.actions.ActionFactory;
+import org.eclipse.ui.texteditor.IDocumentProvider;
 import org.eclipse.ui.texteditor.ITextEditor;
 
 import com.mulgasoft.emacsplus.preferences.PrefVars;
@@ -181,10 +190,10 @@ public class KillRing extends RingBuffer<String> implements IDocumentListener {
 			if (isAppend() && !isEmpty() && ((result = getElement()) != null)
 					&& (isForceAppend() || (offset != NO_POS && (result.getOffset() == (isReverse() ? offset + text.length() : offset))))) {
 				if (isReverse()) {
-					result.set(text + result.get());
+					result.prepend(text);
 					result.setOffset(offset);
 				} else {
-					result.set(result.get() + text);
+					result.append(text);
 					if (isForceAppend()) {
 						result.setOffset(offset);	
 					}
@@ -348,8 +357,9 @@ public class KillRing extends RingBuffer<String> implements IDocumentListener {
 	 * @see org.eclipse.jface.text.IDocumentListener#documentAboutToBeChanged(org.eclipse.jface.text.DocumentEvent)
 	 */
 	public void documentAboutToBeChanged(DocumentEvent event) {
-		// add the text to the kill ring
-		if (killCmd != null || isSelectionReplace(event)) {
+		// add the text to the kill ring (but don't copy replaced selections in large documents)
+		// plain insertions remove nothing, so there is nothing to copy
+		if (event.getLength() > 0 && (killCmd != null || (isSelectionReplace(event) && !LargeFileMode.isLarge(event.getDocument())))) {
 			try {
 				putNext((event.getDocument().get(event.getOffset(), event.getLength())), event.getOffset());
 			} catch (BadLocationException e) {}
@@ -362,25 +372,94 @@ public class KillRing extends RingBuffer<String> implements IDocumentListener {
 	 * typing/pasting into a selection replaces the old with the new, so it is appropriate to save
 	 * the old text to the kill ring.
 	 * 
+	 * The selection is the one cached by the selection listener on the last activated editor, so
+	 * this is a few comparisons rather than a lookup of the editor, its document and its selection.
+	 * 
 	 * @param event the DocumentEvent containing the IDocument, offset, and length
 	 * @return true if the non-zero length region matches the current selection in the editor
 	 */
 	private boolean isSelectionReplace(DocumentEvent event) {
 		int len = event.getLength();
 		// ignore plain insertion or any emacs+ (except YANK) command invocation
-		if (selectionReplace &&  len > 0 && shouldSave()) {
-			ITextEditor editor = EmacsPlusUtils.getCurrentEditor();
-			// otherwise, if we can get the selection, see if it matches the replace region
-			if (editor != null && editor.getDocumentProvider().getDocument(editor.getEditorInput()) == event.getDocument()) {
-				ISelection isel = editor.getSelectionProvider().getSelection();
-				if (isel instanceof ITextSelection) {
-					ITextSelection selection = (ITextSelection)isel;
-					boolean result = selection.getOffset() == event.getOffset() && selection.getLength() == len;
-					return result;
-				}
+		return selectionReplace && len > 0 && len == selLength && event.getOffset() == selOffset
+				&& event.getDocument() == selDocument && shouldSave();
+	}
+
+	/* Selection tracking for isSelectionReplace */
+
+	// the document and selection of the last activated editor
+	private IDocument selDocument = null;
+	private int selOffset = -1;
+	private int selLength = 0;
+	private ITextEditor selEditor = null;
+	private ISelectionProvider selProvider = null;
+
+	private final ISelectionChangedListener selListener = new ISelectionChangedListener() {
+		public void selectionChanged(SelectionChangedEvent event) {
+			setSelection(event.getSelection());
+		}
+	};
+
+	// the editor's document changes with its input (e.g. on save as), without a re-activation
+	private final IPropertyListener inputListener = new IPropertyListener() {
+		public void propertyChanged(Object source, int propId) {
+			if (propId == IWorkbenchPartConstants.PROP_INPUT && selEditor != null) {
+				setDocument(selEditor);
+			}
+		}
+	};
+
+	private void setDocument(ITextEditor editor) {
+		IDocumentProvider idp = editor.getDocumentProvider();
+		selDocument = (idp != null ? idp.getDocument(editor.getEditorInput()) : null);
+		setSelection(selProvider.getSelection());
+	}
+
+	private void setSelection(ISelection isel) {
+		if (isel instanceof ITextSelection) {
+			ITextSelection selection = (ITextSelection)isel;
+			selOffset = selection.getOffset();
+			selLength = selection.getLength();
+		} else {
+			selOffset = -1;
+			selLength = 0;
+		}
+	}
+
+	/**
+	 * Cache the document and selection of the activated editor, for the detection of selection 
+	 * replacement; the document is refreshed if the editor's input changes
+	 * 
+	 * @param editor
+	 */
+	void trackSelection(ITextEditor editor) {
+		if (editor != selEditor) {
+			untrackSelection(selEditor);
+			ISelectionProvider provider = (editor != null ? editor.getSelectionProvider() : null);
+			if (provider != null && editor.getDocumentProvider() != null) {
+				selEditor = editor;
+				selProvider = provider;
+				setDocument(editor);
+				provider.addSelectionChangedListener(selListener);
+				editor.addPropertyListener(inputListener);
 			}
 		}
-		return false;
+	}
+
+	/**
+	 * Stop caching the editor's selection (e.g. when it is closed)
+	 * 
+	 * @param editor
+	 */
+	void untrackSelection(IEditorPart editor) {
+		if (editor != null && editor == selEditor) {
+			selProvider.removeSelectionChangedListener(selListener);
+			selEditor.removePropertyListener(inputListener);
+			selEditor = null;
+			selProvider = null;
+			selDocument = null;
+			setSelection(null);
+		}
 	}
 	
 	private boolean shouldSave() {
@@ -432,6 +511,72 @@ public class KillRing extends RingBuffer<String> implements IDocumentListener {
 		}
 		
 		private int offset = -1;
+		// text appended by successive kills, in the order killed, that is not yet part of the content
+		private ArrayList<String> prepends = null;
+		private StringBuilder appends = null;
+
+		/**
+		 * Add text after the content.  The content is only rebuilt when it is next read,
+		 * so a run of kills does not copy the accumulated text for each one.
+		 * 
+		 * @param text
+		 */
+		private void append(String text) {
+			if (appends == null) {
+				appends = new StringBuilder(text);
+			} else {
+				appends.append(text);
+			}
+		}
+
+		/**
+		 * Add text before the content (for reverse kills)
+		 * 
+		 * @param text
+		 */
+		private void prepend(String text) {
+			if (prepends == null) {
+				prepends = new ArrayList<String>();
+			}
+			prepends.add(text);
+		}
+
+		@Override
+		public String get() {
+			if (prepends != null || appends != null) {
+				String content = super.get();
+				int length = content.length() + (appends != null ? appends.length() : 0);
+				if (prepends != null) {
+					for (String p : prepends) {
+						length += p.length();
+					}
+				}
+				StringBuilder result = new StringBuilder(length);
+				if (prepends != null) {
+					for (int i = prepends.size() - 1; i >= 0; i--) {
+						result.append(prepends.get(i));
+					}
+				}
+				result.append(content);
+				if (appends != null) {
+					result.append(appends);
+				}
+				set(result.toString());
+			}
+			return super.get();
+		}
+
+		@Override
+		public void set(String content) {
+			prepends = null;
+			appends = null;
+			super.set(content);
+		}
+
+		@Override
+		public String toString() {
+			return get();
+		}
 
 		private int getOffset() {
 			return offset;
@@ -0,0 +1,220 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus;
+
+import static com.mulgasoft.emacsplus.EmacsPlusUtils.getPreferenceStore;
+import static com.mulgasoft.emacsplus.minibuffer.WithMinibuffer.MINIBUFF_ID;
+import static com.mulgasoft.emacsplus.preferences.PrefVars.LARGE_FILE_THRESHOLD;
+
+import java.lang.ref.WeakReference;
+
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
+import org.eclipse.ui.texteditor.IDocumentProvider;
+import org.eclipse.ui.texteditor.ITextEditor;
+import org.eclipse.ui.texteditor.StatusLineContributionItem;
+
+/**
+ * Large file mode: a document whose length is at least large-file-threshold characters is
+ * treated as large, and Emacs+ avoids whole document copies and per-keystroke work on it:
+ *
+ *  - sexp movement and count-matches read the document in place rather than copying it to a String
+ *  - text replaced by typing over a selection is not copied to the kill ring
+ *  - universal-argument repeat counts are capped at MAX_LARGE_COUNT
+ *
+ * The mode is determined by the current length of each document, so there is no state to
+ * maintain as documents grow and shrink; a value of 0 disables the mode.
+ * While a large document's editor is active, the mode is shown in the status line, which is
+ * refreshed when the document grows or shrinks across the threshold.  The active editor is held
+ * weakly, and its document is no longer listened to once it is closed.
+ *
+ * @author mfeber
+ */
+public class LargeFileMode extends StatusItemSupport {
+
+	/** The cap on universal-argument repeat counts in large documents */
+	public static final int MAX_LARGE_COUNT = 1000;
+
+	private static final String LARGE_ID = "large_file_mode";							//$NON-NLS-1$
+	private static final String LARGE_MSG = EmacsPlusActivator.getResourceString("Large_File_Mode");	//$NON-NLS-1$
+	private static final String EMPTY_STR = "";	//$NON-NLS-1$
+
+	private static LargeFileMode instance = null;
+	private static int threshold = getPreferenceStore().getInt(LARGE_FILE_THRESHOLD.getPref());
+
+	static {
+		// listen for changes in the property store
+		getPreferenceStore().addPropertyChangeListener(
+				new IPropertyChangeListener() {
+					public void propertyChange(PropertyChangeEvent event) {
+						if (LARGE_FILE_THRESHOLD.getPref().equals(event.getProperty())) {
+							LargeFileMode.threshold = getPreferenceStore().getInt(LARGE_FILE_THRESHOLD.getPref());
+							if (instance != null) {
+								instance.refresh();
+							}
+						}
+					}
+				}
+		);
+	}
+
+	private StatusLineContributionItem largeItem = null;
+	// the active editor, its document and whether it was large when last shown
+	private WeakReference<ITextEditor> editor = null;
+	private WeakReference<IDocument> document = null;
+	private boolean large = false;
+
+	private final IDocumentListener sizeListener = new IDocumentListener() {
+		public void documentAboutToBeChanged(DocumentEvent event) {}
+		public void documentChanged(DocumentEvent event) {
+			boolean isLarge = isLarge(event.getDocument());
+			if (isLarge != large) {
+				// note the change now, so a burst of edits only asks once
+				large = isLarge;
+				refresh();
+			}
+		}
+	};
+
+	private LargeFileMode() {}
+
+	/**
+	 * Singleton pattern
+	 *
+	 * @return the cached instance
+	 */
+	public static LargeFileMode getInstance() {
+		if (instance == null) {
+			instance = new LargeFileMode();
+		}
+		return instance;
+	}
+
+	/**
+	 * @param document
+	 * @return true if the document is large enough for large file mode
+	 */
+	public static boolean isLarge(IDocument document) {
+		return document != null && threshold > 0 && document.getLength() >= threshold;
+	}
+
+	/**
+	 * @param editor
+	 * @return true if the editor's document is large enough for large file mode
+	 */
+	public static boolean isLarge(ITextEditor editor) {
+		return isLarge(getDocument(editor));
+	}
+
+	/**
+	 * Cap a repeat count in large documents
+	 *
+	 * @param document
+	 * @param count
+	 * @return the count, limited to +/- MAX_LARGE_COUNT if the document is large
+	 */
+	public static int capCount(IDocument document, int count) {
+		if (Math.abs(count) > MAX_LARGE_COUNT && isLarge(document)) {
+			return (count < 0 ? -MAX_LARGE_COUNT : MAX_LARGE_COUNT);
+		}
+		return count;
+	}
+
+	private static IDocument getDocument(ITextEditor editor) {
+		IDocument result = null;
+		if (editor != null) {
+			IDocumentProvider provider = editor.getDocumentProvider();
+			if (provider != null) {
+				result = provider.getDocument(editor.getEditorInput());
+			}
+		}
+		return result;
+	}
+
+	protected StatusLineContributionItem initStatusLineItem() {
+		if (largeItem == null) {
+			largeItem = new StatusLineContributionItem(LARGE_ID, true, LARGE_MSG.length() + 2);
+		}
+		return largeItem;
+	}
+
+	/**
+	 * Show or hide the mode in the status line of the (newly activated) editor
+	 *
+	 * @param editor
+	 */
+	public void update(ITextEditor editor) {
+		if (editor != null) {
+			this.editor = new WeakReference<ITextEditor>(editor);
+			IDocument doc = getDocument(editor);
+			if (doc != getDocument()) {
+				stopListening();
+				if (doc != null) {
+					document = new WeakReference<IDocument>(doc);
+					doc.addDocumentListener(sizeListener);
+				}
+			}
+			large = isLarge(doc);
+			if (large) {
+				addStatusContribution(editor, MINIBUFF_ID);
+				largeItem.setText(LARGE_MSG);
+				EmacsPlusUtils.forceStatusUpdate(editor);
+			} else if (largeItem != null && largeItem.isVisible()) {
+				largeItem.setText(EMPTY_STR);
+				largeItem.setVisible(false);
+				EmacsPlusUtils.forceStatusUpdate(editor);
+			}
+		}
+	}
+
+	/**
+	 * Stop listening to the document of the editor, which is closing
+	 *
+	 * @param editor
+	 */
+	public void close(ITextEditor editor) {
+		if (editor != null && editor == getEditor()) {
+			stopListening();
+			this.editor = null;
+		}
+	}
+
+	private ITextEditor getEditor() {
+		return (editor != null ? editor.get() : null);
+	}
+
+	private IDocument getDocument() {
+		return (document != null ? document.get() : null);
+	}
+
+	private void stopListening() {
+		IDocument doc = getDocument();
+		if (doc != null) {
+			doc.removeDocumentListener(sizeListener);
+		}
+		document = null;
+	}
+
+	/**
+	 * Update the status line of the active editor, e.g. when its document crosses the threshold
+	 */
+	private void refresh() {
+		EmacsPlusUtils.asyncUiRun(new Runnable() {
+			public void run() {
+				ITextEditor active = getEditor();
+				if (active != null) {
+					update(active);
+				}
+			}
+		});
+	}
+}
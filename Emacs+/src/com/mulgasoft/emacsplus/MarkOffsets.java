@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IPositionUpdater;
+
+/**
+ * A compact table of mark offsets for a single document.
+ * 
+ * All the marks in a document are held in one int array and adjusted by a single pass of 
+ * this (position) updater per document change, rather than as individual Positions in a 
+ * document position category.  Tables are indexed weakly by document, and never reference
+ * their document, so closed buffers may be collected.
+ *  
+ * Adjustment follows Emacs marker semantics: a mark before or at the start of a change is 
+ * untouched, a mark after the change is shifted, and a mark inside deleted text moves to 
+ * the start of the change.
+ * 
+ * @author mfeber
+ */
+public class MarkOffsets implements IPositionUpdater {
+
+	private static final int FREE = -1;
+	private static final int INITIAL_SIZE = 8;
+	
+	private static Map<IDocument, MarkOffsets> tables = new WeakHashMap<IDocument, MarkOffsets>();
+
+	private int[] offsets = new int[INITIAL_SIZE];
+	private int count = 0;
+	// true while installed as a document updater
+	private boolean attached = false;
+
+	private MarkOffsets() {
+		Arrays.fill(offsets, FREE);
+	}
+
+	/**
+	 * Get (or create and install) the mark table for the document
+	 * 
+	 * @param document
+	 * @return the document's mark table
+	 */
+	public static synchronized MarkOffsets getTable(IDocument document) {
+		MarkOffsets result = tables.get(document);
+		if (result == null) {
+			result = new MarkOffsets();
+			tables.put(document, result);
+			document.addPositionUpdater(result);
+			result.attached = true;
+		}
+		return result;
+	}
+
+	/**
+	 * Remove the document's mark table and stop updating its marks
+	 * Marks that are still held elsewhere retain their last offset
+	 * 
+	 * @param document
+	 */
+	public static synchronized void removeTable(IDocument document) {
+		MarkOffsets table = tables.remove(document);
+		if (table != null) {
+			document.removePositionUpdater(table);
+			table.attached = false;
+		}
+	}
+
+	/**
+	 * Add a mark to the document
+	 * 
+	 * @param document
+	 * @param offset
+	 * @return the new Mark
+	 */
+	public static Mark addMark(IDocument document, int offset) {
+		return getTable(document).add(offset);
+	}
+
+	/**
+	 * @return true if this table is still updated by its document
+	 */
+	public boolean isAttached() {
+		return attached;
+	}
+
+	/**
+	 * @return the number of live marks in the table
+	 */
+	public synchronized int size() {
+		return count;
+	}
+	
+	synchronized Mark add(int offset) {
+		int slot = 0;
+		for (; slot < offsets.length; slot++) {
+			if (offsets[slot] == FREE) {
+				break;
+			}
+		}
+		if (slot == offsets.length) {
+			int len = offsets.length;
+			offsets = Arrays.copyOf(offsets, len * 2);
+			Arrays.fill(offsets, len, offsets.length, FREE);
+		}
+		offsets[slot] = Math.max(0, offset);
+		count++;
+		return new Mark(this, slot);
+	}
+
+	synchronized int get(int slot) {
+		return offsets[slot];
+	}
+
+	synchronized void set(int slot, int offset) {
+		offsets[slot] = Math.max(0, offset);
+	}
+
+	synchronized void release(int slot) {
+		if (offsets[slot] != FREE) {
+			offsets[slot] = FREE;
+			count--;
+		}
+	}
+
+	/**
+	 * Adjust all the marks in a single pass
+	 * 
+	 * @see org.eclipse.jface.text.IPositionUpdater#update(org.eclipse.jface.text.DocumentEvent)
+	 */
+	public synchronized void update(DocumentEvent event) {
+		if (count == 0) {
+			return;
+		}
+		int start = event.getOffset();
+		int end = start + event.getLength();
+		String text = event.getText();
+		int delta = (text == null ? 0 : text.length()) - event.getLength();
+		int[] marks = offsets;
+		for (int i = 0; i < marks.length; i++) {
+			int mark = marks[i];
+			if (mark <= start) {
+				// FREE is negative, so unused slots are skipped here as well
+				continue;
+			} else if (mark >= end) {
+				marks[i] = mark + delta;
+			} else {
+				marks[i] = start;
+			}
+		}
+	}
+
+	/**
+	 * A handle on a single slot in a document's mark table
+	 */
+	public static class Mark {
+
+		private MarkOffsets table;
+		private final int slot;
+		
+		Mark(MarkOffsets table, int slot) {
+			this.table = table;
+			this.slot = slot;
+		}
+
+		/**
+		 * @return the current offset, or -1 if the mark has been released
+		 */
+		public int getOffset() {
+			return (table != null ? table.get(slot) : FREE);
+		}
+
+		public void setOffset(int offset) {
+			if (table != null) {
+				table.set(slot, offset);
+			}
+		}
+
+		/**
+		 * @return true if the mark is still being updated by its document
+		 */
+		public boolean isAttached() {
+			return table != null && table.isAttached();
+		}
+
+		/**
+		 * Return the slot to the table; the mark is no longer valid
+		 */
+		public void release() {
+			if (table != null) {
+				table.release(slot);
+				table = null;
+			}
+		}
+	}
+}
@@ -9,13 +9,10 @@
  */
 package com.mulgasoft.emacsplus;
 
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.WeakHashMap;
 
-import org.eclipse.jface.text.BadLocationException;
-import org.eclipse.jface.text.BadPositionCategoryException;
-import org.eclipse.jface.text.DefaultPositionUpdater;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.Position;
 import org.eclipse.ui.IEditorInput;
@@ -25,9 +22,11 @@ import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.part.MultiPageEditorPart;
 import org.eclipse.ui.texteditor.ITextEditor;
 
+import com.mulgasoft.emacsplus.MarkOffsets.Mark;
+
 /**
  * A Mark List to support Mark Ring operations 
- * Use Eclipse Document positions/position category to auto update as text is changed
+ * Use a per document MarkOffsets table to auto update as text is changed
  * 
  * @author Mark Feber - initial API and implementation
  */
@@ -37,16 +36,8 @@ public class MarkRing {
 	private static MarkList tagMarks = new MarkList(RingBuffer.getDefaultSize() * 2);
 	/** The global ring of mark locations used by the global mark methods */
 	private static MarkList globalMarks = new MarkList(RingBuffer.getDefaultSize() * 2);
-	/** Local mark rings indexed by document */
-	private static Map<IDocument,MarkList> localMarks = new HashMap<IDocument,MarkList>();
-
-	public static final String MARK_CATEGORY = "Emacs+Mark";	//$NON-NLS-1$
-	static DefaultPositionUpdater updater = new DefaultPositionUpdater(MARK_CATEGORY) {
-		@Override
-		protected boolean notDeleted() {
-			return true;
-		}
-	};
+	/** Local mark rings indexed (weakly) by document */
+	private static Map<IDocument,MarkList> localMarks = new WeakHashMap<IDocument,MarkList>();
 	
 	/**
 	 * Add the previous mark to the Mark Ring
@@ -61,8 +52,6 @@ public class MarkRing {
 		if (local == null) {
 			local = new MarkList(RingBuffer.getDefaultSize());
 			localMarks.put(document, local);
-			document.addPositionCategory(MARK_CATEGORY);
-			document.addPositionUpdater(updater);
 		}
 		local.addMark(document, localMark);
 		// check to see if we should save globally
@@ -71,20 +60,13 @@ public class MarkRing {
 
 	/**
 	 * Remove the document's mark buffer from the local Mark list
-	 * Also, remove the position updating information from the document
+	 * Also, remove the mark updating information from the document
 	 * 
 	 * @param document
 	 */
 	static void removeMarks(IDocument document) {
-		MarkList local = localMarks.remove(document);
-		if (local != null || document.containsPositionCategory(MARK_CATEGORY)) {
-			document.removePositionUpdater(updater);
-			try {
-				// this also removes all the positions
-				document.removePositionCategory(MARK_CATEGORY);
-			} catch (BadPositionCategoryException e) {
-			}
-		}
+		localMarks.remove(document);
+		MarkOffsets.removeTable(document);
 	}
 	
 	/**
@@ -98,8 +80,10 @@ public class MarkRing {
 		Position result = null;
 		MarkList local = localMarks.get(document);
 		if (local != null) {
-			Position pos = local.popAppendMark(document, mark);
-			result = new Position(mark,pos.getOffset());
+			int pos = local.popAppendMark(document, mark);
+			if (pos != -1) {
+				result = new Position(mark,pos);
+			}
 		}
 		return result;
 	}
@@ -156,20 +140,15 @@ public class MarkRing {
 		 * 
 		 * @param document
 		 * @param mark
-		 * @return the newly created Position or null, if mark == -1 or other error
+		 * @return the newly created Mark or null, if mark == -1 or duplicate
 		 */
-		Position addMark(IDocument document, int mark) {
-			Position result = null;
+		Mark addMark(IDocument document, int mark) {
+			Mark result = null;
 			if (mark != -1) {
 				// avoid needless duplication
 				if (isEmpty() || (peek().getOffset() != mark && getLast().getOffset() != mark)) {
-					try {
-						result = new Position(mark);
-						document.addPosition(MARK_CATEGORY, result);
-						pushElement(document, new MarkElement(result));
-					} catch (BadLocationException e) {
-					} catch (BadPositionCategoryException e) {
-					}
+					result = MarkOffsets.addMark(document, mark);
+					pushElement(new MarkElement(result));
 				}
 			}			
 			return result;
@@ -182,37 +161,27 @@ public class MarkRing {
 		 * @param editor
 		 * @param document
 		 * @param mark
-		 * @return the newly created Position or null, if global add not required or other error
+		 * @return the newly created Mark or null, if global add not required
 		 */
-		Position addMark(ITextEditor editor, IDocument document, int mark, boolean checkIt) {
-			Position globalPos = null;
+		Mark addMark(ITextEditor editor, IDocument document, int mark, boolean checkIt) {
+			Mark globalMark = null;
 			if (mark != -1 && (!checkIt || checkNewMark(editor))) {
-				globalPos = new Position(mark);
-				try {
-					document.addPosition(MARK_CATEGORY, globalPos);
-				} catch (BadLocationException e) {
-				} catch (BadPositionCategoryException e) {
-				}					
-				pushElement(document, new MarkElement(editor,globalPos));
+				globalMark = MarkOffsets.addMark(document, mark);
+				pushElement(new MarkElement(editor,globalMark));
 			}
-			return globalPos;
+			return globalMark;
 		}
 		
 		/**
 		 * Add new element to the front of the ring.  If the length is 
 		 * exceeded, drop the last element 
 		 * 
-		 * @param document
 		 * @param element
 		 */
-		void pushElement(IDocument document, IBufferLocation element) {
+		void pushElement(IBufferLocation element) {
 			addFirst(element);
 			if (size() > bufferSize) {
-				IBufferLocation old = removeLast();
-				try {
-					removeMarkPosition(document,((MarkElement)old).getPosition());
-				} catch (BadPositionCategoryException e) {
-				}
+				((MarkElement)removeLast()).release();
 			}
 		}
 
@@ -221,24 +190,16 @@ public class MarkRing {
 		 * 
 		 * @param document
 		 * @param mark
-		 * @return the popped position
+		 * @return the popped offset or -1
 		 */
-		Position popAppendMark(IDocument document, int mark) {
-			Position result = null;
-			MarkElement element = null;
+		int popAppendMark(IDocument document, int mark) {
+			int result = -1;
 			if (mark != -1) {
-				try {
-					result = new Position(mark);
-					document.addPosition(MARK_CATEGORY, result);
-					element = new MarkElement(result);
-					addLast(element);
-					element = (MarkElement) removeFirst();
-					result = element.getPosition();
-					// remove from document as internal Mark code will update it
-					removeMarkPosition(document, result);
-				} catch (BadLocationException e) {
-				} catch (BadPositionCategoryException e) {
-				}
+				addLast(new MarkElement(MarkOffsets.addMark(document, mark)));
+				MarkElement element = (MarkElement) removeFirst();
+				result = element.getOffset();
+				// release from document as internal Mark code will update it
+				element.release();
 			}			
 			return result;
 		}
@@ -284,10 +245,6 @@ public class MarkRing {
 			return result;
 		}
 		
-		private void removeMarkPosition(IDocument document, Position mark) throws BadPositionCategoryException {
-			document.removePosition(MARK_CATEGORY, mark);
-		}
-		
 		/**
 		 * Verify that the editor in the location is still in use
 		 * 
@@ -345,17 +302,17 @@ public class MarkRing {
 	
 	static class MarkElement implements IBufferLocation {
 
-		private Position position = null;
+		private Mark mark = null;
 		private ITextEditor editor = null;
 		
 		MarkElement() {}
 		
-		MarkElement(Position position) {
-			this.position = position;
+		MarkElement(Mark mark) {
+			this.mark = mark;
 		}
 		
-		MarkElement(ITextEditor editor, Position position) {
-			this(position);
+		MarkElement(ITextEditor editor, Mark mark) {
+			this(mark);
 			this.editor = editor;
 		}
 		/**
@@ -370,8 +327,8 @@ public class MarkRing {
 		 */
 		public int getOffset() {
 			int result = -1;
-			if (position != null) {
-				result = position.getOffset();
+			if (mark != null) {
+				result = mark.getOffset();
 			}
 			return result;
 		}
@@ -388,11 +345,20 @@ public class MarkRing {
 		 */
 		public void setPosition(ITextEditor editor, Position position) {
 			setEditor(editor);
-			this.position = position;
+			release();
+			if (editor != null && position != null) {
+				IDocument document = editor.getDocumentProvider().getDocument(editor.getEditorInput());
+				if (document != null) {
+					mark = MarkOffsets.addMark(document, position.getOffset());
+				}
+			}
 		}
 		
-		public Position getPosition() {
-			return position;
+		void release() {
+			if (mark != null) {
+				mark.release();
+				mark = null;
+			}
 		}
 	}
 }
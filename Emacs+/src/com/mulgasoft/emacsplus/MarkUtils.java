@@ -17,7 +17,6 @@ import static com.mulgasoft.emacsplus.IEmacsPlusCommandDefinitionIds.YANK_POP;
 
 import java.util.HashMap;
 
-import org.eclipse.core.commands.Command;
 import org.eclipse.core.commands.ExecutionEvent;
 import org.eclipse.core.commands.ExecutionException;
 import org.eclipse.core.commands.IExecutionListener;
@@ -39,7 +38,6 @@ import org.eclipse.swt.custom.StyledText;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Text;
-import org.eclipse.ui.commands.ICommandService;
 import org.eclipse.ui.console.TextConsoleViewer;
 import org.eclipse.ui.handlers.HandlerUtil;
 import org.eclipse.ui.texteditor.AbstractTextEditor;
@@ -48,6 +46,7 @@ import org.eclipse.ui.texteditor.ITextEditor;
 
 import com.mulgasoft.emacsplus.commands.EmacsMovementHandler;
 import com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler;
+import com.mulgasoft.emacsplus.execute.CommandBus;
 
 /**
  * Utilities and Listeners associated with correcting the broken Eclipse
@@ -580,9 +579,9 @@ public class MarkUtils {
 	private static void setLastCommand(String commandId) {
 		// repeat commands (^X Z) should not change command state
 		if (!isRepeatCommand(commandId)) {
-			for (Object listener : commandIdListeners.getListeners()) {
-				if (!ignoreDispatchId) {
-					((ICommandIdListener)listener).setCommandId(commandId);
+			if (!ignoreDispatchId) {
+				for (ICommandIdListener listener : commandIdListeners) {
+					listener.setCommandId(commandId);
 				}
 			}
 			lastCommand = commandId;
@@ -595,87 +594,78 @@ public class MarkUtils {
 		// handle multi-part editors which don't call deactivate for individual parts
 		MarkUtils.removeExecutionListeners(editor);
 		lastCommand = null;	// initialize command id state
-		ICommandService ics = (ICommandService) editor.getSite().getService(ICommandService.class);
-		if (ics != null) {
-			// Add a listener for every command on this editor to clear the mark region
-			// when the text changes
-			execExecListener = new IExecutionListener() {
-				ITextEditor cEditor = editor;
-
-				public void notHandled(String commandId, NotHandledException exception) {
-					currentCommand = null;
-				}
-
-				public void postExecuteFailure(String commandId, ExecutionException exception) {
-					currentCommand = null;					
-				}
+		CommandBus bus = CommandBus.getInstance();
+		// Add a listener for every command on this editor to clear the mark region
+		// when the text changes
+		execExecListener = new IExecutionListener() {
+			ITextEditor cEditor = editor;
+
+			public void notHandled(String commandId, NotHandledException exception) {
+				currentCommand = null;
+			}
 
-				public void postExecuteSuccess(String commandId, Object returnValue) {
-					if (EmacsPlusCmdHandler.isChanged) {
-						clearMarkRegion(cEditor);
-						EmacsPlusCmdHandler.isChanged = false;
-					}
-					if (!markHash.containsKey(commandId)) {
-						// clear the mark flag
-						EmacsPlusCmdHandler.setFlagMark(false);
-					} 
-
-					// remember command id of last command executed
-					setLastCommand(commandId);
-					currentCommand = null;
-				}
+			public void postExecuteFailure(String commandId, ExecutionException exception) {
+				currentCommand = null;					
+			}
 
-				public void preExecute(String commandId, ExecutionEvent event) {
-					if (notYank(commandId)) {
-						// Fix (possible regression?) to disallow yank-pop after non-yank
-						KillRing.getInstance().setYanked(false);						
-					}
+			public void postExecuteSuccess(String commandId, Object returnValue) {
+				if (EmacsPlusCmdHandler.isChanged) {
+					clearMarkRegion(cEditor);
 					EmacsPlusCmdHandler.isChanged = false;
-					currentCommand = commandId;					
 				}
-				
-				private boolean notYank(String commandId) {
-					return	(!(YANK.equals(commandId) || YANK_POP.equals(commandId)|| METAX_EXECUTE.equals(commandId)));
+				if (!markHash.containsKey(commandId)) {
+					// clear the mark flag
+					EmacsPlusCmdHandler.setFlagMark(false);
+				} 
+
+				// remember command id of last command executed
+				setLastCommand(commandId);
+				currentCommand = null;
+			}
+
+			public void preExecute(String commandId, ExecutionEvent event) {
+				if (notYank(commandId)) {
+					// Fix (possible regression?) to disallow yank-pop after non-yank
+					KillRing.getInstance().setYanked(false);						
 				}
-			};
-			ics.addExecutionListener(execExecListener);
+				EmacsPlusCmdHandler.isChanged = false;
+				currentCommand = commandId;					
+			}
+			
+			private boolean notYank(String commandId) {
+				return	(!(YANK.equals(commandId) || YANK_POP.equals(commandId)|| METAX_EXECUTE.equals(commandId)));
+			}
+		};
+		// every command (Emacs+ or not) clears the mark flag and becomes the last command
+		bus.subscribe(execExecListener, CommandBus.Category.ALL);
 
-			Command com = ics.getCommand(EMP_COPY);
-			if (com != null) {
-				// Add a listener to COPY command to always clear the mark region
-				copyCmdExecListener = new IExecutionListener() {
-					ITextEditor cEditor = editor;
+		// Add a listener to COPY command to always clear the mark region
+		copyCmdExecListener = new IExecutionListener() {
+			ITextEditor cEditor = editor;
 
-					public void notHandled(String commandId, NotHandledException exception) {
-					}
+			public void notHandled(String commandId, NotHandledException exception) {
+			}
 
-					public void postExecuteFailure(String commandId, ExecutionException exception) {
-					}
+			public void postExecuteFailure(String commandId, ExecutionException exception) {
+			}
 
-					public void postExecuteSuccess(String commandId, Object returnValue) {
-						clearMarkRegion(cEditor);
-					}
+			public void postExecuteSuccess(String commandId, Object returnValue) {
+				clearMarkRegion(cEditor);
+			}
 
-					public void preExecute(String commandId, ExecutionEvent event) {
-					}
-				};
-				com.addExecutionListener(copyCmdExecListener);
+			public void preExecute(String commandId, ExecutionEvent event) {
 			}
-		}
+		};
+		bus.subscribe(copyCmdExecListener, EMP_COPY);
 	}
 
 	private static void removeExecutionListeners(ITextEditor editor) {
-		ICommandService ics = (ICommandService) editor.getSite().getService(ICommandService.class);
-		if (ics != null) {
-			if (execExecListener != null) {
-				ics.removeExecutionListener(execExecListener);
-			}
-			if (copyCmdExecListener != null) {
-				Command com = ics.getCommand(EMP_COPY);
-				if (com != null) {
-					com.removeExecutionListener(copyCmdExecListener);
-				}
-			}
+		CommandBus bus = CommandBus.getInstance();
+		if (execExecListener != null) {
+			bus.unsubscribe(execExecListener);
+		}
+		if (copyCmdExecListener != null) {
+			bus.unsubscribe(copyCmdExecListener);
 		}
 		copyCmdExecListener = null;
 		execExecListener = null;
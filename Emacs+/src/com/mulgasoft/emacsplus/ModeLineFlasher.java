@@ -10,7 +10,6 @@ package com.mulgasoft.emacsplus;
 
 import static com.mulgasoft.emacsplus.minibuffer.WithMinibuffer.MINIBUFF_ID;
 
-import org.eclipse.jface.action.IContributionItem;
 import org.eclipse.jface.action.StatusLineLayoutData;
 import org.eclipse.jface.resource.ColorRegistry;
 import org.eclipse.swt.SWT;
@@ -68,15 +67,6 @@ public class ModeLineFlasher extends StatusItemSupport implements Flasher {
 		backs[1] = Flasher.invertColor(colorRegistry.get(foregroundKey));
 	}
 
-	private void asyncForce(final ITextEditor editor) {
-		Display.getDefault().asyncExec(() -> EmacsPlusUtils.forceStatusUpdate(editor));
-	}
-	
-	private void clearIt(IContributionItem item, ITextEditor editor) {
-		flashItem.setVisible(false);
-		asyncForce(editor);
-	}
-
 	protected StatusLineContributionItem initStatusLineItem() {
 		if (flashItem == null) {
 			setColors();
@@ -86,37 +76,50 @@ public class ModeLineFlasher extends StatusItemSupport implements Flasher {
 		return flashItem;
 	}
 
+	private ITextEditor flashEditor = null;
+
 	/**
 	 * Flash an area on the mode line a number of times
 	 * 
-	 * This is somewhat expensive due to all the asynchronous UI threads, but there seems to be 
-	 * no other way to get the desired behavior.
+	 * The flash is driven by Display.timerExec, so the UI thread is never blocked; repeated
+	 * beeps while flashing are coalesced into the flash in progress.
 	 * 
-	 * @param display
+	 * @param display the current display, or null if not called from the UI thread
 	 */
 	public void flash(Display display) {
-		final ITextEditor editor = EmacsPlusUtils.getCurrentEditor();
-		addStatusContribution(editor, MINIBUFF_ID);
-		asyncForce(editor);
-		Display.getDefault().asyncExec(() -> runFlasher(flashCount, flashItem, editor));
-	}	
-
-	private void runFlasher(final int count, FlashLineContributionItem item, final ITextEditor editor) {
-		if (count > 0) {
-			Display.getDefault().syncExec(() -> {
-				item.setBackground(backs[count % backs.length]);					
-				item.setVisible(true);
-				try {
-					Thread.sleep(waitTime);
-				} catch (InterruptedException e) {
-					// ignore
+		if (display == null || display.getThread() != Thread.currentThread()) {
+			// the status line and timers may only be touched from the UI thread
+			final Display ui = (display != null ? display : PlatformUI.getWorkbench().getDisplay());
+			ui.asyncExec(new Runnable() {
+				public void run() {
+					flash(ui);
 				}
-				Display.getDefault().asyncExec(() -> {
-					clearIt(item, editor);
-					runFlasher(count -1, item, editor);
-				});
 			});
-		} 
+		} else if (!FlashScheduler.getInstance().isFlashing()) {
+			FlashScheduler.getInstance().schedule(display, this, flashCount, waitTime);
+		}
+	}	
+
+	@Override
+	public void flashBegin() {
+		flashEditor = EmacsPlusUtils.getCurrentEditor();
+		addStatusContribution(flashEditor, MINIBUFF_ID);
+	}
+
+	public void flashOn(int count) {
+		flashItem.setBackground(backs[count % backs.length]);
+		flashItem.setVisible(true);
+		EmacsPlusUtils.forceStatusUpdate(flashEditor);
+	}
+
+	public void flashOff(int count) {
+		flashItem.setVisible(false);
+		EmacsPlusUtils.forceStatusUpdate(flashEditor);
+	}
+
+	@Override
+	public void flashEnd() {
+		flashEditor = null;
 	}
 
 	/**
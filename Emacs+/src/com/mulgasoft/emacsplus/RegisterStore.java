@@ -0,0 +1,432 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistent register store under the plugin state location
+ * 
+ * The store is an append only log of register records: each change to a register appends 
+ * a single record, and on (first) load the file is memory mapped and indexed; the last record 
+ * for a register wins.  Text and rectangle contents are not decoded until they are used, so 
+ * large registers cost nothing at startup.  When the log holds mostly superseded records, it 
+ * is compacted on load.
+ * 
+ * @author mfeber
+ */
+public class RegisterStore {
+
+	private static final String STORE_FILE = "registers.dat";	//$NON-NLS-1$
+	private static final int MAGIC = 0x454D5052;	// EMPR
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+	// compact when the log has this many times more records than registers
+	private static final int COMPACT_RATIO = 4;
+	private static final int COMPACT_MIN = 64;
+
+	// record types
+	private static final byte TEXT = 1;
+	private static final byte RECTANGLE = 2;
+	private static final byte NUMBER = 3;
+	private static final byte POINT = 4;
+	private static final byte NO_POINT = 5;
+
+	/**
+	 * Receives the register contents as they are loaded
+	 */
+	public interface IRegisterLoader {
+		void loadText(String key, StoredValue<String> text);
+		void loadRectangle(String key, StoredValue<String[]> rectangle);
+		void loadNumber(String key, int number);
+		void loadPoint(String key, String path, int offset);
+	}
+
+	/**
+	 * A value decoded on demand from the mapped store
+	 */
+	public interface StoredValue<T> {
+		T get();
+	}
+
+	private static RegisterStore instance = null;
+
+	private File file = null;
+	private RandomAccessFile out = null;
+	// the end of the last valid record, or -1 if not (yet) known
+	private long end = -1;
+	private boolean disabled = false;
+
+	private RegisterStore() {}
+
+	/**
+	 * Singleton pattern
+	 * 
+	 * @return the cached instance
+	 */
+	public static synchronized RegisterStore getInstance() {
+		if (instance == null) {
+			instance = new RegisterStore();
+		}
+		return instance;
+	}
+
+	private File getFile() {
+		if (file == null) {
+			file = EmacsPlusActivator.getDefault().getStateLocation().append(STORE_FILE).toFile();
+		}
+		return file;
+	}
+
+	/**
+	 * Read the stored registers, passing each to the loader
+	 * 
+	 * @param loader
+	 */
+	public synchronized void load(IRegisterLoader loader) {
+		File f = getFile();
+		if (!f.exists() || f.length() < HEADER_SIZE) {
+			return;
+		}
+		Map<String, Entry> values = new HashMap<String, Entry>();
+		Map<String, Entry> points = new HashMap<String, Entry>();
+		int records = 0;
+		try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {	//$NON-NLS-1$
+			MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				disabled = !f.delete();
+				return;
+			}
+			while (buffer.hasRemaining()) {
+				int start = buffer.position();
+				try {
+					byte type = buffer.get();
+					String key = readString(buffer);
+					Entry entry = new Entry(buffer, type, buffer.position());
+					skipPayload(buffer, type);
+					if (type == POINT || type == NO_POINT) {
+						points.put(key, entry);
+					} else {
+						values.put(key, entry);
+					}
+					records++;
+				} catch (BufferUnderflowException | IllegalArgumentException e) {
+					// a partial trailing record from an interrupted write: ignore the rest
+					buffer.position(start);
+					break;
+				}
+			}
+			// appends go here, replacing any partial record
+			end = buffer.position();
+		} catch (IOException e) {
+			disabled = true;
+			return;
+		}
+		for (Map.Entry<String, Entry> e : values.entrySet()) {
+			e.getValue().load(e.getKey(), loader);
+		}
+		for (Map.Entry<String, Entry> e : points.entrySet()) {
+			e.getValue().load(e.getKey(), loader);
+		}
+		if (records > COMPACT_MIN && records > COMPACT_RATIO * (values.size() + points.size())) {
+			compact(values, points);
+		}
+	}
+
+	/**
+	 * Record text contents for the register
+	 */
+	public void putText(String key, String text) {
+		try {
+			Record data = startRecord(TEXT, key);
+			writeString(data, text);
+			append(data);
+		} catch (IOException e) {
+			disable();
+		}
+	}
+
+	/**
+	 * Record rectangle contents for the register
+	 */
+	public void putRectangle(String key, String[] rectangle) {
+		try {
+			Record data = startRecord(RECTANGLE, key);
+			data.writeInt(rectangle.length);
+			for (String line : rectangle) {
+				writeString(data, line);
+			}
+			append(data);
+		} catch (IOException e) {
+			disable();
+		}
+	}
+
+	/**
+	 * Record a number for the register
+	 */
+	public void putNumber(String key, int number) {
+		try {
+			Record data = startRecord(NUMBER, key);
+			data.writeInt(number);
+			append(data);
+		} catch (IOException e) {
+			disable();
+		}
+	}
+
+	/**
+	 * Record a file location for the register
+	 * 
+	 * @param key - register id
+	 * @param path - the portable workspace path of the file or null to remove the point 
+	 * @param offset - the offset in the file
+	 */
+	public void putPoint(String key, String path, int offset) {
+		try {
+			Record data;
+			if (path != null) {
+				data = startRecord(POINT, key);
+				writeString(data, path);
+				data.writeInt(offset);
+			} else {
+				data = startRecord(NO_POINT, key);
+			}
+			append(data);
+		} catch (IOException e) {
+			disable();
+		}
+	}
+
+	/**
+	 * Release the file handle
+	 */
+	public synchronized void close() {
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+			}
+			out = null;
+		}
+	}
+
+	private Record startRecord(byte type, String key) throws IOException {
+		Record data = new Record();
+		data.writeByte(type);
+		writeString(data, key);
+		return data;
+	}
+
+	private synchronized void append(Record data) throws IOException {
+		if (disabled) {
+			return;
+		}
+		RandomAccessFile raf = getOutput();
+		byte[] bytes = data.toByteArray();
+		raf.seek(end);
+		raf.write(bytes);
+		end += bytes.length;
+	}
+
+	private RandomAccessFile getOutput() throws IOException {
+		if (out == null) {
+			File f = getFile();
+			boolean init = !f.exists() || f.length() < HEADER_SIZE;
+			out = new RandomAccessFile(f, "rw");	//$NON-NLS-1$
+			if (init) {
+				out.setLength(0);
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				end = HEADER_SIZE;
+			} else if (end < HEADER_SIZE || end > out.length()) {
+				end = out.length();
+			} else if (end < out.length()) {
+				try {
+					// drop the partial record found on load
+					out.setLength(end);
+				} catch (IOException e) {
+					// (e.g. the file is still mapped) it will be overwritten instead
+				}
+			}
+		}
+		return out;
+	}
+
+	private synchronized void disable() {
+		close();
+		disabled = true;
+	}
+
+	/**
+	 * Rewrite the log with only the live records
+	 */
+	private void compact(Map<String, Entry> values, Map<String, Entry> points) {
+		close();
+		File f = getFile();
+		File tmp = new File(f.getPath() + ".tmp");	//$NON-NLS-1$
+		try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {	//$NON-NLS-1$
+			raf.setLength(0);
+			raf.writeInt(MAGIC);
+			raf.writeInt(VERSION);
+			for (Map.Entry<String, Entry> e : values.entrySet()) {
+				raf.write(e.getValue().copy(e.getKey()));
+			}
+			for (Map.Entry<String, Entry> e : points.entrySet()) {
+				raf.write(e.getValue().copy(e.getKey()));
+			}
+		} catch (IOException e) {
+			tmp.delete();
+			return;
+		}
+		// the old mapping may pin the file on some platforms; then just keep appending to it
+		if (!f.delete() || !tmp.renameTo(f)) {
+			tmp.delete();
+		} else {
+			end = -1;
+		}
+	}
+
+	private static void writeString(DataOutputStream data, String str) throws IOException {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		data.writeInt(bytes.length);
+		data.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int len = buffer.getInt();
+		if (len < 0 || len > buffer.remaining()) {
+			throw new IllegalArgumentException();
+		}
+		byte[] bytes = new byte[len];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void skipString(ByteBuffer buffer) {
+		int len = buffer.getInt();
+		if (len < 0 || len > buffer.remaining()) {
+			throw new IllegalArgumentException();
+		}
+		buffer.position(buffer.position() + len);
+	}
+
+	private static void skipPayload(ByteBuffer buffer, byte type) {
+		switch (type) {
+			case TEXT:
+				skipString(buffer);
+				break;
+			case RECTANGLE:
+				int count = buffer.getInt();
+				for (int i = 0; i < count; i++) {
+					skipString(buffer);
+				}
+				break;
+			case NUMBER:
+				buffer.getInt();
+				break;
+			case POINT:
+				skipString(buffer);
+				buffer.getInt();
+				break;
+			case NO_POINT:
+				break;
+			default:
+				throw new IllegalArgumentException();
+		}
+	}
+
+	/**
+	 * The location of a record's payload in the mapped buffer
+	 */
+	private static class Entry {
+		private final ByteBuffer buffer;
+		private final byte type;
+		private final int offset;
+
+		Entry(ByteBuffer buffer, byte type, int offset) {
+			this.buffer = buffer;
+			this.type = type;
+			this.offset = offset;
+		}
+
+		private ByteBuffer payload() {
+			ByteBuffer result = buffer.duplicate();
+			result.position(offset);
+			return result;
+		}
+
+		void load(String key, IRegisterLoader loader) {
+			ByteBuffer data = payload();
+			switch (type) {
+				case TEXT:
+					loader.loadText(key, () -> readString(payload()));
+					break;
+				case RECTANGLE:
+					loader.loadRectangle(key, () -> {
+						ByteBuffer rdata = payload();
+						String[] result = new String[rdata.getInt()];
+						for (int i = 0; i < result.length; i++) {
+							result[i] = readString(rdata);
+						}
+						return result;
+					});
+					break;
+				case NUMBER:
+					loader.loadNumber(key, data.getInt());
+					break;
+				case POINT:
+					String path = readString(data);
+					loader.loadPoint(key, path, data.getInt());
+					break;
+				default:
+					break;
+			}
+		}
+
+		byte[] copy(String key) throws IOException {
+			ByteBuffer data = payload();
+			int start = data.position();
+			skipPayload(data, type);
+			byte[] payload = new byte[data.position() - start];
+			data.position(start);
+			data.get(payload);
+			Record out = new Record();
+			out.writeByte(type);
+			writeString(out, key);
+			out.write(payload);
+			return out.toByteArray();
+		}
+	}
+
+	/**
+	 * A single record, buffered so it is appended with one write
+	 */
+	private static class Record extends DataOutputStream {
+		Record() {
+			super(new ByteArrayOutputStream());
+		}
+
+		byte[] toByteArray() throws IOException {
+			flush();
+			return ((ByteArrayOutputStream) out).toByteArray();
+		}
+	}
+}
@@ -52,34 +52,55 @@ public class ScreenFlasher implements Flasher {
 		}
 	}
 
+	private StyledText flashWidget = null;
+
+	/**
+	 * Flash the current editor's widget, coalescing with any flash in progress
+	 * 
+	 * @param display the current display, or null if not called from the UI thread
+	 */
 	public void flash(Display display) {
-		StyledText widget = MarkUtils.getStyledWidget(EmacsPlusUtils.getCurrentEditor());
-		getColors(widget);
-		if (background != null) {
-			Display.getDefault().asyncExec(() -> {
-				runFlasher(flashCount, widget);
+		if (display == null || display.getThread() != Thread.currentThread()) {
+			// the widget and timers may only be touched from the UI thread
+			final Display ui = (display != null ? display : Display.getDefault());
+			ui.asyncExec(new Runnable() {
+				public void run() {
+					flash(ui);
+				}
 			});
+			return;
+		}
+		FlashScheduler scheduler = FlashScheduler.getInstance();
+		if (!scheduler.isFlashing()) {
+			StyledText widget = MarkUtils.getStyledWidget(EmacsPlusUtils.getCurrentEditor());
+			if (widget != null) {
+				getColors(widget);
+				if (background != null) {
+					flashWidget = widget;
+					scheduler.schedule(display, this, flashCount, waitTime);
+				}
+			}
 		}
 	}
-	
-	private void runFlasher(final int count, final StyledText item) {
-		if (count > 0) {
-			Display.getDefault().asyncExec(() -> {
-				item.setBackground(flash);					
-				item.setVisible(true);
-				item.redraw();
-				item.update();
-				Display.getDefault().asyncExec(() -> {
-					try {
-						Thread.sleep(waitTime);
-					} catch (InterruptedException e) {}
-					item.setBackground(background);					
-					item.redraw();
-					item.update();
-					runFlasher(count -1, item);
-				});
-			});
-		} 
+
+	public void flashOn(int count) {
+		setBackground(flash);
+	}
+
+	public void flashOff(int count) {
+		setBackground(background);
+	}
+
+	@Override
+	public void flashEnd() {
+		flashWidget = null;
+	}
+
+	private void setBackground(Color color) {
+		if (flashWidget != null && !flashWidget.isDisposed()) {
+			flashWidget.setBackground(color);
+			flashWidget.redraw();
+		}
 	}
 
 }
@@ -15,8 +15,11 @@ import java.util.Map;
 import java.util.TreeSet;
 
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.BadPositionCategoryException;
+import org.eclipse.jface.text.DefaultPositionUpdater;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.Position;
 import org.eclipse.ui.IEditorInput;
@@ -36,6 +39,9 @@ import org.eclipse.ui.texteditor.ITextEditor;
  *  <b><i>TECO's</b></i> `register' feature, which permits you to save various useful
  *  pieces of buffer state to named variables."
  * 
+ * Registers are persisted in the RegisterStore, and restored the first time the registers are used.
+ * Restored point registers are file locations, attached to a document only when they are jumped to.
+ * 
  * @author Mark Feber - initial API and implementation
  */
 public class TecoRegister {
@@ -47,10 +53,66 @@ public class TecoRegister {
 	public static final String RECTANGLE = EmacsPlusActivator.getResourceString("Register_Contents_Rectangle"); //$NON-NLS-1$
 	private final static String CR = "\n";  																	//$NON-NLS-1$
 	
+	/** Point registers keep their own position category, separate from the mark ring */
+	static final String REGISTER_CATEGORY = "Emacs+Register";	//$NON-NLS-1$
+	static DefaultPositionUpdater registerUpdater = new DefaultPositionUpdater(REGISTER_CATEGORY) {
+		@Override
+		protected boolean notDeleted() {
+			return true;
+		}
+	};
+
 	private static Map<String,IRegisterContents> register = new HashMap<String,IRegisterContents>();
 	private static TecoRegister instance = null;
 		
-	private TecoRegister() {}
+	private TecoRegister() {
+		RegisterStore.getInstance().load(new RegisterStore.IRegisterLoader() {
+			public void loadText(String key, RegisterStore.StoredValue<String> text) {
+				getLoadContents(key).storedText = text;
+			}
+			public void loadRectangle(String key, RegisterStore.StoredValue<String[]> rectangle) {
+				getLoadContents(key).storedRectangle = rectangle;
+			}
+			public void loadNumber(String key, int number) {
+				getLoadContents(key).setNumber(number);
+			}
+			public void loadPoint(String key, String path, int offset) {
+				IFile file = ResourcesPlugin.getWorkspace().getRoot().getFile(Path.fromPortableString(path));
+				if (file.exists()) {
+					getLoadContents(key).setLocation(new RegisterLocation(key, file, offset));
+				}
+			}
+		});
+	}
+	
+	private RegisterContents getLoadContents(String key) {
+		RegisterContents contents = (RegisterContents)register.get(key);
+		if (contents == null) {
+			contents = new RegisterContents();
+			register.put(key, contents);
+		}
+		return contents;
+	}
+
+	/**
+	 * Record the current offsets of points that are still attached to editors
+	 * Called when the plugin is stopped
+	 */
+	public static void shutdown() {
+		if (instance != null) {
+			for (Map.Entry<String,IRegisterContents> entry : register.entrySet()) {
+				IRegisterLocation loc = entry.getValue().getLocation();
+				if (loc != null && loc.getEditor() != null) {
+					try {
+						instance.storePoint(entry.getKey(), loc);
+					} catch (Exception e) {
+						// the editor may already be disposed
+					}
+				}
+			}
+		}
+		RegisterStore.getInstance().close();
+	}
 	
 	/**
 	 * TecoRegister is a singleton
@@ -83,6 +145,7 @@ public class TecoRegister {
 			} else {
 				register.put(key, new RegisterContents(text));
 			}
+			RegisterStore.getInstance().putText(key, text);
 		}
 	}
 	
@@ -122,6 +185,7 @@ public class TecoRegister {
 			} else {
 				register.put(key, new RegisterContents(rectangle));
 			}
+			RegisterStore.getInstance().putRectangle(key, rectangle);
 		}
 	}
 	
@@ -156,6 +220,7 @@ public class TecoRegister {
 			} else {
 				register.put(key, new RegisterContents(number));
 			}
+			RegisterStore.getInstance().putNumber(key, number);
 		}
 	}
 	
@@ -191,12 +256,13 @@ public class TecoRegister {
 			if (loc != null) {
 				((RegisterLocation)loc).setPosition(editor,offset);
 			} else {
-				contents.setLocation(new RegisterLocation(editor,offset));
+				contents.setLocation(new RegisterLocation(key,editor,offset));
 			}
 		} else {
-			contents = new RegisterContents(editor,offset);
+			contents = new RegisterContents(key,editor,offset);
 			register.put(key, contents);
 		}
+		storePoint(key, contents.getLocation());
 	}
 
 	/**
@@ -214,12 +280,24 @@ public class TecoRegister {
 				loc.setPath(path);
 				loc.setOffset(offset);
 			} else {
-				contents.setLocation(new RegisterLocation(path,offset));
+				contents.setLocation(new RegisterLocation(key,path,offset));
 			}
 		} else {
-			contents = new RegisterContents(path,offset);
+			contents = new RegisterContents(key,path,offset);
 			register.put(key, contents);
 		}
+		storePoint(key, contents.getLocation());
+	}
+	
+	/**
+	 * Persist the point as a file location; points in non-file editors are not persisted
+	 * 
+	 * @param key - register id
+	 * @param loc - the location
+	 */
+	private void storePoint(String key, IRegisterLocation loc) {
+		IFile path = (loc.getEditor() != null ? convertToPath(loc.getEditor()) : loc.getPath());
+		RegisterStore.getInstance().putPoint(key, (path != null ? path.getFullPath().toPortableString() : null), loc.getOffset());
 	}
 	
 	/**
@@ -294,6 +372,11 @@ public class TecoRegister {
 		private String text = null;
 		private String[] rectangle = null;
 		private IRegisterLocation location;
+		// persisted contents, decoded on first use
+		private RegisterStore.StoredValue<String> storedText = null;
+		private RegisterStore.StoredValue<String[]> storedRectangle = null;
+		
+		RegisterContents() {}
 		
 		public RegisterContents(String text) {
 			this.text = text;
@@ -307,12 +390,12 @@ public class TecoRegister {
 			this.number = number;
 		}
 		
-		public RegisterContents(ITextEditor editor, int offset) {
-			this.location = new RegisterLocation(editor,offset);
+		public RegisterContents(String key, ITextEditor editor, int offset) {
+			this.location = new RegisterLocation(key,editor,offset);
 		}
 		
-		public RegisterContents(IFile path, int offset) {
-			this.location = new RegisterLocation(path,offset);
+		public RegisterContents(String key, IFile path, int offset) {
+			this.location = new RegisterLocation(key,path,offset);
 		}
 		
 		/**
@@ -334,10 +417,15 @@ public class TecoRegister {
 		 * @see com.mulgasoft.emacsplus.IRegisterContents#getText()
 		 */
 		public String getText() {
+			if (text == null && storedText != null) {
+				text = storedText.get();
+				storedText = null;
+			}
 			return text;
 		}
 		
 		void setText(String text) {
+			storedText = null;
 			if (text != null) {
 				setNumber(null);
 				setRectangle(null);
@@ -346,10 +434,15 @@ public class TecoRegister {
 		}
 		
 		public String[] getRectangle() {
+			if (rectangle == null && storedRectangle != null) {
+				rectangle = storedRectangle.get();
+				storedRectangle = null;
+			}
 			return rectangle;
 		}
 		
 		void setRectangle(String[] rectangle) {
+			storedRectangle = null;
 			if (rectangle != null) {
 				setNumber(null);
 				setText(null);
@@ -366,6 +459,8 @@ public class TecoRegister {
 		}
 		
 		public String toString() {
+			String text = getText();
+			String[] rectangle = getRectangle();
 			StringBuilder results = new StringBuilder();
 				results.append(CR);
 			if (number != null) {
@@ -413,19 +508,26 @@ public class TecoRegister {
 	
 	private class RegisterLocation implements IRegisterLocation {
 
+		private final String key;
 		private IFile path = null;
 		private ITextEditor editor = null;
 		private Position position = null;
 		private EditorListener listener = null;
 		
-		RegisterLocation(ITextEditor editor, int offset) {
+		RegisterLocation(String key, ITextEditor editor, int offset) {
+			this.key = key;
 			this.setPosition(editor,offset);
 		}
 		
-		RegisterLocation(IFile path, int offset) {
+		RegisterLocation(String key, IFile path, int offset) {
+			this.key = key;
 			setPath(path);
 			this.position = new Position(offset,0);
 		}
+		
+		String getKey() {
+			return key;
+		}
 
 		/**
 		 * @see com.mulgasoft.emacsplus.IBufferLocation#getOffset()
@@ -486,11 +588,15 @@ public class TecoRegister {
 			IDocument document = editor.getDocumentProvider().getDocument(editor.getEditorInput());
 			// add position to document
 			try {
-				if (!document.containsPositionCategory(MarkRing.MARK_CATEGORY)) {
-					document.addPositionCategory(MarkRing.MARK_CATEGORY);
-					document.addPositionUpdater(MarkRing.updater);
+				// a restored location may refer to a file that has since changed
+				if (position.getOffset() > document.getLength()) {
+					position.setOffset(document.getLength());
 				}
-				document.addPosition(MarkRing.MARK_CATEGORY, position);
+				if (!document.containsPositionCategory(REGISTER_CATEGORY)) {
+					document.addPositionCategory(REGISTER_CATEGORY);
+					document.addPositionUpdater(registerUpdater);
+				}
+				document.addPosition(REGISTER_CATEGORY, position);
 			} catch (BadLocationException e) {
 			} catch (BadPositionCategoryException e) {
 			}
@@ -500,7 +606,7 @@ public class TecoRegister {
 			removeListener();
 			IDocument document = editor.getDocumentProvider().getDocument(editor.getEditorInput());
 			try {
-				document.removePosition(MarkRing.MARK_CATEGORY,position);
+				document.removePosition(REGISTER_CATEGORY,position);
 			} catch (BadPositionCategoryException e) {
 			}			
 		}
@@ -523,7 +629,12 @@ public class TecoRegister {
 			this.editor = editor;
 			if (this.editor != null) {
 				setPath(null);
-				addListener();
+				if (position != null) {
+					// lazily attach a restored location to the document on first jump
+					addPosition(editor,position);
+				} else {
+					addListener();
+				}
 			}
 		}
 		
@@ -594,15 +705,16 @@ public class TecoRegister {
 					removeListener(this);
 					IDocument document = editor.getDocumentProvider().getDocument(editor.getEditorInput());
 					// remove position category, if still present
-					if (document.containsPositionCategory(MarkRing.MARK_CATEGORY)) {
+					if (document.containsPositionCategory(REGISTER_CATEGORY)) {
 						try {
-							document.removePositionUpdater(MarkRing.updater);
-							document.removePositionCategory(MarkRing.MARK_CATEGORY);
+							document.removePositionUpdater(registerUpdater);
+							document.removePositionCategory(REGISTER_CATEGORY);
 						} catch (BadPositionCategoryException e) {
 						}
 					}
 					// convert to path
 					loc.setPath(convertToPath(editor));
+					storePoint(loc.getKey(), loc);
 				}
 			}
 		}
@@ -8,22 +8,28 @@
  */
 package com.mulgasoft.emacsplus.commands;
 
+import java.lang.ref.WeakReference;
 
 import org.eclipse.core.commands.ExecutionEvent;
 import org.eclipse.core.commands.common.CommandException;
 import org.eclipse.debug.ui.console.IConsole;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IDocumentPartitioner;
 import org.eclipse.jface.text.ITextSelection;
+import org.eclipse.jface.text.Position;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.StyledText;
 import org.eclipse.ui.IWorkbenchPart;
 import org.eclipse.ui.IWorkbenchPartSite;
+import org.eclipse.ui.console.IConsoleDocumentPartitioner;
 import org.eclipse.ui.console.IConsoleView;
 import org.eclipse.ui.console.TextConsoleViewer;
 import org.eclipse.ui.handlers.HandlerUtil;
 import org.eclipse.ui.handlers.IHandlerService;
 
+import com.mulgasoft.emacsplus.EmacsPlusUtils;
 import com.mulgasoft.emacsplus.IEmacsPlusCommandDefinitionIds;
 import com.mulgasoft.emacsplus.KillRing;
 
@@ -33,11 +39,20 @@ import com.mulgasoft.emacsplus.KillRing;
  */
 public abstract class BaseYankHandler extends EmacsPlusCmdHandler implements IConsoleDispatch {
 
+	private final static String INEDITABLE_BUFFER = "Cmd_Buffer_Error"; 	  //$NON-NLS-1$
+
 	// Console based commands do not have an editor, so get the eol directly from the widget
 	protected String widgetEol = null;
 
+	// The last yank into a document: yank-pop can verify that the yanked text is intact
+	// without reading it back from the document if the document has not changed since
+	private static WeakReference<IDocument> yankDocument = null;
+	private static Position yankPosition = null;
+	private static int yankHash = 0;
+	private static long yankStamp = IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+
 	protected abstract int yankIt(IDocument document, ITextSelection selection) throws BadLocationException; 
-	protected abstract void paste(ExecutionEvent event, StyledText widget, boolean isProcess);
+	protected abstract void paste(ExecutionEvent event, TextConsoleViewer viewer, boolean isProcess);
 	
 	protected String getLineDelimiter() {
 		String result = widgetEol;
@@ -48,7 +63,63 @@ public abstract class BaseYankHandler extends EmacsPlusCmdHandler implements ICo
 	}
 
 	/**
-	 * When called from a console context, use paste
+	 * Remember the text just yanked into the document
+	 * 
+	 * @param document
+	 * @param offset the start of the yanked text
+	 * @param text the (delimiter converted) yanked text
+	 */
+	protected void setLastYank(IDocument document, int offset, String text) {
+		clearLastYank();
+		try {
+			Position pos = new Position(offset, text.length());
+			document.addPosition(pos);
+			yankDocument = new WeakReference<IDocument>(document);
+			yankPosition = pos;
+			yankHash = text.hashCode();
+			yankStamp = getModificationStamp(document);
+		} catch (BadLocationException e) {
+			// then we'll verify the hard way
+		}
+	}
+
+	private static void clearLastYank() {
+		IDocument document = (yankDocument != null ? yankDocument.get() : null);
+		if (document != null && yankPosition != null) {
+			document.removePosition(yankPosition);
+		}
+		yankDocument = null;
+		yankPosition = null;
+	}
+
+	/**
+	 * Verify that text was the last yank, and that it ends at offset.
+	 * If the document has not been modified since the yank, this is a constant time check;
+	 * otherwise fall back to comparing the text in the document.
+	 *  
+	 * @param document
+	 * @param offset the end of the yanked text
+	 * @param text the (delimiter converted) text of the last yank
+	 * @return true if the yanked text is still present
+	 * @throws BadLocationException
+	 */
+	protected boolean isLastYank(IDocument document, int offset, String text) throws BadLocationException {
+		int len = text.length();
+		if (yankDocument != null && yankDocument.get() == document && !yankPosition.isDeleted()
+				&& yankPosition.getLength() == len && yankPosition.getOffset() + len == offset 
+				&& yankHash == text.hashCode() && yankStamp != IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP 
+				&& yankStamp == getModificationStamp(document)) {
+			return true;
+		}
+		return offset - len >= 0 && text.equals(document.get(offset - len, len));
+	}
+
+	private static long getModificationStamp(IDocument document) {
+		return (document instanceof IDocumentExtension4 ? ((IDocumentExtension4)document).getModificationStamp() : IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP);
+	}
+	
+	/**
+	 * When called from a console context, insert directly or (for process consoles) use paste
 	 * 
 	 * @see com.mulgasoft.emacsplus.commands.IConsoleDispatch#consoleDispatch(org.eclipse.ui.console.TextConsoleViewer, org.eclipse.ui.console.IConsoleView, org.eclipse.core.commands.ExecutionEvent)
 	 */
@@ -58,7 +129,7 @@ public abstract class BaseYankHandler extends EmacsPlusCmdHandler implements ICo
 		try {
 			// set directly from the widget
 			widgetEol = st.getLineDelimiter();
-			paste(event,st,activePart.getConsole() instanceof IConsole);
+			paste(event,viewer,activePart.getConsole() instanceof IConsole);
 		} finally {
 			st.redraw();
 			widgetEol = null;
@@ -68,7 +139,47 @@ public abstract class BaseYankHandler extends EmacsPlusCmdHandler implements ICo
 	}
 
 	/**
-	 * In the console context, use paste as
+	 * Replace text in the console document directly, without using the system clipboard.
+	 * The console partitioner treats the change as user input.
+	 * 
+	 * @param viewer the console viewer
+	 * @param offset
+	 * @param length
+	 * @param text
+	 * @return true if the text was replaced, false if the console is read only at offset
+	 */
+	protected boolean consoleReplace(TextConsoleViewer viewer, int offset, int length, String text) {
+		boolean result = false;
+		IDocument document = viewer.getDocument();
+		if (document != null && viewer.isEditable()) {
+			IDocumentPartitioner partitioner = document.getDocumentPartitioner();
+			if (!(partitioner instanceof IConsoleDocumentPartitioner) || !((IConsoleDocumentPartitioner)partitioner).isReadOnly(offset)) {
+				try {
+					document.replace(offset, length, text);
+					StyledText widget = viewer.getTextWidget();
+					widget.setSelection(offset + text.length());
+					widget.showSelection();
+					result = true;
+				} catch (BadLocationException e) {
+					// fall through and report failure
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Report (with a beep) that the console could not be yanked into, as the command
+	 * handler does for a read only editor
+	 * 
+	 * @param event
+	 */
+	protected void consoleReadOnly(ExecutionEvent event) {
+		EmacsPlusUtils.showMessage(HandlerUtil.getActivePart(event), INEDITABLE_BUFFER, true);
+	}
+	
+	/**
+	 * In the process console context, use paste as
 	 * in some consoles (e.g. org.eclipse.debug.internal.ui.views.console.ProcessConsole), updateText
 	 * will not simulate keyboard input
 	 *  
@@ -157,9 +157,6 @@ public class BrowseKillRingHandler extends EmacsPlusNoEditHandler implements Lin
 		if (!kr.isEmpty()) {
 			final EmacsPlusConsole console = EmacsPlusConsole.getInstance();
 			final BrowseKillRingHandler handler = this;
-			console.clear();
-			console.activate();
-			console.setName(KR_CONSOLE);
 			offsetHash = new HashMap<Integer,KilledText>(); 
 			// run asynchronously to ensure widget has been set up
 			EmacsPlusUtils.asyncUiRun(new Runnable() { 
@@ -169,8 +166,7 @@ public class BrowseKillRingHandler extends EmacsPlusNoEditHandler implements Lin
 					boolean flip = false;
 					int plen=0,len = 0;
 					Color color = offColor;
-					console.addBackground(handler);
-					console.setKeyHandler(handler);
+					StringBuilder listing = new StringBuilder();
 					IRingBufferElement<String> e = kr.yankElement();
 					for (int i = 0; i < count; i++) {
 						String text = e.get();
@@ -181,7 +177,7 @@ public class BrowseKillRingHandler extends EmacsPlusNoEditHandler implements Lin
 						kt.begin = plen;
 						kt.end = plen + tlen;
 						plen = kt.end + 1;
-						console.print(text + (i == count-1 ? EMPTY_STR : CR));
+						listing.append(text).append(i == count-1 ? EMPTY_STR : CR);
 						if (flip = !flip) {
 							color = onColor;
 						} else {
@@ -190,6 +186,12 @@ public class BrowseKillRingHandler extends EmacsPlusNoEditHandler implements Lin
 						e = kr.rotateYankPos();
 						len += 1 + tlen;
 					}
+					// write the whole ring in one batch; this clears the console, so set it up after
+					console.replaceContents(listing.toString());
+					console.activate();
+					console.setName(KR_CONSOLE);
+					console.addBackground(handler);
+					console.setKeyHandler(handler);
 					console.setFocus(false);
 				}});
 		}
@@ -29,18 +29,11 @@ public abstract class CaseCommandHandler extends EmacsPlusCmdHandler {
 	private boolean forward = true;
 	private ITextSelection initialSel = null;
 	
-	// unicode regex: [\p{L}[\p{Mn}[\p{Pc}[\p{Nd}[\p{Nl}[\p{Sc}]]]]]]+
+	// Tokens are runs of the TOKEN_REGEX character class: [\p{L}[\p{Mn}[\p{Nd}]]]
 	// \p{L}  = \p{Letter}: letter from any language
 	// \p{Mn} = \p{Non_Spacing_Mark}: a character intended to be combined with another character without taking up extra space (e.g. accents, umlauts, etc.).
-	// \p{Pc} = \p{Connector_Punctuation}: a punctuation character such as an underscore that connects words.
 	// \p{Nd} = \p{Decimal_Digit_Number}: a digit zero through nine in any script except ideographic scripts.
-	// \p{Nl} = \p{Letter_Number}: a number that looks like a letter, such as a Roman numeral.letter from any language
-	// \p{Sc} = \p{Currency_Symbol}: any currency sign.
-	
-	// word characters preceded by (ignored) non-word or BOL/BOB
-	private final static String REVERSE_TOKEN_EXP = "(?<=" + END_TOKEN_REGEX+ "|^)" +  TOKEN_REGEX; //$NON-NLS-1$ //$NON-NLS-2$
-	private final static String TOKEN_EXP = TOKEN_REGEX + "(?="+ END_TOKEN_REGEX + "|$)";   		//$NON-NLS-1$ //$NON-NLS-2$
-	
+	// They are located by a TokenScanner, which walks the document directly in either direction
 	
 	/**
 	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler#execute(org.eclipse.core.commands.ExecutionEvent)
@@ -62,7 +55,7 @@ public abstract class CaseCommandHandler extends EmacsPlusCmdHandler {
 	}
 
 	/**
-	 * For initial, empty selection support cursor embedded in a token on reverse direction as the FDA code doesn't
+	 * For initial, empty selection support cursor embedded in a token on reverse direction
 	 * @throws ExecutionException 
 	 *   
 	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler#getNewSelection(org.eclipse.jface.text.IDocument, org.eclipse.jface.text.ITextSelection)
@@ -72,28 +65,30 @@ public abstract class CaseCommandHandler extends EmacsPlusCmdHandler {
 		ITextSelection result = selection;
 		if (!forward && selection.getLength() == 0 && initialSel != null && initialSel.equals(selection)) {
 			// special code to anchor reverse selection at current position (which may be inside full token)
-			ITextSelection fore = getNextSelection(document,selection,true,END_TOKEN_REGEX);
+			ITextSelection fore = getNextNonToken(document,selection.getOffset());
 			if (fore != null && fore.getOffset() != selection.getOffset() ) {
 				// if we're starting from embedded position, search from end and then prune result to initial position
-				result = getNextSelection(document, fore, false, REVERSE_TOKEN_EXP);	
-				result = new TextSelection(document,result.getOffset(),result.getLength() - (fore.getOffset() - initialSel.getOffset()));
-				if (result.equals(selection)) {
-					// if we're back where we started, then not embedded so search back one token
-					result = getNextSelection(document, selection, false, REVERSE_TOKEN_EXP);	
+				result = getPrevToken(document, fore.getOffset());
+				if (result != null) {
+					result = new TextSelection(document,result.getOffset(),result.getLength() - (fore.getOffset() - initialSel.getOffset()));
+					if (result.equals(selection)) {
+						// if we're back where we started, then not embedded so search back one token
+						result = getPrevToken(document, selection.getOffset());
+					}
 				}
 			} else if (fore == null && (initialSel.getOffset() >= document.getLength())) {
 				// if we're starting at document end
-				result = getNextSelection(document,new TextSelection(document,selection.getOffset()-1,0),false,REVERSE_TOKEN_EXP);				
+				result = getPrevToken(document,selection.getOffset()-1);
 			} else {
 				// we're starting eow
-				result = getNextSelection(document, selection, false, REVERSE_TOKEN_EXP);					
+				result = getPrevToken(document, selection.getOffset());
 			}
 		} else {
 			if (!forward && result.getOffset() > 0) {
 				// back up over preceding non-word character
 				result = new TextSelection(document, result.getOffset()-1, result.getLength());
 			}
-			result = getNextSelection(document, result, forward, (forward ? TOKEN_EXP : REVERSE_TOKEN_EXP));
+			result = (forward ? getNextToken(document, result.getOffset()) : getPrevToken(document, result.getOffset()));
 		}
 		if (result == null)
 			// break out of count 
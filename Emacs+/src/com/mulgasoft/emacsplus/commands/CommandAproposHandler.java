@@ -113,13 +113,15 @@ public class CommandAproposHandler extends MinibufferExecHandler implements INon
 			}
 			blanks = nameBuf.toString();
 			EmacsPlusConsole console = EmacsPlusConsole.getInstance();
-			console.clear();
-			console.activate();
+			// build the whole listing, then write it in one batch
+			EmacsPlusConsole.Listing listing = console.createListing();
 			for (Entry<String, Command> entry : entries) {
 				nameBuf.replace(0, maxLen, blanks);
 				nameBuf.replace(0, entry.getKey().length(), entry.getKey());
-				printCommand(nameBuf.toString(), entry.getValue(), console);
+				printCommand(nameBuf.toString(), entry.getValue(), listing);
 			}
+			console.replaceContents(listing);
+			console.activate();
 		} else {
 			fail(editor,apropos);
 		}
@@ -134,18 +136,18 @@ public class CommandAproposHandler extends MinibufferExecHandler implements INon
 		}		
 	}
 	
-	private void printCommand(String name, Command command, EmacsPlusConsole console) {
-		console.printBold(name + SWT.TAB);
+	private void printCommand(String name, Command command, EmacsPlusConsole.Listing listing) {
+		listing.printBold(name + SWT.TAB);
 		String bindingStrings = CommandHelp.getKeyBindingString(command, true);
 		bindingStrings = (bindingStrings == null) ? MX_MSG : bindingStrings; 
-		console.printContext(A_MSG + bindingStrings + Z_MSG);
+		listing.printContext(A_MSG + bindingStrings + Z_MSG);
 		try {
 			String desc = command.getDescription();
 			if (desc != null) {
 				desc = desc.replaceAll(CR, CR + blanks + SWT.TAB);
-				console.print(desc + CR);
+				listing.print(desc + CR);
 			} else {
-				console.print(CR);
+				listing.print(CR);
 			}
 		} catch (NotDefinedException e) {
 		}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.commands;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.ITextSelection;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+import com.mulgasoft.emacsplus.EmacsPlusActivator;
+import com.mulgasoft.emacsplus.EmacsPlusUtils;
+import com.mulgasoft.emacsplus.execute.CommandStatistics;
+
+/**
+ * Export the Emacs+ command statistics as csv to the plug-in state location
+ *  
+ * @author mfeber
+ */
+public class CommandStatisticsExportHandler extends EmacsPlusNoEditHandler {
+
+	private final static String STATS_EXPORTED = EmacsPlusActivator.getResourceString("Stats_Exported");  		//$NON-NLS-1$
+	private final static String STATS_EXPORT_ERROR = EmacsPlusActivator.getResourceString("Stats_Export_Error"); //$NON-NLS-1$
+
+	/**
+	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusNoEditHandler#transform(ITextEditor, IDocument, ITextSelection, ExecutionEvent)
+	 */
+	@Override
+	protected int transform(ITextEditor editor, IDocument document, ITextSelection currentSelection,
+			ExecutionEvent event) throws BadLocationException {
+		try {
+			File file = CommandStatistics.getInstance().exportCsv();
+			EmacsPlusUtils.showMessage(editor, String.format(STATS_EXPORTED, file.getAbsolutePath()), false);
+		} catch (IOException e) {
+			EmacsPlusUtils.showMessage(editor, String.format(STATS_EXPORT_ERROR, e.getMessage()), true);
+		}
+		return NO_OFFSET;
+	}
+
+	/**
+	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler#isLooping()
+	 */
+	@Override
+	protected boolean isLooping() {
+		return false;
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.commands;
+
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.ITextSelection;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+import com.mulgasoft.emacsplus.EmacsPlusActivator;
+import com.mulgasoft.emacsplus.EmacsPlusUtils;
+import com.mulgasoft.emacsplus.execute.CommandStatistics;
+
+/**
+ * Display the Emacs+ command statistics in the Emacs+ console
+ * 
+ * With C-u, toggle recording: if not recording, clear the current statistics and start 
+ * With C-u C-u, start recording with allocation (when supported by the vm)
+ *  
+ * @author mfeber
+ */
+public class CommandStatisticsHandler extends EmacsPlusNoEditHandler {
+
+	private final static String STATS_STARTED = EmacsPlusActivator.getResourceString("Stats_Started");  			//$NON-NLS-1$
+	private final static String STATS_STARTED_ALLOC = EmacsPlusActivator.getResourceString("Stats_Started_Alloc"); 	//$NON-NLS-1$
+	private final static String STATS_STOPPED = EmacsPlusActivator.getResourceString("Stats_Ended");				//$NON-NLS-1$
+
+	/**
+	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusNoEditHandler#transform(ITextEditor, IDocument, ITextSelection, ExecutionEvent)
+	 */
+	@Override
+	protected int transform(ITextEditor editor, IDocument document, ITextSelection currentSelection,
+			ExecutionEvent event) throws BadLocationException {
+		CommandStatistics stats = CommandStatistics.getInstance();
+		if (isUniversalPresent()) {
+			if (stats.isRecording()) {
+				stats.stop();
+				EmacsPlusUtils.showMessage(editor, STATS_STOPPED, false);
+			} else {
+				stats.reset();
+				stats.start(getUniversalCount() > 4);
+				EmacsPlusUtils.showMessage(editor, (stats.isAllocation() ? STATS_STARTED_ALLOC : STATS_STARTED), false);
+			}
+		} else {
+			stats.printReport();
+		}
+		return NO_OFFSET;
+	}
+
+	/**
+	 * ^U toggles recording rather than repeating the command
+	 * 
+	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler#isLooping()
+	 */
+	@Override
+	protected boolean isLooping() {
+		return false;
+	}
+}
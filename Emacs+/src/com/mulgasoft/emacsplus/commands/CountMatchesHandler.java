@@ -23,6 +23,9 @@ import org.eclipse.jface.text.ITextSelection;
 import org.eclipse.ui.texteditor.ITextEditor;
 
 import com.mulgasoft.emacsplus.EmacsPlusActivator;
+import com.mulgasoft.emacsplus.LargeFileMode;
+import com.mulgasoft.emacsplus.execute.LiteralSearch;
+import com.mulgasoft.emacsplus.execute.MatchCounter;
 import com.mulgasoft.emacsplus.minibuffer.ReadRegexpMinibuffer;
 
 /**
@@ -39,6 +42,7 @@ public class CountMatchesHandler extends MinibufferExecHandler implements INonEd
 
 	private final static String OCCURRENCE = "Count_Match_Occurrence";  									   //$NON-NLS-1$
 	private final static String OCCURRENCES = EmacsPlusActivator.getResourceString("Count_Match_Occurrences"); //$NON-NLS-1$
+	private final static String INFINITE_LOOP = "Infinite loop on = ";										   //$NON-NLS-1$
 
 	/**
 	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler#transform(ITextEditor, IDocument, ITextSelection, ExecutionEvent)
@@ -62,19 +66,34 @@ public class CountMatchesHandler extends MinibufferExecHandler implements INonEd
 			try {
 				int count = 1;	// cursor is already at the end of the first find
 				int begin = getCursorOffset(editor);
-				String searchStr = getSearchStr(minibufferResult); 
-				FindReplaceDocumentAdapter fda =  new FindReplaceDocumentAdapter(getThisDocument(editor));
-				IRegion found = null;
-				while ((found = getNextMatch(fda,begin,searchStr)) != null) {
-					++count;
-					int tmp = found.getOffset() + found.getLength();
-					if (tmp != begin) {
-						begin = tmp;
-					} else {
-						// offset should always move after match, but just in case
-						msg = "Infinite loop on = " + searchStr;	//$NON-NLS-1$
+				IDocument document = getThisDocument(editor);
+				String regExp = (String)minibufferResult;
+				if (LiteralSearch.isLiteral(regExp) || LargeFileMode.isLarge(document)) {
+					// a plain (case insensitive, as below) string search will do if there are no
+					// metacharacters, and a large document is matched in place
+					String searchStr = getSearchStr(minibufferResult);
+					int matches = MatchCounter.count(document, begin, searchStr);
+					if (matches < 0) {
+						msg = INFINITE_LOOP + searchStr;
 						isError = true;
-						break;
+					} else {
+						count += matches;
+					}
+				} else {
+					String searchStr = getSearchStr(minibufferResult); 
+					FindReplaceDocumentAdapter fda =  new FindReplaceDocumentAdapter(document);
+					IRegion found = null;
+					while ((found = getNextMatch(fda,begin,searchStr)) != null) {
+						++count;
+						int tmp = found.getOffset() + found.getLength();
+						if (tmp != begin) {
+							begin = tmp;
+						} else {
+							// offset should always move after match, but just in case
+							msg = INFINITE_LOOP + searchStr;
+							isError = true;
+							break;
+						}
 					}
 				}
 				if (msg == null) {
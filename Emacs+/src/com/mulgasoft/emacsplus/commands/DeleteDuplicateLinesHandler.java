@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.commands;
+
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITextSelection;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+import com.mulgasoft.emacsplus.EmacsPlusActivator;
+import com.mulgasoft.emacsplus.EmacsPlusUtils;
+import com.mulgasoft.emacsplus.execute.LineTable;
+
+/**
+ * Implements: delete-duplicate-lines
+ * 
+ * Delete all but one copy of any identical lines in the region.
+ * With a ^U argument, keep the last copy rather than the first;
+ * with ^U^U, only delete a line that is identical to the line before it.
+ * 
+ * The lines are compared in a single pass using a hash table of the lines
+ * seen so far, and the region is rewritten with one replace.
+ * 
+ * @author mfeber
+ */
+public class DeleteDuplicateLinesHandler extends LineHandler {
+
+	private final static String DUPLICATES_DELETED = EmacsPlusActivator.getResourceString("Duplicate_Lines_Deleted"); //$NON-NLS-1$
+
+	/**
+	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler#transform(ITextEditor, IDocument, ITextSelection, ExecutionEvent)
+	 */
+	@Override
+	protected int transform(ITextEditor editor, IDocument document, ITextSelection currentSelection, ExecutionEvent event)
+	throws BadLocationException {
+		int result = getCursorOffset(editor,currentSelection);
+		ITextSelection selection = getImpliedSelection(editor,currentSelection);
+		if (selection != null) {
+			int offset = selection.getOffset();
+			// include the line of the start of the selection
+			IRegion region = LineTable.getWholeLines(document,document.getLineOffset(document.getLineOfOffset(offset)),offset+selection.getLength());
+			LineTable table = new LineTable(document,region.getOffset(),region.getLength(),true);
+			int count = getUniversalCount();
+			if (count > 4) {
+				table.unique(true);
+			} else if (count == 4) {
+				table.reverse().unique(false).reverse();
+			} else {
+				table.unique(false);
+			}
+			int deleted = table.getLineCount() - table.size(); 
+			if (deleted > 0) {
+				updateLines(document,table);
+				result = region.getOffset();
+			}
+			asyncShowMessage(editor,String.format(DUPLICATES_DELETED,deleted),false);
+		} else {
+			EmacsPlusUtils.showMessage(editor, NO_REGION, true);
+		}
+		return result;
+	}
+
+	/**
+	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler#isLooping()
+	 */
+	@Override
+	protected boolean isLooping() {
+		return false;
+	}
+}
@@ -11,6 +11,7 @@ package com.mulgasoft.emacsplus.commands;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.function.Function;
 
 import org.eclipse.core.commands.AbstractHandler;
@@ -50,11 +51,15 @@ import org.eclipse.ui.texteditor.ITextEditorExtension;
 import org.eclipse.ui.texteditor.ITextEditorExtension2;
 
 import com.mulgasoft.emacsplus.Beeper;
+import com.mulgasoft.emacsplus.EmacsPlusActivator;
 import com.mulgasoft.emacsplus.EmacsPlusUtils;
 import com.mulgasoft.emacsplus.IBeepListener;
 import com.mulgasoft.emacsplus.IEmacsPlusCommandDefinitionIds;
+import com.mulgasoft.emacsplus.LargeFileMode;
 import com.mulgasoft.emacsplus.MarkUtils;
+import com.mulgasoft.emacsplus.execute.LineTable;
 import com.mulgasoft.emacsplus.execute.RepeatCommandSupport;
+import com.mulgasoft.emacsplus.execute.TokenScanner;
 
 /**
  * Base class of all Emacs+ command handlers
@@ -65,6 +70,7 @@ public abstract class EmacsPlusCmdHandler extends AbstractHandler implements IHa
 
 	final static String BAD_LOCATION_ERROR = "Bad_Location_Error";  		  //$NON-NLS-1$
 	private final static String INEDITABLE_BUFFER = "Cmd_Buffer_Error"; 	  //$NON-NLS-1$
+	private final static String LARGE_COUNT_CAP = EmacsPlusActivator.getResourceString("Large_File_Count_Cap");	//$NON-NLS-1$
 	
 	// word characters terminated by (ignored) non-word or EOL/EOB
 	// \p{L}  = \p{Letter}: letter from any language
@@ -468,6 +474,10 @@ public abstract class EmacsPlusCmdHandler extends AbstractHandler implements IHa
 		IRewriteTarget rt = null;
 		boolean undoProtect = undoProtect();
 		int ucount = Math.abs(getUniversalCount());
+		if (isLooping()) {
+			// a count that is a value (e.g. a column), rather than a repeat, is left as is
+			ucount = capCount(editor, document, ucount);
+		}
 		int newOffset = NO_OFFSET;
 		if (ucount == 0 && isZero()) {
 			// enable commands that support ^U 0 via count
@@ -643,9 +653,18 @@ public abstract class EmacsPlusCmdHandler extends AbstractHandler implements IHa
 		return result;
 	}
 
+	// converted text of (large) yanked strings: text -> {eol, converted text (or null if unchanged)}
+	// The value must not refer to the (weak) key, so unchanged text is recorded as null
+	private static final Map<String, String[]> delimiterCache = new WeakHashMap<String, String[]>();
+	// don't bother caching the conversion of short strings
+	private static final int DELIMITER_CACHE_MIN = 1024;
+	
 	/**
 	 * On paste, Eclipse StyledText converts EOLs to the buffer local value
 	 * Provide the same feature for yank
+	 * 
+	 * The conversion of large strings (e.g. kill ring entries) is cached per line delimiter,
+	 * so cycling through the kill ring does not convert the same text again.
 	 *  
 	 * @param text
 	 * @return text with line delimiters converted to buffer local value
@@ -655,33 +674,50 @@ public abstract class EmacsPlusCmdHandler extends AbstractHandler implements IHa
 		int len;
 		if (text != null && (len = text.length()) > 0) {
 			String eol = getLineDelimiter();
-			StringBuilder dest = new StringBuilder(len);
-			boolean atEol = false;
-			for (int i = 0; i < len; i++) {
-				char c = text.charAt(i);
-				if (c == SWT.CR) {
-					if (atEol) {
-						dest.append(eol);						
-					}
-					atEol = true;
-					continue;
-				} else if (c == SWT.LF) {
-					atEol = false;
-					dest.append(eol);
-					continue;
+			String[] cached = (len >= DELIMITER_CACHE_MIN ? delimiterCache.get(text) : null);
+			if (cached != null && cached[0].equals(eol)) {
+				result = (cached[1] != null ? cached[1] : text);
+			} else {
+				result = doConvertDelimiters(text, eol);
+				if (len >= DELIMITER_CACHE_MIN) {
+					delimiterCache.put(text, new String[] {eol, (result == text ? null : result)});
 				}
+			}
+		}
+		return result;
+	}
+
+	private String doConvertDelimiters(String text, String eol) {
+		// fast path: no CRs, and either no LFs or LF is the delimiter
+		if (text.indexOf(SWT.CR) == -1 && (text.indexOf(SWT.LF) == -1 || (eol.length() == 1 && eol.charAt(0) == SWT.LF))) {
+			return text;
+		}
+		int len = text.length();
+		StringBuilder dest = new StringBuilder(len);
+		boolean atEol = false;
+		for (int i = 0; i < len; i++) {
+			char c = text.charAt(i);
+			if (c == SWT.CR) {
 				if (atEol) {
-					atEol = false;
-					dest.append(eol);
+					dest.append(eol);						
 				}
-				dest.append(c);
+				atEol = true;
+				continue;
+			} else if (c == SWT.LF) {
+				atEol = false;
+				dest.append(eol);
+				continue;
 			}
 			if (atEol) {
+				atEol = false;
 				dest.append(eol);
 			}
-			result = dest.toString();
+			dest.append(c);
 		}
-		return result;
+		if (atEol) {
+			dest.append(eol);
+		}
+		return dest.toString();
 	}
 	
 	protected int insertText(IDocument document, ITextSelection selection, String text) throws BadLocationException {
@@ -823,48 +859,80 @@ public abstract class EmacsPlusCmdHandler extends AbstractHandler implements IHa
 		}
 		document.replace(offset,length,newText);
 	}
+
+	/**
+	 * Update the region of the line table with its current set of lines
+	 * 
+	 * @param document
+	 * @param table
+	 * @throws BadLocationException
+	 */
+	protected void updateLines(IDocument document, LineTable table) throws BadLocationException  {
+		if (table.isChanged()) {
+			updateText(document,table.getBase(),table.getRegionLength(),table.getText(getLineDelimiter()));
+		}
+	}
 	
 	/**
-	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler#getNextSelection(IDocument,ITextSelection,boolean,String)
+	 * Find the next token (or remainder of the current token) in the document
 	 *
 	 * @param document
 	 * @param selection
 	 */
 	protected ITextSelection getNextSelection(IDocument document, ITextSelection selection) {
-		return getNextSelection(document, selection, true, TOKEN_REGEX);
+		return getNextToken(document, selection.getOffset());
 	}
 	
 	/**
-	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler#getNextSelection(IDocument,ITextSelection,boolean,String)
-	 *
+	 * Find the first token at or after offset, using the TOKEN_REGEX character class
+	 * 
 	 * @param document
-	 * @param selection
+	 * @param offset
+	 * @return the token as a selection, or null
 	 */
-	protected ITextSelection getPrevSelection(IDocument document, ITextSelection selection) {
-		return getNextSelection(document, selection, false, TOKEN_REGEX);
+	protected ITextSelection getNextToken(IDocument document, int offset) {
+		ITextSelection result = null;
+		try {
+			result = toSelection(document, new TokenScanner(document).nextToken(offset));
+		} catch (BadLocationException e) {}
+		return result;
 	}
 	
 	/**
-	 * Find the next token in the document and return it as a selection
-
+	 * Find the last complete token before offset, using the TOKEN_REGEX character class
+	 * As with a backward FindReplaceDocumentAdapter search, the token may end one past offset
+	 * 
 	 * @param document
-	 * @param selection
-	 * @param forward
-	 * @param regExp
-	 * @return the newly selected text
+	 * @param offset
+	 * @return the token as a selection, or null
 	 */
-	protected ITextSelection getNextSelection(IDocument document, ITextSelection selection, boolean forward, String regExp) {
+	protected ITextSelection getPrevToken(IDocument document, int offset) {
 		ITextSelection result = null;
-		FindReplaceDocumentAdapter fda =  new FindReplaceDocumentAdapter(document);
 		try {
-			IRegion reg = fda.find(selection.getOffset(), regExp, forward, false, false, true);
-			if (reg != null) {
-				result = new TextSelection(document, reg.getOffset(), reg.getLength());
-			}
+			result = toSelection(document, new TokenScanner(document).previousToken(offset + 1));
 		} catch (BadLocationException e) {}
 		return result;
 	}
 	
+	/**
+	 * Find the first END_TOKEN_REGEX character at or after offset
+	 * 
+	 * @param document
+	 * @param offset
+	 * @return the character as a selection, or null
+	 */
+	protected ITextSelection getNextNonToken(IDocument document, int offset) {
+		ITextSelection result = null;
+		try {
+			result = toSelection(document, new TokenScanner(document).nextNonToken(offset));
+		} catch (BadLocationException e) {}
+		return result;
+	}
+	
+	private ITextSelection toSelection(IDocument document, IRegion reg) {
+		return (reg != null ? new TextSelection(document, reg.getOffset(), reg.getLength()) : null);
+	}
+	
 	/**
 	 * Invoke the specified command using the handler service
 	 * 
@@ -1130,6 +1198,22 @@ public abstract class EmacsPlusCmdHandler extends AbstractHandler implements IHa
 	}
 
 	// **************** Universal arg command processing methods ****************
+
+	/**
+	 * Cap the repeat count in large documents, and tell the user when it has been
+	 * 
+	 * @param editor
+	 * @param document
+	 * @param count
+	 * @return the (possibly) capped count
+	 */
+	protected int capCount(ITextEditor editor, IDocument document, int count) {
+		int result = LargeFileMode.capCount(document, count);
+		if (result != count) {
+			asyncShowMessage(editor, String.format(LARGE_COUNT_CAP, count, result), false);
+		}
+		return result;
+	}
 	
 	/**
 	 * Return the inverse operation for the specified command id.
@@ -1332,6 +1416,7 @@ public abstract class EmacsPlusCmdHandler extends AbstractHandler implements IHa
 		IRewriteTarget rt = null;		
 		Control widget = null;
 		// Now execute the command - count will always be positive at this point
+		count = capCount(editor, document, count);
 		try {
 			if (count > 1) {
 				rt = (IRewriteTarget) editor.getAdapter(IRewriteTarget.class);
@@ -8,9 +8,6 @@
  */
 package com.mulgasoft.emacsplus.commands;
 
-import java.util.ArrayList;
-import java.util.Collections;
-
 import org.eclipse.core.commands.ExecutionEvent;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
@@ -20,6 +17,7 @@ import org.eclipse.ui.texteditor.ITextEditor;
 
 import com.mulgasoft.emacsplus.EmacsPlusActivator;
 import com.mulgasoft.emacsplus.EmacsPlusUtils;
+import com.mulgasoft.emacsplus.execute.LineTable;
 
 /**
  * Base class for field sorting commands
@@ -53,30 +51,27 @@ public abstract class FieldsHandler extends LineHandler {
     		int begin = document.getLineOfOffset(offset);
     		int end = document.getLineOfOffset(endOffset);
     		if (begin != end && begin < end) {
-    			int len = (end-begin)+1;
-    			ArrayList<FieldsCompare> alst = new ArrayList<FieldsCompare>();
+    			// fields are split from full lines
+    			IRegion last = document.getLineInformation(end);
+    			int lineOffset = document.getLineOffset(begin);
+    			LineTable table = new LineTable(document,lineOffset,last.getOffset()+last.getLength()-lineOffset);
+    			int len = table.size();
+    			FieldsCompare[] keys = new FieldsCompare[len];
     			// get each line and check for presence of 'field'
     			for (int i = 0; i < len; i++) {
-    				IRegion region = document.getLineInformation(begin+i);
-    				String txt = document.get(region.getOffset(),region.getLength());
+    				String txt = table.getLine(i);
     				String[] split = txt.split(SPLIT_ON);
     				int splen = split.length;
     				int idx = (back ? splen-index : index); 
     				if (idx >= 0 && idx < splen) {
-    					alst.add(getComparable(txt,split[idx]));
+    					keys[i] = getComparable(txt,split[idx]);
     				} else {
     					asyncShowMessage(editor,String.format(INSUFFICIENT_FIELDS,txt), true);
     					return NO_OFFSET;
     				}
     			}
     			// sort on 'field'
-    			Collections.sort(alst);
-    			String[] array = new String[alst.size()];
-    			int i = 0;
-    			for (Comparable<?> n : alst) {
-    				array[i++] = n.toString();
-    			}
-    			updateLines(document,selection,array);    			
+    			updateLines(document,table.sort((t, line1, line2) -> keys[line1].compareTo(keys[line2])));
     		} else {
     			EmacsPlusUtils.showMessage(editor, NO_REGION, true);
     		}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.commands;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITextSelection;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+import com.mulgasoft.emacsplus.EmacsPlusActivator;
+import com.mulgasoft.emacsplus.execute.LineTable;
+import com.mulgasoft.emacsplus.minibuffer.ReadRegexpMinibuffer;
+
+/**
+ * Base class for keep-lines and flush-lines
+ * 
+ * If the selection is active, operate on the lines of the selection, else on the text from point
+ * to the end of the buffer.  If point is not at the beginning of a line, start at the next line.
+ * 
+ * The lines are read once into a LineTable, filtered with a single compiled pattern and written
+ * back with one replace (so there is one undo unit).  Each remaining line keeps its own delimiter.
+ * As with search, the match is case insensitive unless the regexp contains an upper case character.
+ * 
+ * @author mfeber
+ */
+public abstract class FilterLinesHandler extends MinibufferExecHandler {
+
+	private final static String LINES_DELETED = EmacsPlusActivator.getResourceString("Lines_Deleted"); //$NON-NLS-1$
+
+	// the region of whole lines to filter, set when the command is invoked
+	private int regionOffset = 0;
+	private int regionEnd = 0;
+	// point when the command is invoked, before the minibuffer search moves it
+	private int cursor = 0;
+
+	/**
+	 * @return true to keep matching lines, false to remove them
+	 */
+	protected abstract boolean isKeep();
+	
+	/**
+	 * @return the minibuffer prompt
+	 */
+	protected abstract String getPrompt();
+	
+	/**
+	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler#transform(ITextEditor, IDocument, ITextSelection, ExecutionEvent)
+	 */
+	@Override
+	protected int transform(ITextEditor editor, IDocument document, ITextSelection currentSelection, ExecutionEvent event)
+	throws BadLocationException {
+		int offset = currentSelection.getOffset();
+		int end = (currentSelection.getLength() > 0 ? offset + currentSelection.getLength() : document.getLength());
+		IRegion region = LineTable.getWholeLines(document, offset, end);
+		regionOffset = region.getOffset();
+		regionEnd = regionOffset + region.getLength();
+		cursor = getCursorOffset(editor, currentSelection);
+		return bufferTransform(new ReadRegexpMinibuffer(this, getPrompt(), false), editor, event); 		
+	}
+
+	/**
+	 * @see com.mulgasoft.emacsplus.commands.MinibufferExecHandler#doExecuteResult(org.eclipse.ui.texteditor.ITextEditor, java.lang.Object)
+	 */
+	@Override
+	protected boolean doExecuteResult(ITextEditor editor, Object minibufferResult) {
+		if (minibufferResult != null) {
+			IDocument document = getThisDocument(editor);
+			try {
+				Pattern pattern = getPattern((String)minibufferResult);
+				if (regionEnd <= document.getLength() && regionOffset < regionEnd) {
+					LineTable table = new LineTable(document, regionOffset, regionEnd - regionOffset, true);
+					table.filter(pattern, isKeep());
+					int count = table.getLineCount() - table.size();
+					if (count > 0) {
+						int length = document.getLength();
+						// each line keeps its own delimiter, even when the (unterminated) last line is flushed
+						updateText(document, table.getBase(), table.getRegionLength(), table.getOriginalText(getLineDelimiter()));
+						// leave point where it was, or at the start of the region if it was within it 
+						int point = cursor;
+						if (point >= regionEnd) {
+							point += document.getLength() - length;
+						} else if (point > regionOffset) {
+							point = regionOffset;
+						}
+						selectAndReveal(editor, point, point);
+					}
+					asyncShowMessage(editor, String.format(LINES_DELETED, count), false);
+				}
+			} catch (PatternSyntaxException e) {
+				asyncShowMessage(editor, e.getDescription(), true);
+			} catch (BadLocationException e) {
+				// shouldn't happen, but alert user if it does
+				asyncShowMessage(editor, BAD_LOCATION_ERROR, true);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compile the regexp, ignoring case if it has no upper case characters
+	 * 
+	 * @param regexp
+	 * @return the compiled Pattern
+	 */
+	private Pattern getPattern(String regexp) {
+		boolean hasUpper = false;
+		for (int i = 0; i < regexp.length() && !hasUpper; i++) {
+			hasUpper = Character.isUpperCase(regexp.charAt(i));
+		}
+		return Pattern.compile(regexp, (hasUpper ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE));
+	}
+
+	/**
+	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler#isLooping()
+	 */
+	@Override
+	protected boolean isLooping() {
+		return false;
+	}
+}
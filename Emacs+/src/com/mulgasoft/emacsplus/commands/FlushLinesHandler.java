@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.commands;
+
+import com.mulgasoft.emacsplus.EmacsPlusActivator;
+
+/**
+ * Implements: flush-lines
+ * 
+ * Delete lines containing matches for REGEXP
+ * 
+ * @author mfeber
+ */
+public class FlushLinesHandler extends FilterLinesHandler {
+
+	private final static String PREFIX = EmacsPlusActivator.getResourceString("Flush_Lines_Prefix"); //$NON-NLS-1$
+
+	/**
+	 * @see com.mulgasoft.emacsplus.commands.FilterLinesHandler#isKeep()
+	 */
+	@Override
+	protected boolean isKeep() {
+		return false;
+	}
+
+	/**
+	 * @see com.mulgasoft.emacsplus.commands.FilterLinesHandler#getPrompt()
+	 */
+	@Override
+	protected String getPrompt() {
+		return PREFIX;
+	}
+}
@@ -8,14 +8,29 @@
  */
 package com.mulgasoft.emacsplus.commands;
 
+import java.util.List;
+
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.IRewriteTarget;
 import org.eclipse.jface.text.ITextSelection;
 import org.eclipse.jface.text.TextSelection;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.text.edits.MalformedTreeException;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+import org.eclipse.ui.editors.text.EditorsUI;
+import org.eclipse.ui.editors.text.TextEditor;
+import org.eclipse.ui.texteditor.AbstractTextEditor;
 import org.eclipse.ui.texteditor.ITextEditor;
 
 import com.mulgasoft.emacsplus.EmacsPlusUtils;
 import com.mulgasoft.emacsplus.MarkUtils;
+import com.mulgasoft.emacsplus.execute.KbdMacroLineModel;
+import com.mulgasoft.emacsplus.execute.KbdMacroSupport;
+import com.mulgasoft.emacsplus.execute.KbdMacroSupport.KbdEvent;
 
 /**
  * Implements: apply-macro-to-region-lines 
@@ -25,6 +40,13 @@ import com.mulgasoft.emacsplus.MarkUtils;
  * It does this line by line, by moving point to the beginning of the line
  * and then executing the macro.
  * 
+ * A macro whose edits are confined to the current line (see KbdMacroLineModel) is instead run 
+ * on the text of each line, and the results applied to the document as a single edit; so a 
+ * large region takes one pass, rather than a round trip to the ui-thread for each event of each line.
+ * As the model edits the text directly, this is only done in the plain text editor, which has no 
+ * auto edit strategies, smart backspace or verify key listeners to change what the typed keys do; 
+ * in any other editor the macro is executed event by event on each line.
+ * 
  * @author Mark Feber - initial API and implementation
  */
 public class KbdMacroApplyHandler extends KbdMacroExecuteHandler {
@@ -34,6 +56,13 @@ public class KbdMacroApplyHandler extends KbdMacroExecuteHandler {
 	protected void runMacro(final ITextEditor editor,final IDocument document,final ITextSelection selection, final KbdLock vkf, final int count,
 			final String cmdId, final MacroCount keepCount) {
 		selector = new Selector(selection,editor,document,cmdId, keepCount);		
+		if (getProgress() != null) {
+			getProgress().setTotal(selector.end - selector.begin);
+		}
+		if (count == 1 && runLines(editor, document)) {
+			endMacro(editor, cmdId, keepCount);
+			return;
+		}
 		// selectNext changes selection in editor, so must be called within ui thread
 		if (selector.selectNext()) {
 			selector.startUndo();
@@ -41,6 +70,87 @@ public class KbdMacroApplyHandler extends KbdMacroExecuteHandler {
 		}
 	}
 	
+	/**
+	 * Run a line-local macro on the text of each line in the selector's range, and apply
+	 * all the changed lines as one edit (and one undo)
+	 * 
+	 * @param editor
+	 * @param document
+	 * @return true if the macro was run, false if it must be executed event by event
+	 */
+	private boolean runLines(ITextEditor editor, IDocument document) {
+		// other editors may transform typed text in ways the model cannot see
+		if (editor.getClass() != TextEditor.class) {
+			return false;
+		}
+		KbdMacroSupport support = KbdMacroSupport.getInstance();
+		List<KbdEvent> macro = (getKbdMacroName() == null ? support.getCompiledMacroEvents() : support.getCompiledMacroEvents(getKbdMacroName()));
+		KbdMacroLineModel model = KbdMacroLineModel.compile(macro,
+				EditorsUI.getPreferenceStore().getBoolean(AbstractTextEditor.PREFERENCE_NAVIGATION_SMART_HOME_END));
+		if (model == null || !editor.isEditable() || selector.begin >= selector.end) {
+			return false;
+		}
+		// in overwrite mode typing replaces characters, which the model does not
+		Control widget = getTextWidget(editor);
+		if (widget == null || Boolean.TRUE.equals(EmacsPlusUtils.getAF(widget, OVERWRITE))) {
+			return false;
+		}
+		MultiTextEdit edit = new MultiTextEdit();
+		int delta = 0;
+		int caret = 0;
+		try {
+			for (int line = selector.begin + 1; line <= selector.end; line++) {
+				IRegion info = document.getLineInformation(line);
+				String text = document.get(info.getOffset(), info.getLength());
+				String result = model.apply(text);
+				if (result == null) {
+					// it would leave the line, so the lines can't be run independently
+					return false;
+				}
+				// replace only the part of the line that changed
+				int len = Math.min(text.length(), result.length());
+				int prefix = 0;
+				while (prefix < len && text.charAt(prefix) == result.charAt(prefix)) {
+					++prefix;
+				}
+				int suffix = 0;
+				while (suffix < len - prefix && text.charAt(text.length() - suffix - 1) == result.charAt(result.length() - suffix - 1)) {
+					++suffix;
+				}
+				if (prefix < text.length() - suffix || prefix < result.length() - suffix) {
+					edit.addChild(new ReplaceEdit(info.getOffset() + prefix, text.length() - suffix - prefix,
+							result.substring(prefix, result.length() - suffix)));
+				}
+				caret = info.getOffset() + delta + model.getCaret();
+				delta += result.length() - text.length();
+			}
+			if (edit.hasChildren()) {
+				IRewriteTarget rt = (IRewriteTarget) editor.getAdapter(IRewriteTarget.class);
+				if (rt != null) {
+					rt.beginCompoundChange();
+				}
+				try {
+					edit.apply(document, TextEdit.NONE);
+				} finally {
+					if (rt != null) {
+						rt.endCompoundChange();
+					}
+				}
+			}
+			MarkUtils.setCursorOffset(editor, caret);
+			if (getProgress() != null) {
+				int lines = selector.end - selector.begin;
+				getProgress().addIterations(lines);
+				getProgress().addEvents(lines * macro.size());
+			}
+		} catch (BadLocationException e) {
+			return false;
+		} catch (MalformedTreeException e) {
+			return false;
+		}
+		return true;
+	}
+
 	/**
 	 * @see com.mulgasoft.emacsplus.commands.KbdMacroExecuteHandler#executeOnce(ITextEditor, IDocument, ITextSelection, KbdMacroExecuteHandler.KbdLock)
 	 */
@@ -53,6 +163,10 @@ public class KbdMacroApplyHandler extends KbdMacroExecuteHandler {
 			EmacsPlusUtils.asyncUiRun(new Runnable() {
 				public void run() {
 					if (!isInterrupted()) {
+						if (getProgress() != null) {
+							// we've finished one more line
+							getProgress().addIteration();
+						}
 						try {
 							if (selector.selectNext()) {
 								incrementExecutionCount();	// prepare for next execution
@@ -72,6 +186,16 @@ public class KbdMacroApplyHandler extends KbdMacroExecuteHandler {
 		}
 	}
 
+	/**
+	 * Each line is counted in progress as it completes, so only keep the iteration count
+	 * 
+	 * @see com.mulgasoft.emacsplus.commands.KbdMacroExecuteHandler#countIteration(KbdMacroExecuteHandler.MacroCount)
+	 */
+	@Override
+	protected void countIteration(MacroCount keepCount) {
+		keepCount.addCounter();
+	}
+
 	/**
 	 * Finesse undoProtect as we want an undo to apply to all iterations of the apply-macro
 	 * 
@@ -45,9 +45,8 @@ public class KbdMacroEditHandler extends KbdMacroDefineHandler {
 	
 	private void displayMacro(String name) {
 		EmacsPlusConsole console = EmacsPlusConsole.getInstance();
-		console.clear();
+		console.replaceContents(KbdMacroSupport.getInstance().getKbdMacro(name).toString());
 		console.activate();
-		console.print(KbdMacroSupport.getInstance().getKbdMacro(name).toString());
 	}
 	
 	/**
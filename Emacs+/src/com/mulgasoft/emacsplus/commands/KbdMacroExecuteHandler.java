@@ -23,8 +23,10 @@ import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRewriteTarget;
 import org.eclipse.jface.text.ITextSelection;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyledText;
 import org.eclipse.swt.custom.VerifyKeyListener;
 import org.eclipse.swt.events.VerifyEvent;
+import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.ui.PlatformUI;
@@ -34,6 +36,8 @@ import com.mulgasoft.emacsplus.Beeper;
 import com.mulgasoft.emacsplus.EmacsPlusActivator;
 import com.mulgasoft.emacsplus.EmacsPlusUtils;
 import com.mulgasoft.emacsplus.IBeepListener;
+import com.mulgasoft.emacsplus.execute.CommandStatistics;
+import com.mulgasoft.emacsplus.execute.KbdMacroProgress;
 import com.mulgasoft.emacsplus.execute.KbdMacroSupport;
 import com.mulgasoft.emacsplus.execute.KbdMacroSupport.IKbdExecutionListener;
 import com.mulgasoft.emacsplus.execute.KbdMacroSupport.KbdEvent;
@@ -58,9 +62,14 @@ public class KbdMacroExecuteHandler extends EmacsPlusNoEditHandler {
 	private static final String KBD_THREAD = "Kbd Macro Execution"; 											  //$NON-NLS-1$ 
 	private static final int KEY_WAIT = 5000;
 	private static final int LONG_WAIT = 10000; 
+	private static final String MACRO_SUFFIX = " (macro)"; 														  //$NON-NLS-1$
+	// the StyledText overwrite mode flag
+	static final String OVERWRITE = "overwrite"; 																  //$NON-NLS-1$
 	
 	private static boolean interrupted = false;
 	private static int executeCount = 0;	// keep track of iterative and nested execution
+	private static CommandStatistics.Frame macroFrame = null;
+	private static KbdMacroProgress progress = null;
 	
 	private String kbdMacroName = null;
 
@@ -109,9 +118,14 @@ public class KbdMacroExecuteHandler extends EmacsPlusNoEditHandler {
 				// only add first time (not on iterative/nested invocations)
 				addBeeper();
 				keepCount = new MacroCount();
+				// record the complete (asynchronous) execution of the macro
+				String name = (kbdMacroName != null ? kbdMacroName : event.getCommand().getId());
+				macroFrame = CommandStatistics.getInstance().begin(name + MACRO_SUFFIX, document);
 				if (count == 0) {
 					count = Integer.MAX_VALUE;	// essentially forever
 				}
+				progress = new KbdMacroProgress(name);
+				progress.setTotal(count);
 			}
 			// synchronize key listeners for this invocation (may be nested)
 			KbdLock kbdLock = new KbdLock();
@@ -124,6 +138,13 @@ public class KbdMacroExecuteHandler extends EmacsPlusNoEditHandler {
 		return null;
 	}
 	
+	/**
+	 * @return the progress of the current (outermost) macro execution, or null
+	 */
+	protected KbdMacroProgress getProgress() {
+		return progress;
+	}
+
 	protected boolean hasKbdMacro() {
 		return KbdMacroSupport.getInstance().hasKbdMacro() && !KbdMacroSupport.getInstance().isBusy(); 
 	}
@@ -151,39 +172,59 @@ public class KbdMacroExecuteHandler extends EmacsPlusNoEditHandler {
 			final String cmdId, final MacroCount keepCount) {
 		new Thread(new Runnable() {public void run() {
 			int counter = count;
-			// get the undo Runnable wrappers
-			Runnable[] undo = undoProtect(editor, keepCount);
+			boolean again = false;
 			try {
-				EmacsPlusUtils.asyncUiRun(undo[0]);			
-				if (!isInterrupted() && selection != null && checkSelection(selection)) {
-					executeOnce(editor, document, selection, vkf);
+				// get the undo Runnable wrappers
+				Runnable[] undo = undoProtect(editor, keepCount);
+				try {
+					EmacsPlusUtils.asyncUiRun(undo[0]);			
+					if (!isInterrupted() && selection != null && checkSelection(selection)) {
+						executeOnce(editor, document, selection, vkf);
+					}
+				} catch (Exception e) {
+					beep();
+				} finally {
+					EmacsPlusUtils.asyncUiRun(undo[1]);			
 				}
-			} catch (Exception e) {
-				beep();
+				again = !isInterrupted() && --counter > 0;
 			} finally {
-				EmacsPlusUtils.asyncUiRun(undo[1]);			
-			}
-			if (!isInterrupted() && --counter > 0) {
-				runMacro(editor, document, selection, vkf, counter, cmdId, keepCount);
-			} else {
-				// notify listener on exit if we were executing a named or bound kbd macro
-				notifyKbdListener(cmdId);
-				final int times = ((keepCount != null) ? keepCount.getCounter() : 0); 
-				EmacsPlusUtils.asyncUiRun(new Runnable() {
-					public void run() {
-						decrementExecutionCount();
-						if (popExecution(editor) ==  0 && isInterrupted()) {
-							EmacsPlusUtils.asyncUiRun(new Runnable() {public void run() {
-							asyncShowMessage(editor, KBD_INTERRUPTED + String.format(((times == 1) ? KBD_ITERATION : KBD_ITERATIONS),times), true);}});
-						}
-					}
-				});
+				// always end the execution (e.g. on an error), so its state and statistics are cleaned up
+				if (again) {
+					runMacro(editor, document, selection, vkf, counter, cmdId, keepCount);
+				} else {
+					endMacro(editor, cmdId, keepCount);
+				}
 			}
 		}},KBD_THREAD).start();		
 	}
 
 	/**
-	 * Iterate through the macro events once.
+	 * Finish this invocation of the macro, restoring the state of any enclosing execution
+	 * 
+	 * @param editor
+	 * @param cmdId
+	 * @param keepCount
+	 */
+	protected void endMacro(final ITextEditor editor, String cmdId, MacroCount keepCount) {
+		try {
+			// notify listener on exit if we were executing a named or bound kbd macro
+			notifyKbdListener(cmdId);
+		} finally {
+			final int times = ((keepCount != null) ? keepCount.getCounter() : 0); 
+			EmacsPlusUtils.asyncUiRun(new Runnable() {
+				public void run() {
+					decrementExecutionCount();
+					if (popExecution(editor) ==  0 && isInterrupted()) {
+						EmacsPlusUtils.asyncUiRun(new Runnable() {public void run() {
+						asyncShowMessage(editor, KBD_INTERRUPTED + String.format(((times == 1) ? KBD_ITERATION : KBD_ITERATIONS),times), true);}});
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Iterate through the (compiled) macro events once.
 	 * After each event is submitted to the ui-thread wait for the event to be processed before moving to the next event
 	 * This guarantees that keyboard events will be read properly before the next event is submitted 
 	 * 
@@ -195,8 +236,8 @@ public class KbdMacroExecuteHandler extends EmacsPlusNoEditHandler {
 	 */
 	protected void executeOnce(ITextEditor editor, IDocument document, ITextSelection currentSelection, KbdLock vkf)
 	throws BadLocationException {
-		ArrayList<KbdEvent> macro = (kbdMacroName == null) ? KbdMacroSupport.getInstance().getKbdMacroEvents()
-				: KbdMacroSupport.getInstance().getKbdMacroEvents(kbdMacroName);
+		ArrayList<KbdEvent> macro = (kbdMacroName == null) ? KbdMacroSupport.getInstance().getCompiledMacroEvents()
+				: KbdMacroSupport.getInstance().getCompiledMacroEvents(kbdMacroName);
 		if (editor != null && macro != null && !macro.isEmpty()) {
 			for (KbdEvent e : macro) {
 				if (!isInterrupted()) {
@@ -216,7 +257,24 @@ public class KbdMacroExecuteHandler extends EmacsPlusNoEditHandler {
 	private Runnable queueRunner(KbdEvent event, ITextEditor editor, KbdLock vkf) {
 		Runnable result = null;
 		String cmdId = null;
-		if (event.getEvent() != null) {	// It's a key event
+		// a compiled insertion is counted once if inserted, else as the events it replays
+		if (progress != null && !event.isInsert()) {
+			progress.addEvent();
+		}
+		if (event.isInsert()) {	// It's a compiled run of typed characters
+			if (insertText(event, editor)) {
+				if (progress != null) {
+					progress.addEvent();
+				}
+			} else {
+				// replay the typed characters
+				for (KbdEvent e : event.getInsertSource()) {
+					if (!isInterrupted()) {
+						queueRunner(e, editor, vkf);
+					}
+				}
+			}
+		} else if (event.getEvent() != null) {	// It's a key event
 			result = getKeyRunner(event, editor);
 			CountDownLatch latch = new CountDownLatch(1);
 			vkf.setLatch(latch);
@@ -264,30 +322,70 @@ public class KbdMacroExecuteHandler extends EmacsPlusNoEditHandler {
 		final String cmdId = event.getCmd();
 		@SuppressWarnings("unchecked")
 		final Map<String,?> parameters = (Map<String,?>) event.getCmdParameters();
+		// a compiled run of the command is executed in one pass
+		final int repeat = event.getRepeat();
 		final KbdMacroExecuteHandler executeHandler = this;
 		return new Runnable() {
 			public void run() {
-				if (executeHandler.isInterrupted()) {
-					return;
-				}
-				try {
-					ITextEditor current = EmacsPlusUtils.getCurrentEditor();
-					if (parameters != null) {
-						KbdMacroExecuteHandler.this.executeCommand(cmdId, parameters, null,
-								(current != null ? current : editor));
-					} else {
-						KbdMacroExecuteHandler.this.executeCommand(cmdId, null,
-								(current != null ? current : editor));
-					}
-				} catch (Exception e) {
-					if (isMacro(cmdId)) {
-						notifyKbdListener(cmdId); 
+				for (int i = 0; i < repeat; i++) {
+					if (executeHandler.isInterrupted()) {
+						return;
 					}
-				} 
+					try {
+						ITextEditor current = EmacsPlusUtils.getCurrentEditor();
+						if (parameters != null) {
+							KbdMacroExecuteHandler.this.executeCommand(cmdId, parameters, null,
+									(current != null ? current : editor));
+						} else {
+							KbdMacroExecuteHandler.this.executeCommand(cmdId, null,
+									(current != null ? current : editor));
+						}
+					} catch (Exception e) {
+						if (isMacro(cmdId)) {
+							notifyKbdListener(cmdId); 
+						}
+					} 
+				}
 			}
 		};
 	}
 
+	/**
+	 * Insert the text of a compiled run of typed characters directly into the editor's widget, 
+	 * which (unlike posting each key event) takes a single round trip to the ui-thread.
+	 * StyledText.insert bypasses the VerifyKey listeners (e.g. bracket and quote insertion, or
+	 * linked mode exit keys), but not the viewer's verify listener, so auto edit strategies 
+	 * still see the text. The compiler only gathers plain characters, which those key listeners
+	 * leave alone, into an insertion.
+	 * 
+	 * @param event the compiled insertion
+	 * @param editor
+	 * @return true if inserted, false if the typed characters must be replayed instead 
+	 */
+	private boolean insertText(final KbdEvent event, final ITextEditor editor) {
+		final boolean[] result = new boolean[] {false};
+		if (!isInterrupted()) {
+			PlatformUI.getWorkbench().getDisplay().syncExec(new Runnable() {
+				public void run() {
+					ITextEditor current = EmacsPlusUtils.getCurrentEditor();
+					Control control = getTextWidget(current != null ? current : editor);
+					// typed keys are read by an active minibuffer, or would overwrite in overwrite mode
+					if (KbdMacroSupport.getKbdMinibuffer() == null && control instanceof StyledText && control.isFocusControl()
+							&& ((StyledText)control).getEditable() && !Boolean.TRUE.equals(EmacsPlusUtils.getAF(control, OVERWRITE))) {
+						StyledText widget = (StyledText)control;
+						// like typing, replace the selection and leave the caret after the text 
+						Point selection = widget.getSelection();
+						int count = widget.getCharCount();
+						widget.insert(event.getInsertText());
+						widget.setSelection(selection.y + widget.getCharCount() - count);
+						result[0] = true;
+					}
+				}
+			});
+		}
+		return result[0];
+	}
+
 	/**
 	 * Create the Runnable for posting a key event
 	 * 
@@ -419,13 +517,25 @@ public class KbdMacroExecuteHandler extends EmacsPlusNoEditHandler {
 				}
 				if (!isInterrupted() && keepCount != null) {
 					// we've finished one more loop of the main macro
-					keepCount.addCounter();
+					countIteration(keepCount);
 				}
 			}
 		};
 		return result;
 	}
 
+	/**
+	 * Count a completed iteration of the outermost macro execution
+	 * 
+	 * @param keepCount
+	 */
+	protected void countIteration(MacroCount keepCount) {
+		keepCount.addCounter();
+		if (progress != null) {
+			progress.addIteration();
+		}
+	}
+
 	/**
 	 * Determine if the id belongs to a kbd macro execution command
 	 * 
@@ -535,8 +645,17 @@ public class KbdMacroExecuteHandler extends EmacsPlusNoEditHandler {
 				KbdMacroSupport.getInstance().setExecuting(true, editor,lockStack.peek());			
 			} else {
 				// we're done with all execution
-				notifyExecutionListeners();
-				removeBeeper();
+				try {
+					CommandStatistics.getInstance().end(macroFrame);
+					if (progress != null) {
+						progress.finish(isInterrupted());
+					}
+					notifyExecutionListeners();
+				} finally {
+					macroFrame = null;
+					progress = null;
+					removeBeeper();
+				}
 			}
 		}
 		return lockStack.size();
@@ -207,6 +207,8 @@ public class KbdMacroLoadHandler extends KbdMacroFileHandler {
 			String badCommand = null;
 			if ((badCommand = checkMacro(editor, kbdMacro)) == null) {
 				final Command command = defineKbdMacro(editor,name);
+				// compile once on load, rather than on first execution
+				kbdMacro.compile();
 				// register loaded macro
 				KbdMacroSupport.getInstance().nameKbdMacro(name, kbdMacro);
 				// now see if we have a binding also
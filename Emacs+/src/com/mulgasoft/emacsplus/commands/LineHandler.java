@@ -19,6 +19,7 @@ import org.eclipse.jface.text.TextSelection;
 import org.eclipse.ui.texteditor.ITextEditor;
 
 import com.mulgasoft.emacsplus.EmacsPlusActivator;
+import com.mulgasoft.emacsplus.execute.LineTable;
 
 /**
  * Group line handlers together
@@ -88,35 +89,16 @@ public class LineHandler extends EmacsPlusCmdHandler {
 		return selection;
     }
     
-    protected String[] reverse(String[] array) {
-    	int len = array.length -1;	
-    	int stop = array.length / 2;
-    	for (int i = 0; i < stop; i++) {
-    		String tmp = array[i];
-    		array[i] = array[len -i];
-    		array[len -i] = tmp;
-    	}
-    	return array;
-    }
-    
     /**
-	 * Update the selection with the set of lines in the array
-	 * 
-	 * @param document
-	 * @param selection
-	 * @param array
-	 * @throws BadLocationException
-	 */
-	protected void updateLines(IDocument document, ITextSelection selection, String[] array) throws BadLocationException  {
-		StringBuilder builder = new StringBuilder();
-		String ld = getLineDelimiter();		
-		for (String t : array) {
-			builder.append(t);
-			builder.append(ld);
-		}
-		// remove terminal delimiter
-		builder.replace(builder.length()-ld.length(),builder.length(),EMPTY_STR);
-		updateText(document,selection,builder.toString());
-	}
+     * Read the lines of the selection into a line table
+     * 
+     * @param document
+     * @param selection
+     * @return the line table
+     * @throws BadLocationException
+     */
+    protected LineTable getLineTable(IDocument document, ITextSelection selection) throws BadLocationException {
+    	return new LineTable(document, selection.getOffset(), selection.getLength());
+    }
 
 }
@@ -12,6 +12,7 @@ package com.mulgasoft.emacsplus.commands;
 import org.eclipse.ui.texteditor.ITextEditor;
 
 import com.mulgasoft.emacsplus.EmacsPlusActivator;
+import com.mulgasoft.emacsplus.execute.CommandStatistics;
 import com.mulgasoft.emacsplus.minibuffer.IMinibufferExecutable;
 
 /**
@@ -27,6 +28,7 @@ public abstract class MinibufferExecHandler extends MinibufferHandler implements
 
 	private final static String A_SPACE = " ";  										   //$NON-NLS-1$ 
 	private final static String A_DASH = "-";   										   //$NON-NLS-1$
+	private final static String MINI_SUFFIX = " (minibuffer)";  						   //$NON-NLS-1$
 	
 	/**
 	 * Inner form of executeResult for minibuffer handlers
@@ -42,7 +44,14 @@ public abstract class MinibufferExecHandler extends MinibufferHandler implements
 	 * @see com.mulgasoft.emacsplus.minibuffer.IMinibufferExecutable#executeResult(ITextEditor, Object)
 	 */
 	public boolean executeResult(ITextEditor editor, Object minibufferResult) {
-		boolean result = doExecuteResult(editor,minibufferResult);
+		// the command execution has long since completed, so record the result execution separately
+		CommandStatistics.Frame frame = CommandStatistics.getInstance().begin(getClass().getSimpleName() + MINI_SUFFIX, getThisDocument());
+		boolean result;
+		try {
+			result = doExecuteResult(editor,minibufferResult);
+		} finally {
+			CommandStatistics.getInstance().end(frame);
+		}
 		if (result) {
 			postExecute();
 		}
@@ -25,13 +25,7 @@ public class ParagraphBackwardHandler extends ParagraphMovementHandler {
 		int result = NO_OFFSET;
 		// if we're not at buffer top (or top of narrowed region)
 		if (!isAtTop(editor,selection)) {
-			try {
-				result = getParagraphOffset(editor,false);
-			} catch (IndexOutOfBoundsException e) {
-				// work around bug in org.eclipse.jface.text.TextViewer.findAndSelect()
-				// where it doesn't check for 0 offset & 0 length  
-				result = 0;
-			}		
+			result = getParagraphOffset(editor,getCursorOffset(editor,selection),false);
 		}
 		return result;
 	}
@@ -8,7 +8,6 @@
  */
 package com.mulgasoft.emacsplus.commands;
 
-import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.ITextSelection;
 import org.eclipse.ui.texteditor.ITextEditor;
@@ -23,18 +22,8 @@ import org.eclipse.ui.texteditor.ITextEditor;
 public class ParagraphForwardHandler extends ParagraphMovementHandler {
 
 	protected int getParagraphOffset(ITextEditor editor, IDocument document, ITextSelection selection) {
-		int result = NO_OFFSET;
-		try {
-			int line = document.getLineOfOffset(getCursorOffset(editor, selection)); 
-			// are we at the beginning of a multi-line blank section?
-			if (isBlank(document,line) && isBlank(document,line+1)) {
-				// then jump over it
-				result = getParagraphOffset(editor,true);				
-			}
-			result = getParagraphOffset(editor,true);
-		} catch (BadLocationException e) {
-			// should only happen if we're already at the end
-		}
+		// a run of blank lines at the cursor is skipped by the lookup
+		int result = getParagraphOffset(editor,getCursorOffset(editor, selection),true);
 		return result;
 	}
 }
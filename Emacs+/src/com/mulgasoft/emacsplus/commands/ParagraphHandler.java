@@ -10,15 +10,13 @@ package com.mulgasoft.emacsplus.commands;
 
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
-import org.eclipse.jface.text.IFindReplaceTarget;
-import org.eclipse.jface.text.IFindReplaceTargetExtension3;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextSelection;
-import org.eclipse.swt.graphics.Point;
 import org.eclipse.ui.texteditor.ITextEditor;
 
 import com.mulgasoft.emacsplus.IEmacsPlusCommandDefinitionIds;
 import com.mulgasoft.emacsplus.MarkUtils;
+import com.mulgasoft.emacsplus.execute.ParagraphIndex;
 import java.util.regex.Pattern;
 
 /**
@@ -29,112 +27,60 @@ import java.util.regex.Pattern;
  * lines.  This makes the paragraph commands useful, even though there are no paragraphs 
  * as such in a program.
  * 
+ * Paragraph separators are found by a lookup in the document's ParagraphIndex, so moving
+ * by paragraphs neither searches the text nor moves the widget selection as it goes.
+ * 
  * @author Mark Feber - initial API and implementation
  */
 public abstract class ParagraphHandler extends EmacsPlusCmdHandler {
 
 	final static String PARAGRAPH_START = "^[ \t\f\r\n]*$"; //$NON-NLS-1$
-	final static String REGEX_BOL_HACK = "^[\\s\\S]";   	//$NON-NLS-1$
 	
 	final static Pattern BLANK_CHECK = Pattern.compile(PARAGRAPH_START);
 	
-	protected IFindReplaceTarget getTarget(ITextEditor editor) {
-		return (IFindReplaceTarget)editor.getAdapter(IFindReplaceTarget.class);
-	}
-
-	protected int getParagraphOffset(ITextEditor editor, boolean forward) {
-		if (findNext(editor, forward) == -1) {
-			findNextEmpty(editor, forward);
-		}
-		// get correct empty line in model coords
-		return getCurrentSelection(editor).getOffset();
-	}
-	
-	// Work around bug in FindReplaceDocumentAdapter (we use this because it provides support for narrowed regions, etc.)
-	// First, look for normal pattern with findNext, but it will return -1 on ^$ lines
-	// so, if -1 then look for empty lines with findNextEmpty
-	
 	/**
-	 * Find the next occurrence of empty line(s)
-	 * Will match all valid lines except single ^$
-	 *   
+	 * Find the next paragraph separator (blank line) from offset, without moving the cursor.
+	 * A run of blank lines at offset (or, moving backward, directly above the line that 
+	 * offset starts) is skipped as a whole.
+	 * 
 	 * @param editor
+	 * @param offset the offset, in model coords, from which to move
 	 * @param forward true if moving forward
-	 * @return -1 if not found, else offset of match in widget coords
+	 * @return the offset of the separator in model coords, or the end (top) of the buffer
+	 *         (or narrowed region) if there is none
 	 */
-	protected int findNext(ITextEditor editor, boolean forward) {
-
-		IFindReplaceTarget frt = getTarget(editor);
-		Point selection = frt.getSelection();
-		// don't move past eob
-		int offset = Math.min(MarkUtils.getCharCount(editor), Math.max(0,MarkUtils.getCaretOffset(editor) + (forward ? 1 : -2)));
-		int result = ((IFindReplaceTargetExtension3)frt).findAndSelect(offset, PARAGRAPH_START, forward, false, false, true);		
-		if (result != -1) {
-			if ((forward && offset > result) || (!forward && offset < result)) {
-				// reset if we've wrapped around in the search
-				MarkUtils.setWidgetSelection(editor, selection.x, selection.x + selection.y);
-				result = -1;
+	protected int getParagraphOffset(ITextEditor editor, int offset, boolean forward) {
+		IDocument document = getThisDocument(editor);
+		ParagraphIndex index = ParagraphIndex.getIndex(document);
+		int top = 0;
+		int bottom = document.getLength();
+		if (editor.showsHighlightRangeOnly()) {
+			IRegion region = editor.getHighlightRange();
+			if (region != null) {
+				top = region.getOffset();
+				bottom = top + region.getLength();
 			}
 		}
-		return result;
-	}
-	
-	/**
-	 * Find the next occurrence of empty line consisting of ^$
-	 * Since findNext will find multiple sequential ^$'s, we only need find one
-	 * 
-	 * @param editor
-	 * @param forward
-	 * @return offset of match in widget coords
-	 */
-	protected int findNextEmpty(ITextEditor editor, boolean forward) {
-		IFindReplaceTarget frt = getTarget(editor);
-		Point selection = frt.getSelection();
-		int count = MarkUtils.getCharCount(editor);
-		int coffset = MarkUtils.getCaretOffset(editor); 
-		// don't move past EOB
-		int offset = Math.min(count,coffset + (forward ? 1 : -1)); //(forward ? selection.x + selection.y+1 : selection.x-2);	
-		int next = 0;
-		int prev = -1;
-		do {
-			next = ((IFindReplaceTargetExtension3)frt).findAndSelect(offset, REGEX_BOL_HACK, forward, false, false, true);
-			if (next == -1 || prev == next){
-				// we've run out of buffer
-				offset = (forward ? count : 0); 
-				MarkUtils.setWidgetSelection(editor, offset, offset);
-				return offset;
-			} else if (forward && offset > next) {
-				// protect against overrun
-				MarkUtils.setWidgetSelection(editor, count, count);
-				return count;
-			} else if (!forward && offset < next) {
-				// protect against overrun
-				MarkUtils.setWidgetSelection(editor, 0, 0);
-				return 0;
+		// skip the run of blank lines at offset, then look up the paragraph's separator
+		int result = (forward ? index.forward(offset) : index.backward(offset));
+		boolean hidden = true;
+		while (hidden) {
+			if (forward && (result == -1 || result > bottom)) {
+				result = bottom;
+				hidden = false;
+			} else if (!forward && result < top) {
+				result = top;
+				hidden = false;
 			} else {
-				selection = frt.getSelection();	
-				// Eclipse internals (frda) return different regions depending on whether the file has a 
-				// single or double line delimiter e.g. \r\n or \n.  In the former it returns a 0 length
-				// region, and in the latter a length of 1
-				if (selection.y == 0 || (!forward && selection.x == 0)) {
-					// found it, or reached the top
-					return selection.x;
-				} if (selection.y == 1) {
-					// check for single line delimiter 
-					char c = frt.getSelectionText().charAt(0);
-					if (c == '\n' || c == '\r'){
-						return selection.x;
-					}
+				// skip separators hidden in folded regions
+				hidden = MarkUtils.model2WidgetOffset(editor, result) == -1;
+				if (hidden) {
+					result = (forward ? index.next(result + 1) : index.previous(result - 1));
 				}
-				// the widget count could change if a folded region expands automatically
-				count = MarkUtils.getCharCount(editor);
-				// don't move past EOB				
-				offset = Math.min(count,(forward ? selection.x + selection.y+1 : selection.x-1));
-				prev = next;
 			}
-		} while (next != -1);
-		return next;
-	}	
+		}
+		return result;
+	}
 
 	/**
 	 * Check if the specified line is blank
@@ -47,12 +47,13 @@ public class ParagraphMarkHandler extends ParagraphHandler {
 			// Emacs actually selects the following paragraph in this state which seems wrong
 		} else if (currentSelection.getLength() == 0) {
 			// select entire paragraph
-			int line = document.getLineOfOffset(getCursorOffset(editor,currentSelection)); 
+			int offset = getCursorOffset(editor,currentSelection);
+			int line = document.getLineOfOffset(offset); 
 			// are we inside a paragraph?
 			if (!isBlank(document,line)) {
-				int begin = (forward ? getParagraphOffset(editor,false) : getParagraphOffset(editor,true));
-				setSelection(editor,currentSelection);	// restore for movement in reverse direction
-				int end = (forward ? getParagraphOffset(editor,true) : getParagraphOffset(editor,false));
+				int end = getParagraphOffset(editor,offset,forward);
+				// move back from the end, so the cursor at the paragraph's first line still finds its start
+				int begin = getParagraphOffset(editor,end,!forward);
 				// invert selection so cursor appears at correct end
 				ITextSelection selection = new TextSelection(document, end, begin - end);
 				setMark(editor,end);
@@ -70,41 +71,12 @@ public class ParagraphMarkHandler extends ParagraphHandler {
 
 	private void nextParagraph(ITextEditor editor, IDocument document, ITextSelection selection, boolean forward) {
 		int cursorOffset = MarkUtils.getCursorOffset(editor);
-		int offset = NO_OFFSET;
-		MarkUtils.setSelection(editor,getMark(editor),0);
-		// select next in appropriate direction
-		try {
-			if (forward) {
-				int line = document.getLineOfOffset(getCursorOffset(editor,selection)); 
-				// are we at the beginning of a multi-line blank section?
-				if (isBlank(document,line) && isBlank(document,line+1)) {
-					// then jump over it
-					getParagraphOffset(editor,true);				
-				}
-				offset = getParagraphOffset(editor,true);
-			} else {
-				offset = getParagraphOffset(editor,false);
-			}
-		} catch (BadLocationException e) {
-			// should only happen if we're already at the end
-			// restore the selection highlight
-			reverseSelection(editor,document,selection);
-		} catch (IndexOutOfBoundsException e) {
-			// should only happen if we've moved to the top
-			// work around bug in org.eclipse.jface.text.TextViewer.findAndSelect()
-			// where it doesn't check for 0 offset & 0 length  
-			offset = 0;
-		}
+		// select next in appropriate direction from the mark; a run of blank lines there is skipped
+		int offset = getParagraphOffset(editor,getMark(editor),forward);
 		if (offset != NO_OFFSET) {
 			setMark(editor,offset,false);
 			setSelection(editor,new TextSelection(document, offset, (cursorOffset - offset)));
 			MarkUtils.revealRange(editor, offset, 0);
 		}
 	}
-	
-	private void reverseSelection(ITextEditor editor, IDocument document, ITextSelection selection) {
-		// invert selection so cursor appears at correct end
-		int end = selection.getOffset() + selection.getLength();
-		setSelection(editor,new TextSelection(document,end,-selection.getLength()));
-	}
 }
@@ -15,6 +15,7 @@ import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextSelection;
 import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.TextSelection;
 import org.eclipse.ui.texteditor.ITextEditor;
 
 import com.mulgasoft.emacsplus.EmacsPlusUtils;
@@ -38,6 +39,8 @@ public class ParagraphTransposeHandler extends ParagraphHandler {
 	private final static String NOT_SET = "Mark_Not_Set";	//$NON-NLS-1$
 	private ParagraphForwardHandler ff = new ParagraphForwardHandler(); 
 	private ParagraphBackwardHandler bb = new ParagraphBackwardHandler(); 
+	// the offset of the separator between the last swapped paragraphs
+	private int separator = NO_OFFSET;
 
 	/**
 	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler#transform(ITextEditor, IDocument, ITextSelection, ExecutionEvent)
@@ -57,7 +60,7 @@ public class ParagraphTransposeHandler extends ParagraphHandler {
 				executeCommand(IEmacsPlusCommandDefinitionIds.BACKWARD_PARAGRAPH, null, editor);
 				transformAtPoint(editor,document,currentSelection,event);
 				// after transform, we're between the two paragraphs, so just move to the front of the line
-				result = document.getLineInformationOfOffset(getCurrentSelection(editor).getOffset()).getOffset();
+				result = document.getLineInformationOfOffset(separator).getOffset();
 			} catch (Exception e) {
 				throw new BadLocationException();
 			}
@@ -184,6 +187,9 @@ public class ParagraphTransposeHandler extends ParagraphHandler {
 			// swap the text from bottom up
 			updateText(document,line2Begin.getOffset(), para2len, para1text);
 			updateText(document,line1Begin.getOffset(), para1len, para2text);
+			// the separator now follows the last line of paragraph 2
+			int sline = document.getLineOfOffset(line1Begin.getOffset() + para2len) + 1;
+			separator = document.getLineOffset(Math.min(sline, document.getNumberOfLines() - 1));
 			// cursor goes below swapped paragraphs
 			result = para2.getEnd();
 		}		
@@ -192,10 +198,11 @@ public class ParagraphTransposeHandler extends ParagraphHandler {
 	
 	private void getParagraphsAtPoint(ITextEditor editor, IDocument document, ITextSelection selection, int point, Paragraph para1, Paragraph para2) {
 		
-		int end= ff.getParagraphOffset(editor, document, selection);
-		// update selection - move to beginning of selection/line
-		setSelection(editor, end, 0);
-		ITextSelection csel = getCurrentSelection(editor);
+		// the selection may be stale, e.g. after backward-paragraph
+		ITextSelection csel = new TextSelection(document, point, 0);
+		int end = ff.getParagraphOffset(editor, document, csel);
+		// move to beginning of selection/line
+		csel = moveTo(document, end, csel);
 		int begin = bb.getParagraphOffset(editor, document, csel);
 		
 		if (begin < point) {
@@ -204,22 +211,20 @@ public class ParagraphTransposeHandler extends ParagraphHandler {
 				// then we started in mid paragraph
 				para1.setBegin(begin);
 				para1.setEnd(end);
-				// update selection - move to end of first paragraph
-				setSelection(editor, para1.getEnd(), 0);
-				csel = getCurrentSelection(editor);
+				// move to end of first paragraph
+				csel = moveTo(document, para1.getEnd(), csel);
 				para2.setEnd(ff.getParagraphOffset(editor, document, csel));
-				csel = getCurrentSelection(editor);
-				// update selection - move to beginning of selection/line
-				setSelection(editor, csel.getOffset(), 0);
+				// move to beginning of selection/line
+				csel = moveTo(document, para2.getEnd(), csel);
 				para2.setBegin(bb.getParagraphOffset(editor, document, csel));
 			}
 		} else if (end != -1) {
 			// in case 1
 			para2.setBegin(begin);
 			para2.setEnd(end);
-			csel = getCurrentSelection(editor);
+			csel = moveTo(document, begin, csel);
 			para1.setBegin(bb.getParagraphOffset(editor, document, csel));
-			csel = getCurrentSelection(editor);
+			csel = moveTo(document, para1.getBegin(), csel);
 			para1.setEnd(ff.getParagraphOffset(editor, document, csel));
 		}
 	}
@@ -231,23 +236,19 @@ public class ParagraphTransposeHandler extends ParagraphHandler {
 		if (mark != point) {
 			// always start at top paragraph 
 			if (mark < point) {
-				setSelection(editor,mark,0);
-				csel = getCurrentSelection(editor);
+				csel = new TextSelection(document, mark, 0);
 				mark = point;
 			}
 			
 			para1.setEnd(ff.getParagraphOffset(editor, document, csel));
-			// update selection - move to beginning of selection/line
-			setSelection(editor, para1.getEnd(), 0);
-			csel = getCurrentSelection(editor);
+			// move to beginning of selection/line
+			csel = moveTo(document, para1.getEnd(), csel);
 			para1.setBegin(bb.getParagraphOffset(editor, document, csel));
 
-			setSelection(editor,mark,0);			
-			csel = getCurrentSelection(editor);
+			csel = new TextSelection(document, mark, 0);
 			para2.setEnd(ff.getParagraphOffset(editor, document, csel));
-			// update selection - move to beginning of selection/line
-			setSelection(editor, para2.getEnd(), 0);
-			csel = getCurrentSelection(editor);
+			// move to beginning of selection/line
+			csel = moveTo(document, para2.getEnd(), csel);
 			para2.setBegin(bb.getParagraphOffset(editor, document, csel));
 			
 			if (para1.equals(para2)) {
@@ -257,6 +258,18 @@ public class ParagraphTransposeHandler extends ParagraphHandler {
 		}
 	}
 	
+	/**
+	 * Paragraph offsets are computed without moving the cursor, so track the position locally
+	 * 
+	 * @param document
+	 * @param offset the new position, or NO_OFFSET if the last movement failed
+	 * @param current the current position
+	 * @return the selection at the new position
+	 */
+	private ITextSelection moveTo(IDocument document, int offset, ITextSelection current) {
+		return (offset != NO_OFFSET ? new TextSelection(document, offset, 0) : current);
+	}
+	
 	/**
 	 * Force undo protect
 	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler#undoProtect()
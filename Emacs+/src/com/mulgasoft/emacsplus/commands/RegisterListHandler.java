@@ -32,15 +32,17 @@ public class RegisterListHandler extends RegisterViewHandler {
 		Iterator<String> it = register.iterator(); 
 		if (it.hasNext()) {
 			EmacsPlusConsole console = EmacsPlusConsole.getInstance();
-			console.clear();
-			console.activate();
+			// build the whole listing, then write it in one batch
+			EmacsPlusConsole.Listing listing = console.createListing();
 			while (it.hasNext()) {
 				String key = it.next();
 				IRegisterContents contents = register.getContents(key);
 				if (contents != null) {
-					printContents(console,key,contents);
+					printContents(listing,key,contents);
 				}	
 			}
+			console.replaceContents(listing);
+			console.activate();
 		} else {
 			showResultMessage(getTextEditor(event), NO_REGISTER, true);
 		}
@@ -69,9 +69,10 @@ public class RegisterViewHandler extends RegisterHandler implements INonEditingC
 			IRegisterContents contents = TecoRegister.getInstance().getContents(key);
 			if (contents != null) {
 				EmacsPlusConsole console = EmacsPlusConsole.getInstance();
-				console.clear();
+				EmacsPlusConsole.Listing listing = console.createListing();
+				printContents(listing,key,contents);
+				console.replaceContents(listing);
 				console.activate();
-				printContents(console,key,contents);
 			} else {
 				showResultMessage(editor, NO_REGISTER, true);
 			}
@@ -81,26 +82,26 @@ public class RegisterViewHandler extends RegisterHandler implements INonEditingC
 		return true;
 	}
 
-	void printContents(EmacsPlusConsole console, String register, IRegisterContents contents) {
+	void printContents(EmacsPlusConsole.Listing listing, String register, IRegisterContents contents) {
 		String[] rectangle;
-		console.print(String.format(TecoRegister.NAME,register),blueColor,SWT.BOLD);
+		listing.print(String.format(TecoRegister.NAME,register),blueColor,SWT.BOLD);
 		if (contents.getNumber() != null) {
-			console.print(CR + '<' + TecoRegister.NUMBER + '>' + ' ',redColor,SWT.ITALIC);
-			console.print(contents.getNumber().toString());
+			listing.print(CR + '<' + TecoRegister.NUMBER + '>' + ' ',redColor,SWT.ITALIC);
+			listing.print(contents.getNumber().toString());
 		} else if (contents.getText() != null) {
-			console.print(CR + '<' + TecoRegister.TEXT + '>' + CR,redColor,SWT.ITALIC);
-			console.print('\"' + contents.getText() + '\"');
+			listing.print(CR + '<' + TecoRegister.TEXT + '>' + CR,redColor,SWT.ITALIC);
+			listing.print('\"' + contents.getText() + '\"');
 		} else if ((rectangle = contents.getRectangle()) != null) {
-			console.print(CR + '<' + TecoRegister.RECTANGLE + '>' + CR,redColor,SWT.ITALIC);
+			listing.print(CR + '<' + TecoRegister.RECTANGLE + '>' + CR,redColor,SWT.ITALIC);
 			for (String txt : rectangle) {
-				console.print('\"' + txt + '\"' + CR);
+				listing.print('\"' + txt + '\"' + CR);
 			}
 		}
 
 		if (contents.getLocation() != null) {
-			console.print(CR + '<' + TecoRegister.POINT + '>' + ' ',redColor,SWT.ITALIC);
-			console.print(contents.getLocation().toString());
+			listing.print(CR + '<' + TecoRegister.POINT + '>' + ' ',redColor,SWT.ITALIC);
+			listing.print(contents.getLocation().toString());
 		}
-		console.print(CR);
+		listing.print(CR);
 	}
 }
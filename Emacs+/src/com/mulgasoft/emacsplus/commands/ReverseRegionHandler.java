@@ -39,15 +39,8 @@ public class ReverseRegionHandler extends LineHandler {
     		int begin = document.getLineOfOffset(offset);
     		int end = document.getLineOfOffset(endOffset);
 			if (begin != end && begin < end) {
-				// grab the lines
-				int len = end-begin+1; 
-				String[] array = new String[len];
-				for (int i = 0; i < len; i++) {
-					IRegion region = document.getLineInformation(begin+i);
-					array[i] = document.get(region.getOffset(),region.getLength());
-				}
-				// and reverse them
-				updateLines(document,new TextSelection(document,offset,endOffset-offset),reverse(array));
+				// grab the lines and reverse them
+				updateLines(document,getLineTable(document,selection).reverse());
 			}
 		} else {
 			EmacsPlusUtils.showMessage(editor, NO_REGION, true);
@@ -35,7 +35,9 @@ import org.eclipse.ui.texteditor.ITextEditor;
 
 import com.mulgasoft.emacsplus.EmacsPlusUtils;
 import com.mulgasoft.emacsplus.IEmacsPlusCommandDefinitionIds;
+import com.mulgasoft.emacsplus.LargeFileMode;
 import com.mulgasoft.emacsplus.SexpCharacterPairMatcher;
+import com.mulgasoft.emacsplus.execute.DocumentWords;
 
 // TODO: Handle < > properly when in math expression	
 
@@ -506,8 +508,8 @@ public abstract class SexpHandler extends EmacsPlusNoEditHandler {
 		char c = ' ' + 1;
 		int gobble = -1;
 		setUnbalanced(false);
-		BreakIterator sexpWordNext = BreakIterator.getWordInstance();
-		sexpWordNext.setText(document.get());
+		// iterate over a large document in place, rather than copying all of it on every step
+		BreakIterator sexpWordNext = DocumentWords.getWordIterator(document, LargeFileMode.isLarge(document));
 		// Go to the first boundary position by the specified position
 		try {
 			next = getNextPosition(document, sexpWordNext, start);
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.commands;
+
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITextSelection;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+import com.mulgasoft.emacsplus.EmacsPlusUtils;
+import com.mulgasoft.emacsplus.execute.ColumnSupport;
+import com.mulgasoft.emacsplus.execute.WhitespaceEngine;
+
+/**
+ * Implement: tabify
+ * 
+ * Convert multiple spaces in region to tabs when possible.
+ * A group of spaces is partially replaced by tabs when this can be done without changing the column they end at.
+ * 
+ * @author mfeber
+ */
+public class TabifyHandler extends EmacsPlusCmdHandler {
+
+	private final static String NO_REGION = "No_Region_Msg";	//$NON-NLS-1$
+
+	/**
+	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler#transform(ITextEditor, IDocument, ITextSelection, ExecutionEvent)
+	 */
+	@Override
+	protected int transform(ITextEditor editor, IDocument document, ITextSelection currentSelection,
+			ExecutionEvent event) throws BadLocationException {
+		int result = NO_OFFSET;
+		ITextSelection selection = getImpliedSelection(editor, currentSelection);
+		if (selection != null) {
+			int offset = selection.getOffset();
+			int tabWidth = new ColumnSupport(document, editor).getTabWidth();
+			WhitespaceEngine engine = convert(new WhitespaceEngine(document, offset, selection.getLength()), 
+					getColumn(document, offset, tabWidth), tabWidth);
+			result = engine.mapOffset(getCursorOffset(editor, currentSelection));
+			engine.apply(document);
+		} else {
+			EmacsPlusUtils.showMessage(editor, NO_REGION, true);
+		}
+		return result;
+	}
+
+	/**
+	 * Add the conversion of the region to the engine
+	 * 
+	 * @param engine
+	 * @param column the column at the start of the region
+	 * @param tabWidth
+	 * @return the engine
+	 */
+	protected WhitespaceEngine convert(WhitespaceEngine engine, int column, int tabWidth) {
+		return engine.tabify(column, tabWidth);
+	}
+	
+	/**
+	 * Get the column of offset, expanding any tabs that precede it on the line 
+	 * 
+	 * @param document
+	 * @param offset
+	 * @param tabWidth
+	 * @return the column
+	 * @throws BadLocationException
+	 */
+	private int getColumn(IDocument document, int offset, int tabWidth) throws BadLocationException {
+		IRegion line = document.getLineInformationOfOffset(offset);
+		String prefix = document.get(line.getOffset(), offset - line.getOffset());
+		int column = 0;
+		for (int i = 0; i < prefix.length(); i++) {
+			column += (prefix.charAt(i) == '\t' ? tabWidth - (column % tabWidth) : 1);
+		}
+		return column;
+	}
+
+	/**
+	 * Force undo protect
+	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler#undoProtect()
+	 */
+	protected boolean undoProtect() {
+		return true;
+	}
+	
+	/**
+	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler#isLooping()
+	 */
+	@Override
+	protected boolean isLooping() {
+		return false;
+	}
+}
@@ -0,0 +1,512 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.commands;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.LocationKind;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.ITextSelection;
+import org.eclipse.search.ui.text.FileTextSearchScope;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.PartInitException;
+import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.ide.IDE;
+import org.eclipse.ui.part.FileEditorInput;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+import com.mulgasoft.emacsplus.EmacsPlusActivator;
+import com.mulgasoft.emacsplus.EmacsPlusUtils;
+import com.mulgasoft.emacsplus.MarkUtils;
+import com.mulgasoft.emacsplus.execute.ISearchResult;
+import com.mulgasoft.emacsplus.execute.MultiBufferReplace;
+import com.mulgasoft.emacsplus.execute.MultiBufferReplace.FileMatches;
+import com.mulgasoft.emacsplus.execute.MultiBufferReplace.Match;
+import com.mulgasoft.emacsplus.minibuffer.IMinibufferState;
+import com.mulgasoft.emacsplus.minibuffer.QueryReplaceMinibuffer;
+import com.mulgasoft.emacsplus.minibuffer.SearchExecuteMinibuffer;
+import com.mulgasoft.emacsplus.minibuffer.TextMinibuffer;
+
+/**
+ * Implements: tags-query-replace
+ *
+ * Query replace a regexp in every file of the project, the current working set (^U) or
+ * the workspace (^U^U) - the same scopes as tags-search.
+ *
+ * The files are scanned in the background, then each match is shown in its file and answered:
+ *   y or SPC  replace it
+ *   n or DEL  skip it
+ *   !         replace it and all remaining matches, in all remaining files, without asking
+ *   .         replace it and exit
+ *   q or ESC  exit
+ *
+ * The accepted matches of a file are replaced together when the session leaves the file, as a
+ * single undo in that file; the answers given are kept however the session ends (including C-g).
+ * With !, the remaining files are replaced one at a time in the background.  A file is opened in
+ * an editor only while its matches are queried, and is closed again if it was opened just for
+ * that and nothing in it was replaced.  A file changed in an editor is left unsaved, as it would
+ * be by hand, and the number of such files is reported at the end.
+ *
+ * @author mfeber
+ */
+public class TagsQueryReplaceHandler extends MinibufferExecHandler {
+
+	private final static String QR_PROJECT = EmacsPlusActivator.getResourceString("Tags_Replace_Project") + KOLON; //$NON-NLS-1$
+	private final static String QR_SET = EmacsPlusActivator.getResourceString("Tags_Replace_Set") + KOLON;     	//$NON-NLS-1$
+	private final static String QR_SPACE = EmacsPlusActivator.getResourceString("Tags_Replace_Space") + KOLON; 	//$NON-NLS-1$
+	private final static String QR_WITH = EmacsPlusActivator.getResourceString("Tags_Replace_With");   			//$NON-NLS-1$
+	private final static String QR_QUERY = EmacsPlusActivator.getResourceString("Tags_Replace_Query"); 			//$NON-NLS-1$
+	private final static String QR_SCANNING = EmacsPlusActivator.getResourceString("Tags_Replace_Scanning");		//$NON-NLS-1$
+	private final static String QR_NONE = EmacsPlusActivator.getResourceString("Tags_Replace_None");   			//$NON-NLS-1$
+	private final static String QR_DONE = EmacsPlusActivator.getResourceString("Tags_Replace_Done");   			//$NON-NLS-1$
+	private final static String QR_UNSAVED = EmacsPlusActivator.getResourceString("Tags_Replace_Unsaved");		//$NON-NLS-1$
+	private final static String QR_ERROR = EmacsPlusActivator.getResourceString("Tags_Replace_Error"); 			//$NON-NLS-1$
+	private final static String JOB_NAME = EmacsPlusActivator.getResourceString("Tags_Replace_Job");   			//$NON-NLS-1$
+
+	private final static char REPLACE = 'y';
+	private final static char REPLACE_SPC = ' ';
+	private final static char REPLACE_ALL = '!';
+	private final static char REPLACE_EXIT = '.';
+
+	// the state object for linked minibuffers
+	private IMinibufferState mbState = null;
+
+	// the replacement session
+	private String prefix;
+	private String searchStr;
+	private MultiBufferReplace replacer;
+	private List<FileMatches> files;
+	private int fileIndex;
+	private int matchIndex;
+	private int replaced;
+	// the files in which matches were replaced
+	private List<IFile> changed;
+	// the editor of the current file, if it was opened to query it
+	private IEditorPart opened;
+	// the page in which files are opened
+	private IWorkbenchPage page;
+
+	/**
+	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler#transform(ITextEditor, IDocument, ITextSelection, ExecutionEvent)
+	 */
+	@Override
+	protected int transform(ITextEditor editor, IDocument document, ITextSelection currentSelection, ExecutionEvent event)
+	throws BadLocationException {
+		mbState = searchState(getScope(getUniversalCount()));
+		// remember original cursor location in the tags ring
+		MarkUtils.setTagMark(editor,getCursorOffset(editor,currentSelection));
+		return mbState.run(editor);
+	}
+
+	/**
+	 * @param arg the universal argument
+	 * @return a tags-search handler that supplies the search scope
+	 */
+	private TagsSearchHandler getScope(int arg) {
+		TagsSearchHandler result;
+		if (arg < 4) {
+			result = new TagsProjectHandler();
+			prefix = QR_PROJECT;
+		} else if (arg < 16) {
+			result = new TagsSetHandler();
+			prefix = QR_SET;
+		} else {
+			result = new TagsSpaceHandler();
+			prefix = QR_SPACE;
+		}
+		return result;
+	}
+
+	/**
+	 * @see com.mulgasoft.emacsplus.minibuffer.IMinibufferExecutable#getMinibufferPrefix()
+	 */
+	public String getMinibufferPrefix() {
+		return mbState.getMinibufferPrefix();
+	}
+
+	/**
+	 * Dispatch through state object
+	 *
+	 * @see com.mulgasoft.emacsplus.commands.MinibufferExecHandler#doExecuteResult(org.eclipse.ui.texteditor.ITextEditor, java.lang.Object)
+	 */
+	@Override
+	protected boolean doExecuteResult(ITextEditor editor, Object minibufferResult) {
+		return mbState.executeResult(editor, minibufferResult);
+	}
+
+	/**
+	 * @see com.mulgasoft.emacsplus.commands.EmacsPlusCmdHandler#isLooping()
+	 */
+	@Override
+	protected boolean isLooping() {
+		return false;
+	}
+
+	/**
+	 * Get state to read the search regexp
+	 *
+	 * @param scope
+	 * @return search prompt state
+	 */
+	private IMinibufferState searchState(final TagsSearchHandler scope) {
+		return new IMinibufferState() {
+
+			public String getMinibufferPrefix() {
+				return prefix;
+			}
+
+			public int run(final ITextEditor editor) {
+				IDocument document = getThisDocument(editor);
+				ITextSelection selection = getCurrentSelection(editor);
+				ITextSelection initText = null;
+				try {
+					initText = scope.initText(editor, document, selection);
+				} catch (BadLocationException e) {}
+				final ITextSelection init = initText;
+				final SearchExecuteMinibuffer mini = new SearchExecuteMinibuffer(TagsQueryReplaceHandler.this);
+				EmacsPlusUtils.asyncUiRun(new Runnable() {
+					public void run() {
+						boolean ok = mini.beginSession(editor, PlatformUI.getWorkbench().getActiveWorkbenchWindow().getActivePage(), null);
+						if (ok) {
+							mini.initMinibufferSelection(init);
+						}
+					}
+				});
+				return NO_OFFSET;
+			}
+
+			public boolean executeResult(ITextEditor editor, Object minibufferResult) {
+				ISearchResult result = (ISearchResult) minibufferResult;
+				if (result != null && result.getSearchStr().length() > 0) {
+					searchStr = result.getSearchStr();
+					int flags = Pattern.MULTILINE | (result.isCaseSensitive() ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+					mbState = replaceState(Pattern.compile(searchStr, flags), scope.getInputObject(editor));
+					mbState.run(editor);
+				}
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Get state to read the replacement, and then scan the scope
+	 *
+	 * @param pattern
+	 * @param scope
+	 * @return replacement prompt state
+	 */
+	private IMinibufferState replaceState(final Pattern pattern, final FileTextSearchScope scope) {
+		return new IMinibufferState() {
+
+			public String getMinibufferPrefix() {
+				return String.format(QR_WITH, prefix, searchStr);
+			}
+
+			public int run(ITextEditor editor) {
+				return miniTransform(new TextMinibuffer(TagsQueryReplaceHandler.this), editor, null);
+			}
+
+			public boolean executeResult(final ITextEditor editor, Object minibufferResult) {
+				String replacement = (minibufferResult != null ? (String) minibufferResult : EMPTY_STR);
+				replacer = new MultiBufferReplace(pattern, replacement);
+				asyncShowMessage(editor, String.format(QR_SCANNING, searchStr), false);
+				Job job = new Job(JOB_NAME) {
+					@Override
+					protected IStatus run(IProgressMonitor monitor) {
+						final List<FileMatches> result = replacer.scan(scope, monitor);
+						if (!monitor.isCanceled()) {
+							EmacsPlusUtils.asyncUiRun(new Runnable() {
+								public void run() {
+									beginQuery(editor, result);
+								}
+							});
+						}
+						return Status.OK_STATUS;
+					}
+				};
+				job.schedule();
+				return true;
+			}
+		};
+	}
+
+	private void beginQuery(ITextEditor editor, List<FileMatches> result) {
+		files = result;
+		fileIndex = 0;
+		matchIndex = 0;
+		replaced = 0;
+		changed = new ArrayList<IFile>();
+		opened = null;
+		page = editor.getSite().getPage();
+		if (files.isEmpty()) {
+			EmacsPlusUtils.showMessage(editor, String.format(QR_NONE, searchStr), false);
+		} else {
+			mbState = queryState();
+			query(editor);
+		}
+	}
+
+	/**
+	 * Get state to answer each match
+	 *
+	 * @return query state
+	 */
+	private IMinibufferState queryState() {
+		return new IMinibufferState() {
+
+			public String getMinibufferPrefix() {
+				Match match = getMatch();
+				return String.format(QR_QUERY, match.getText(), match.getReplacement());
+			}
+
+			public int run(final ITextEditor editor) {
+				return miniTransform(new QueryReplaceMinibuffer(TagsQueryReplaceHandler.this) {
+					private boolean answered = false;
+
+					@Override
+					protected boolean executeResult(ITextEditor ed, Object commandResult) {
+						answered = true;
+						return super.executeResult(ed, commandResult);
+					}
+
+					@Override
+					protected void leave(boolean closeDialog) {
+						super.leave(closeDialog);
+						if (!answered && files != null) {
+							// left without an answer (C-g, lost focus), so keep the answers given
+							answered = true;
+							finish(editor);
+						}
+					}
+				}, editor, null);
+			}
+
+			public boolean executeResult(ITextEditor editor, Object minibufferResult) {
+				String response = (String) minibufferResult;
+				char c = (response != null && response.length() > 0 ? response.charAt(0) : QueryReplaceMinibuffer.EXIT);
+				switch (c) {
+					case REPLACE:
+					case REPLACE_SPC:
+						getMatch().setAccepted(true);
+						next(editor);
+						break;
+					case QueryReplaceMinibuffer.SKIP:
+						next(editor);
+						break;
+					case REPLACE_ALL:
+						replaceAll(editor);
+						break;
+					case REPLACE_EXIT:
+						getMatch().setAccepted(true);
+						finish(editor);
+						break;
+					case QueryReplaceMinibuffer.EXIT:
+						finish(editor);
+						break;
+					default:
+						beep();
+						query(editor);
+				}
+				return true;
+			}
+		};
+	}
+
+	private Match getMatch() {
+		return files.get(fileIndex).getMatches().get(matchIndex);
+	}
+
+	/**
+	 * Show the current match in its file, and ask
+	 *
+	 * @param editor the editor of the previous match
+	 */
+	private void query(ITextEditor editor) {
+		ITextEditor next = openEditor(files.get(fileIndex));
+		while (next == null) {
+			// skip files that can't be shown in a text editor
+			leaveFile(editor);
+			if (++fileIndex == files.size()) {
+				finish(editor);
+				return;
+			}
+			matchIndex = 0;
+			next = openEditor(files.get(fileIndex));
+		}
+		Match match = getMatch();
+		next.selectAndReveal(match.getOffset(), match.getLength());
+		mbState.run(next);
+	}
+
+	private void next(ITextEditor editor) {
+		if (++matchIndex == files.get(fileIndex).getMatches().size()) {
+			leaveFile(editor);
+			matchIndex = 0;
+			if (++fileIndex == files.size()) {
+				finish(editor);
+				return;
+			}
+		}
+		query(editor);
+	}
+
+	/**
+	 * Accept the current and all remaining matches, and apply them in the background,
+	 * one file at a time on the UI thread
+	 *
+	 * @param editor
+	 */
+	private void replaceAll(final ITextEditor editor) {
+		// the rest of the current file, which is open, now
+		files.get(fileIndex).acceptFrom(matchIndex);
+		leaveFile(editor);
+		final List<FileMatches> remaining = new ArrayList<FileMatches>(files.subList(fileIndex + 1, files.size()));
+		for (FileMatches matches : remaining) {
+			matches.acceptFrom(0);
+		}
+		// the job works on its own copy of the session, which is ended here
+		final MultiBufferReplace batch = replacer;
+		final List<IFile> done = changed;
+		final int[] count = { replaced };
+		endSession();
+		Job job = new Job(JOB_NAME) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				monitor.beginTask(JOB_NAME, remaining.size());
+				for (final FileMatches matches : remaining) {
+					if (monitor.isCanceled()) {
+						break;
+					}
+					PlatformUI.getWorkbench().getDisplay().syncExec(new Runnable() {
+						public void run() {
+							count[0] += apply(editor, batch, matches, done);
+						}
+					});
+					monitor.worked(1);
+				}
+				monitor.done();
+				EmacsPlusUtils.asyncUiRun(new Runnable() {
+					public void run() {
+						showDone(editor, count[0], done);
+					}
+				});
+				return Status.OK_STATUS;
+			}
+		};
+		job.setUser(true);
+		job.schedule();
+	}
+
+	/**
+	 * Leave the current file, and report
+	 *
+	 * @param editor
+	 */
+	private void finish(ITextEditor editor) {
+		if (fileIndex < files.size()) {
+			leaveFile(editor);
+		}
+		showDone(editor, replaced, changed);
+		endSession();
+	}
+
+	private void endSession() {
+		files = null;
+		replacer = null;
+		changed = null;
+		opened = null;
+	}
+
+	/**
+	 * Report the replacements, and the changed files that are left unsaved in their editors
+	 *
+	 * @param editor
+	 * @param count the number of matches replaced
+	 * @param done the files in which matches were replaced
+	 */
+	private void showDone(ITextEditor editor, int count, List<IFile> done) {
+		int unsaved = 0;
+		for (IFile file : done) {
+			ITextFileBuffer buffer = FileBuffers.getTextFileBufferManager().getTextFileBuffer(file.getFullPath(), LocationKind.IFILE);
+			if (buffer != null && buffer.isDirty()) {
+				++unsaved;
+			}
+		}
+		String msg = String.format(QR_DONE, count, done.size());
+		if (unsaved > 0) {
+			msg += String.format(QR_UNSAVED, unsaved);
+		}
+		ITextEditor current = EmacsPlusUtils.getCurrentEditor();
+		asyncShowMessage((current != null ? current : editor), msg, false);
+	}
+
+	/**
+	 * Replace the accepted matches of the current file as one batch, and close its editor if it
+	 * was opened just to query it and nothing was replaced
+	 *
+	 * @param editor
+	 */
+	private void leaveFile(ITextEditor editor) {
+		int count = apply(editor, replacer, files.get(fileIndex), changed);
+		replaced += count;
+		if (count == 0 && opened != null) {
+			page.closeEditor(opened, false);
+		}
+		opened = null;
+	}
+
+	/**
+	 * @param editor
+	 * @param batch the replacer of the session
+	 * @param matches
+	 * @param done the files in which matches were replaced, added to if any are
+	 * @return the number of matches replaced
+	 */
+	private int apply(ITextEditor editor, MultiBufferReplace batch, FileMatches matches, List<IFile> done) {
+		int count = 0;
+		try {
+			count = batch.apply(matches, null);
+			if (count > 0) {
+				done.add(matches.getFile());
+			}
+		} catch (CoreException | BadLocationException e) {
+			asyncShowMessage(editor, String.format(QR_ERROR, matches.getFile().getFullPath(), e.getLocalizedMessage()), true);
+		}
+		return count;
+	}
+
+	private ITextEditor openEditor(FileMatches matches) {
+		ITextEditor result = null;
+		try {
+			boolean isOpen = page.findEditor(new FileEditorInput(matches.getFile())) != null;
+			IEditorPart part = IDE.openEditor(page, matches.getFile(), true);
+			if (!isOpen) {
+				// remember it, so it can be closed if it isn't changed
+				opened = part;
+			}
+			result = EmacsPlusUtils.getTextEditor(part, true);
+		} catch (PartInitException e) {
+			result = null;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,29 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.commands;
+
+import com.mulgasoft.emacsplus.execute.WhitespaceEngine;
+
+/**
+ * Implement: untabify
+ * 
+ * Convert all tabs in region to multiple spaces, preserving columns.
+ * 
+ * @author mfeber
+ */
+public class UntabifyHandler extends TabifyHandler {
+
+	/**
+	 * @see com.mulgasoft.emacsplus.commands.TabifyHandler#convert(WhitespaceEngine, int, int)
+	 */
+	@Override
+	protected WhitespaceEngine convert(WhitespaceEngine engine, int column, int tabWidth) {
+		return engine.untabify(column, tabWidth);
+	}
+}
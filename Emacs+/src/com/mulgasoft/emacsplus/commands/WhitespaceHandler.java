@@ -15,6 +15,8 @@ import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextSelection;
 import org.eclipse.ui.texteditor.ITextEditor;
 
+import com.mulgasoft.emacsplus.execute.WhitespaceEngine;
+
 /**
  * Handler for removing various kinds of whitespace 
  * 
@@ -47,6 +49,14 @@ public abstract class WhitespaceHandler extends EmacsPlusCmdHandler {
 	 * @throws BadLocationException
 	 */
 	protected int transformSpace(ITextEditor editor, IDocument document, int offset, String replace, boolean ignoreCR) throws BadLocationException {
+		IRegion line;
+		if (!ignoreCR && offset <= (line = document.getLineInformationOfOffset(offset)).getOffset() + line.getLength()) {
+			// the whitespace is confined to the line, so scan it once
+			WhitespaceEngine engine = new WhitespaceEngine(document, line.getOffset(), line.getLength());
+			int result = engine.replaceHorizontal(offset, replace);
+			engine.apply(document);
+			return result;
+		}
 		int left=countWS(document, offset-1, -1,ignoreCR);
 		int right=countWS(document, offset, 1,ignoreCR);
 		// When dealing with line removal, first line differs from remaining
@@ -14,6 +14,8 @@ import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.ITextSelection;
 import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.ui.console.TextConsoleViewer;
 import org.eclipse.ui.texteditor.ITextEditor;
 
 import com.mulgasoft.emacsplus.KillRing;
@@ -51,20 +53,37 @@ public class YankHandler extends BaseYankHandler {
 		int count = getUniversalCount();
 		// if count != 1, then will rotate to specified entry
 		KillRing.getInstance().rotateYankPos(count);
-		String yankText = KillRing.getInstance().yank();
-		int len = insertText(document,selection,yankText);
+		String yankText = convertDelimiters(KillRing.getInstance().yank());
+		int len = 0;
+		if (yankText != null) {
+			len = yankText.length();
+			updateText(document, selection, yankText);
+		}
 		if (len > 0){
 			KillRing.getInstance().setYanked(true);
+			setLastYank(document, selection.getOffset(), yankText);
 		}
 		return len;
 	}
 
 	@Override
-	protected void paste(ExecutionEvent event, StyledText widget, boolean isProcess) {
+	protected void paste(ExecutionEvent event, TextConsoleViewer viewer, boolean isProcess) {
 		KillRing kb = KillRing.getInstance();
+		StyledText widget = viewer.getTextWidget();
 		// get current yank text (as it may not match clip text)
 		String yankText = convertDelimiters(kb.yank(),isProcess);
 		if (yankText != null && yankText.length() > 0) {
+			Point sel = widget.getSelectionRange();
+			if (!isProcess) {
+				// insert directly, without going through the system clipboard 
+				if (consoleReplace(viewer, sel.x, sel.y, yankText)) {
+					kb.setYanked(true);
+					setLastYank(viewer.getDocument(), sel.x, yankText);
+				} else {
+					consoleReadOnly(event);
+				}
+				return;
+			}
 			String cacheText = kb.getClipboardText();
 			try {
 				if (!yankText.equals(cacheText)) {
@@ -73,6 +92,7 @@ public class YankHandler extends BaseYankHandler {
 					cacheText = null;
 				}
 				super.paste(event, widget);
+				setLastYank(viewer.getDocument(), sel.x, yankText);
 			} finally {
 				if (cacheText != null){
 					kb.setClipboardText(cacheText);
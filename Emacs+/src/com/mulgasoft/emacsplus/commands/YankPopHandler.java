@@ -15,6 +15,7 @@ import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.ITextSelection;
 import org.eclipse.swt.custom.StyledText;
+import org.eclipse.ui.console.TextConsoleViewer;
 import org.eclipse.ui.handlers.HandlerUtil;
 import org.eclipse.ui.texteditor.ITextEditor;
 
@@ -71,15 +72,16 @@ public class YankPopHandler extends BaseYankHandler {
 		String prevText = convertDelimiters(kb.lastYank());
 		String yankText = convertDelimiters(kb.yankPop());
 		if (yankText != null) {
-			int origin = selection.getOffset() - prevText.length();
 			// in case selection has been mouse moved
 			// Since our mouse listener would have to be on the StyledText widget
-			if (prevText == null ||  !prevText.equals(document.get(origin, prevText.length()))) {
+			if (prevText == null || !isLastYank(document, selection.getOffset(), prevText)) {
 				kb.setYanked(false);
 				return 0;
 			}
+			int origin = selection.getOffset() - prevText.length();
 			updateText(document, origin, prevText.length(), yankText);
 			kb.setYanked(true);
+			setLastYank(document, origin, yankText);
 			return yankText.length() - prevText.length();
 		}
 		return len;
@@ -88,25 +90,42 @@ public class YankPopHandler extends BaseYankHandler {
 	/**
 	 *  Simulate yank pop
 	 *  
-	 * @see com.mulgasoft.emacsplus.commands.BaseYankHandler#paste(org.eclipse.core.commands.ExecutionEvent, org.eclipse.swt.custom.StyledText)
+	 * @see com.mulgasoft.emacsplus.commands.BaseYankHandler#paste(org.eclipse.core.commands.ExecutionEvent, org.eclipse.ui.console.TextConsoleViewer, boolean)
 	 */
-	protected void paste(ExecutionEvent event, StyledText widget, boolean isProcess) {
+	protected void paste(ExecutionEvent event, TextConsoleViewer viewer, boolean isProcess) {
 		KillRing kb = KillRing.getInstance();
 		if (kb.isYanked()) {
-			String cacheText = KillRing.getInstance().getClipboardText();
+			StyledText widget = viewer.getTextWidget();
+			IDocument document = viewer.getDocument();
 			String prevText = convertDelimiters(kb.lastYank(),isProcess);
 			String yankText = convertDelimiters(kb.yankPop(),isProcess);
+			String cacheText = null;
 			try {
 				int offset = widget.getCaretOffset();
-				if (prevText == null || !prevText.equals(widget.getText(offset-prevText.length(), offset-1))) {
+				if (prevText == null || yankText == null || !isLastYank(document, offset, prevText)) {
 					kb.setYanked(false);
 					EmacsPlusUtils.showMessage(HandlerUtil.getActivePart(event), EmacsPlusActivator.getString(YP_DISABLED),false);
 					return;
 				}
+				int origin = offset - prevText.length();
+				if (!isProcess) {
+					// replace directly, without going through the system clipboard 
+					if (consoleReplace(viewer, origin, prevText.length(), yankText)) {
+						setLastYank(document, origin, yankText);
+					} else {
+						kb.setYanked(false);
+						consoleReadOnly(event);
+					}
+					return;
+				}
+				cacheText = kb.getClipboardText();
 				widget.setRedraw(false);
-				widget.setSelection(offset - prevText.length(), offset);
+				widget.setSelection(origin, offset);
 				kb.setClipboardText(yankText);
 				super.paste(event, widget);
+				setLastYank(document, origin, yankText);
+			} catch (BadLocationException e) {
+				kb.setYanked(false);
 			} finally {
 				if (cacheText != null) {
 					kb.setClipboardText(cacheText);
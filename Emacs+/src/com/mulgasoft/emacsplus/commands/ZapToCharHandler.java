@@ -10,9 +10,7 @@ package com.mulgasoft.emacsplus.commands;
 
 import org.eclipse.core.commands.ExecutionEvent;
 import org.eclipse.jface.text.BadLocationException;
-import org.eclipse.jface.text.FindReplaceDocumentAdapter;
 import org.eclipse.jface.text.IDocument;
-import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextSelection;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.ui.texteditor.ITextEditor;
@@ -21,6 +19,7 @@ import com.mulgasoft.emacsplus.EmacsPlusActivator;
 import com.mulgasoft.emacsplus.IEmacsPlusCommandDefinitionIds;
 import com.mulgasoft.emacsplus.KillRing;
 import com.mulgasoft.emacsplus.MarkUtils;
+import com.mulgasoft.emacsplus.execute.LiteralSearch;
 import com.mulgasoft.emacsplus.minibuffer.ZapMinibuffer;
 
 /**
@@ -79,40 +78,35 @@ public class ZapToCharHandler extends MinibufferExecHandler {
 		if (searchStr.length() > 0) {
 			int modelOffset = MarkUtils.getCursorOffset(editor);
 			boolean forward = (count < 0 ? false : true);
-			int searchOffset = modelOffset + (forward ? 0 : -1); // separate search from result offset because of a bug in FRDA. 
-			int resultOffset = modelOffset; 					 // Also forces an extra bounds check here. See comment below
-			if (!(searchOffset <0)) {
-				// use widget to avoid unpleasant scrolling side effects of IRewriteTarget				
-				Control widget = MarkUtils.getTextWidget(editor);
-				try {
-					widget.setRedraw(false);
-					// flag for kill ring
-					KillRing.getInstance().setKill(IEmacsPlusCommandDefinitionIds.ZAP_TO_CHAR,forward);
-					IDocument doc = getThisDocument(editor);
-					FindReplaceDocumentAdapter frda = new FindReplaceDocumentAdapter(doc);
-					int counter = Math.abs(count);
-					for (int i = 0; i < counter; i++) {
-						IRegion reg = frda.find(searchOffset, searchStr, forward, true, false, false);
-						if (reg != null) {
-							resultOffset = reg.getOffset() + (forward ? reg.getLength() : 0);
-							// There's a ?bug? in org.eclipse.jface.text.FindReplaceDocumentAdapter that causes improper overlap on reverse search: 
-							// while (found && fFindReplaceMatcher.start() + fFindReplaceMatcher.group().length() <= fFindReplaceMatchOffset + 1) 
-							searchOffset = (forward ? resultOffset : resultOffset -1);
-						} else {
-							// back to original cursor offset on failure
-							selectAndReveal(editor, modelOffset, modelOffset);
-							fail(editor, searchStr, ++i, counter);
-							return true;
-						}
-					}
-					int length = Math.abs(resultOffset - modelOffset);
-					doc.replace((forward ? modelOffset : resultOffset), length, EMPTY_STR);
-				} catch (BadLocationException e) {
-					e.printStackTrace();
-				} finally {
-					KillRing.getInstance().setKill(null,false);
-					widget.setRedraw(true);
+			if (count == 0) {
+				// nothing to zap
+				return true;
+			}
+			// use widget to avoid unpleasant scrolling side effects of IRewriteTarget				
+			Control widget = MarkUtils.getTextWidget(editor);
+			try {
+				widget.setRedraw(false);
+				IDocument doc = getThisDocument(editor);
+				int counter = Math.abs(count);
+				// find the Nth occurrence in a single scan
+				LiteralSearch search = new LiteralSearch(searchStr, true);
+				int found = search.find(doc, modelOffset, counter, forward);
+				if (found < 0) {
+					// back to original cursor offset on failure
+					selectAndReveal(editor, modelOffset, modelOffset);
+					fail(editor, searchStr, search.getMatches() + 1, counter);
+					return true;
 				}
+				int resultOffset = found + (forward ? searchStr.length() : 0);
+				int length = Math.abs(resultOffset - modelOffset);
+				// flag for kill ring
+				KillRing.getInstance().setKill(IEmacsPlusCommandDefinitionIds.ZAP_TO_CHAR,forward);
+				doc.replace((forward ? modelOffset : resultOffset), length, EMPTY_STR);
+			} catch (BadLocationException e) {
+				e.printStackTrace();
+			} finally {
+				KillRing.getInstance().setKill(null,false);
+				widget.setRedraw(true);
 			}
 		} else {
 			fail(editor,searchStr);
@@ -11,8 +11,8 @@ package com.mulgasoft.emacsplus.e4.commands;
 import static com.mulgasoft.emacsplus.EmacsPlusUtils.getPreferenceStore;
 import static com.mulgasoft.emacsplus.preferences.PrefVars.ENABLE_SPLIT_SELF;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.eclipse.e4.ui.model.application.ui.MElementContainer;
@@ -24,7 +24,6 @@ import org.eclipse.e4.ui.model.application.ui.basic.MPartSashContainerElement;
 import org.eclipse.e4.ui.model.application.ui.basic.MPartStack;
 import org.eclipse.e4.ui.model.application.ui.basic.MTrimmedWindow;
 import org.eclipse.e4.ui.model.application.ui.basic.MWindow;
-import org.eclipse.e4.ui.workbench.modeling.EModelService;
 import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.jface.util.PropertyChangeEvent;
 
@@ -129,35 +128,29 @@ public abstract class E4WindowCmd extends E4Cmd {
 		return new PartAndStack((MPart)part, stack);
 	}
 
+	/**
+	 * @return the cached topology of the editor stacks and frames
+	 */
+	protected WindowTopology getTopology() {
+		return WindowTopology.getInstance(application, modelService);
+	}
+
 	/**
 	 * Get the ordered list of stacks
 	 * @param apart
-	 * @return a list of MElementContainer<MUIElement> representing all the PartStacks
+	 * @return an unmodifiable list of MElementContainer<MUIElement> representing all the PartStacks
 	 */
 	protected List<MElementContainer<MUIElement>> getOrderedStacks(MPart apart) {
-		List<MElementContainer<MUIElement>> result = new ArrayList<MElementContainer<MUIElement>>();
+		List<MElementContainer<MUIElement>> result = Collections.emptyList();
 		MElementContainer<MUIElement> parent = getTopElement(apart.getParent());
 		if (parent != null) {
-			result = getStacks(result, parent);
+			result = getStacks(parent);
 		} 
 		return result;
 	}
 	
 	List<MElementContainer<MUIElement>> getStacks(MElementContainer<MUIElement> container) {
-		return getStacks(new ArrayList<MElementContainer<MUIElement>>(), container);
-	}
-	
-	private List<MElementContainer<MUIElement>> getStacks(List<MElementContainer<MUIElement>> result, MElementContainer<MUIElement> container) {
-		for (MUIElement child : container.getChildren()) {
-			@SuppressWarnings("unchecked") // We type check all the way down
-			MElementContainer<MUIElement> c = (MElementContainer<MUIElement>)child;
-			if (child instanceof MPartStack) {
-				result.add(c);
-			} else {
-				getStacks(result,c);
-			}
-		}
-		return result;
+		return getTopology().getStacks(container);
 	}
 
 	/**
@@ -213,10 +206,11 @@ public abstract class E4WindowCmd extends E4Cmd {
 	 */
 	protected MElementContainer<MUIElement> findNextStack(MPart part, MElementContainer<MUIElement> stack, int count) {
 		MElementContainer<MUIElement> nstack = null;		
-		List<MElementContainer<MUIElement>> stacks = getOrderedStacks(part);		
+		MElementContainer<MUIElement> top = getTopElement(part.getParent());
+		List<MElementContainer<MUIElement>> stacks = (top != null ? getStacks(top) : Collections.<MElementContainer<MUIElement>>emptyList());
 		int size = stacks.size();
 		if (size > 1) {
-			int index = stacks.indexOf(stack) + (count % size);
+			int index = getTopology().indexOf(top, stack) + (count % size);
 			nstack = (index < 0) ? stacks.get(size + index) : (index < size) ? stacks.get(index) : stacks.get(index - size); 
 		}
 		return nstack;
@@ -277,24 +271,7 @@ public abstract class E4WindowCmd extends E4Cmd {
 	 * @return the MArea element containing the editors
 	 */
 	protected MUIElement getEditArea(MWindow w) {
-		// Seems like we should be able to use modelService.find(ID_EDITOR_AREA, w), but that returns a useless PlaceHolder
-		// NB Selectors aren't supported until Luna
-		//		final Selector match = new Selector() {
-		//			public boolean select(MApplicationElement element) {
-		//				return !modelService.findElements((MUIElement)element, null, MPart.class, EDITOR_TAG, EModelService.IN_ANY_PERSPECTIVE).isEmpty();
-		//			}
-		//		};
-		//		List<MArea> area = modelService.findElements(w, MArea.class, EModelService.IN_SHARED_AREA, match);
-		List<MArea> area = modelService.findElements(w, null, MArea.class, null, EModelService.IN_SHARED_AREA);
-		List<MArea> refined = new ArrayList<MArea>();
-		if (area != null) {
-			for (MArea m : area) {
-				if (!modelService.findElements(m, null, MPart.class, EDITOR_TAG, EModelService.IN_ANY_PERSPECTIVE).isEmpty()) {
-					refined.add(m);
-				}
-			}
-		}
-		return refined.isEmpty() ? null : refined.get(0);
+		return getTopology().getEditArea(w);
 	}
 
 	@SuppressWarnings("unchecked") // manually checked
@@ -321,25 +298,7 @@ public abstract class E4WindowCmd extends E4Cmd {
 	 * @return the list of detached windows 
 	 */
 	List<MTrimmedWindow> getDetachedFrames() {
-		final MWindow topWindow = application.getChildren().get(0); 
-		// NB Selectors aren't supported until Luna
-		//		final Selector match = new Selector() {
-		//			public boolean select(MApplicationElement element) {
-		//				boolean result = element != topWindow && ((MTrimmedWindow)element).isToBeRendered();
-		//				return result && !modelService.findElements((MUIElement)element, null, MPart.class, EDITOR_TAG, EModelService.IN_ANY_PERSPECTIVE).isEmpty();
-		//			}
-		//		};
-		//		List<MTrimmedWindow> mts = modelService.findElements(topWindow, MTrimmedWindow.class, EModelService.IN_ANY_PERSPECTIVE, match); 
-		// get the all detached editor trimmed windows
-		// the implementation searches all detached windows in this case
-		List<MTrimmedWindow> mts = modelService.findElements(topWindow, null, MTrimmedWindow.class, null, EModelService.IN_ANY_PERSPECTIVE); 
-		List<MTrimmedWindow> refined = new ArrayList<MTrimmedWindow>();
-		for (MTrimmedWindow mt : mts) {
-			if (mt != topWindow && mt.isToBeRendered() && !modelService.findElements(mt, null, MPart.class, EDITOR_TAG, EModelService.IN_ANY_PERSPECTIVE).isEmpty()) {
-				refined.add(mt);
-			}
-		}
-		return refined; 
+		return getTopology().getDetachedFrames();
 	}
 	
 }
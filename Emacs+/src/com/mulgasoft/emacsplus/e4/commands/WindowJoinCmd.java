@@ -8,8 +8,6 @@
  */
 package com.mulgasoft.emacsplus.e4.commands;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -52,8 +50,6 @@ public class WindowJoinCmd extends E4WindowCmd implements IDeduplication {
 		ONE, ALL;
 	}
 	
-	private static final String GET_REF = "getReference";  	//$NON-NLS-1$
-	
 	@Execute
 	public Object execute(@Active MPart apart, @Active IEditorPart editor, @Named(E4CmdHandler.CMD_CTX_KEY)Join jtype,
 			@Active EmacsPlusCmdHandler handler) {
@@ -206,24 +202,12 @@ public class WindowJoinCmd extends E4WindowCmd implements IDeduplication {
 	 */
 	private Collection<IEditorReference> getStackEditors(MElementContainer<MUIElement> stack) {
 		Collection<IEditorReference> editors = new ArrayList<IEditorReference>(); 
+		WindowTopology topology = getTopology();
 		for (MUIElement child : stack.getChildren()) {
 			if (child instanceof MPart) {
-				// TODO: There must be a better way of getting the editor out of e4, but I can't find it
-				Object cEditor = ((MPart) child).getObject();
-				if (cEditor != null) {
-					try {
-						// avoid discouraged access of org.eclipse.ui.internal.e4.compatibility.CompatibilityEditor
-						// which is expected cEditor's type in e4
-						Method method = cEditor.getClass().getMethod(GET_REF);
-						if (method != null) {
-							IEditorReference ie = (IEditorReference)method.invoke(cEditor);					
-							editors.add(ie);
-
-						}
-					} catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException
-							| InvocationTargetException | ClassCastException e) {
-
-					}
+				IEditorReference ie = topology.getEditorReference((MPart) child);
+				if (ie != null) {
+					editors.add(ie);
 				}
 			}
 		}
@@ -0,0 +1,290 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.e4.commands;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.e4.core.services.events.IEventBroker;
+import org.eclipse.e4.ui.model.application.MApplication;
+import org.eclipse.e4.ui.model.application.ui.MElementContainer;
+import org.eclipse.e4.ui.model.application.ui.MUIElement;
+import org.eclipse.e4.ui.model.application.ui.advanced.MArea;
+import org.eclipse.e4.ui.model.application.ui.advanced.MPerspectiveStack;
+import org.eclipse.e4.ui.model.application.ui.basic.MPart;
+import org.eclipse.e4.ui.model.application.ui.basic.MPartStack;
+import org.eclipse.e4.ui.model.application.ui.basic.MTrimmedWindow;
+import org.eclipse.e4.ui.model.application.ui.basic.MWindow;
+import org.eclipse.e4.ui.workbench.UIEvents;
+import org.eclipse.e4.ui.workbench.modeling.EModelService;
+import org.eclipse.ui.IEditorReference;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+
+/**
+ * The editor stack topology of the workbench windows, as used by the window and frame commands.
+ *
+ * The ordered list of part stacks under each top element (editor area or detached frame), the
+ * editor area of each window and the list of detached editor frames are computed on first use,
+ * and kept until an E4 model event (a change to the children of a container, to the windows of
+ * a window or perspective, to the rendering of an element or to the selected perspective) tells
+ * us the structure may have changed.  So repeated window commands (e.g. other-window) are
+ * lookups rather than walks of the model.
+ *
+ * If the event broker is not available, nothing is cached.  The subscriptions are removed when
+ * the instance is replaced (for a new application) and when the plug-in is stopped.
+ *
+ * All access is expected to be on the UI thread (which is where the broker delivers the events).
+ *
+ * @author mfeber - Initial API and implementation
+ */
+public class WindowTopology {
+
+	private static final String GET_REF = "getReference";  	//$NON-NLS-1$
+
+	private static WindowTopology instance;
+
+	private final MApplication application;
+	private final EModelService modelService;
+	private final IEventBroker broker;
+	private final boolean caching;
+
+	// top element -> its ordered stacks
+	private final Map<MElementContainer<MUIElement>, Stacks> stacks = new IdentityHashMap<MElementContainer<MUIElement>, Stacks>();
+	// window -> its editor area (which may be null)
+	private final Map<MWindow, MUIElement> editAreas = new IdentityHashMap<MWindow, MUIElement>();
+	private List<MTrimmedWindow> frames = null;
+	// editor class -> its getReference accessor (or null if it has none)
+	private final Map<Class<?>, Method> refAccessors = new HashMap<Class<?>, Method>();
+
+	private final EventHandler invalidator = new EventHandler() {
+		public void handleEvent(Event event) {
+			invalidate();
+		}
+	};
+
+	private final EventHandler selectionInvalidator = new EventHandler() {
+		public void handleEvent(Event event) {
+			// only a change of perspective can change the topology
+			if (event.getProperty(UIEvents.EventTags.ELEMENT) instanceof MPerspectiveStack) {
+				invalidate();
+			}
+		}
+	};
+
+	private WindowTopology(MApplication application, EModelService modelService) {
+		this.application = application;
+		this.modelService = modelService;
+		broker = (application.getContext() != null ? application.getContext().get(IEventBroker.class) : null);
+		if (broker != null) {
+			broker.subscribe(UIEvents.ElementContainer.TOPIC_CHILDREN, invalidator);
+			broker.subscribe(UIEvents.Window.TOPIC_WINDOWS, invalidator);
+			broker.subscribe(UIEvents.Perspective.TOPIC_WINDOWS, invalidator);
+			broker.subscribe(UIEvents.UIElement.TOPIC_TOBERENDERED, invalidator);
+			broker.subscribe(UIEvents.ElementContainer.TOPIC_SELECTEDELEMENT, selectionInvalidator);
+		}
+		caching = broker != null;
+	}
+
+	/**
+	 * @param application
+	 * @param modelService
+	 * @return the topology of the application's windows
+	 */
+	static WindowTopology getInstance(MApplication application, EModelService modelService) {
+		if (instance == null || instance.application != application) {
+			if (instance != null) {
+				instance.dispose();
+			}
+			instance = new WindowTopology(application, modelService);
+		}
+		return instance;
+	}
+
+	/**
+	 * Remove the event subscriptions of the current instance
+	 * Called when the plugin is stopped
+	 */
+	public static void shutdown() {
+		if (instance != null) {
+			instance.dispose();
+			instance = null;
+		}
+	}
+
+	private void dispose() {
+		if (broker != null) {
+			broker.unsubscribe(invalidator);
+			broker.unsubscribe(selectionInvalidator);
+		}
+		invalidate();
+	}
+
+	/**
+	 * Discard the cached topology
+	 */
+	void invalidate() {
+		stacks.clear();
+		editAreas.clear();
+		frames = null;
+	}
+
+	/**
+	 * The ordered stacks under a top element, and the index of each
+	 */
+	private static class Stacks {
+		private final List<MElementContainer<MUIElement>> list;
+		private final Map<MElementContainer<MUIElement>, Integer> index;
+
+		Stacks(List<MElementContainer<MUIElement>> list) {
+			this.list = Collections.unmodifiableList(list);
+			this.index = new IdentityHashMap<MElementContainer<MUIElement>, Integer>(list.size() * 2);
+			for (int i = 0; i < list.size(); i++) {
+				index.put(list.get(i), i);
+			}
+		}
+	}
+
+	private Stacks getStackInfo(MElementContainer<MUIElement> top) {
+		Stacks result = stacks.get(top);
+		if (result == null) {
+			result = new Stacks(collectStacks(new ArrayList<MElementContainer<MUIElement>>(), top));
+			if (caching) {
+				stacks.put(top, result);
+			}
+		}
+		return result;
+	}
+
+	private List<MElementContainer<MUIElement>> collectStacks(List<MElementContainer<MUIElement>> result, MElementContainer<MUIElement> container) {
+		for (MUIElement child : container.getChildren()) {
+			@SuppressWarnings("unchecked") // We type check all the way down
+			MElementContainer<MUIElement> c = (MElementContainer<MUIElement>)child;
+			if (child instanceof MPartStack) {
+				result.add(c);
+			} else {
+				collectStacks(result,c);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param top the top element (editor area or frame)
+	 * @return the (unmodifiable) ordered list of stacks under the top element
+	 */
+	List<MElementContainer<MUIElement>> getStacks(MElementContainer<MUIElement> top) {
+		return getStackInfo(top).list;
+	}
+
+	/**
+	 * @param top the top element (editor area or frame)
+	 * @param stack
+	 * @return the index of the stack in the ordered list of stacks under the top element, or -1
+	 */
+	int indexOf(MElementContainer<MUIElement> top, MElementContainer<MUIElement> stack) {
+		Integer result = getStackInfo(top).index.get(stack);
+		return (result == null ? -1 : result);
+	}
+
+	/**
+	 * @param w
+	 * @return the MArea element containing the editors
+	 */
+	MUIElement getEditArea(MWindow w) {
+		MUIElement result = editAreas.get(w);
+		if (result == null && !editAreas.containsKey(w)) {
+			// Seems like we should be able to use modelService.find(ID_EDITOR_AREA, w), but that returns a useless PlaceHolder
+			List<MArea> area = modelService.findElements(w, null, MArea.class, null, EModelService.IN_SHARED_AREA);
+			if (area != null) {
+				for (MArea m : area) {
+					if (hasEditors(m)) {
+						result = m;
+						break;
+					}
+				}
+			}
+			if (caching) {
+				editAreas.put(w, result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * NB: The docs don't guarantee an order, but the implementation currently returns the same order
+	 * @return the (unmodifiable) list of detached editor windows
+	 */
+	List<MTrimmedWindow> getDetachedFrames() {
+		List<MTrimmedWindow> result = frames;
+		if (result == null) {
+			final MWindow topWindow = application.getChildren().get(0);
+			// the implementation searches all detached windows in this case
+			List<MTrimmedWindow> mts = modelService.findElements(topWindow, null, MTrimmedWindow.class, null, EModelService.IN_ANY_PERSPECTIVE);
+			List<MTrimmedWindow> refined = new ArrayList<MTrimmedWindow>();
+			for (MTrimmedWindow mt : mts) {
+				if (mt != topWindow && mt.isToBeRendered() && hasEditors(mt)) {
+					refined.add(mt);
+				}
+			}
+			result = Collections.unmodifiableList(refined);
+			if (caching) {
+				frames = result;
+			}
+		}
+		return result;
+	}
+
+	private boolean hasEditors(MUIElement ele) {
+		return !modelService.findElements(ele, null, MPart.class, E4WindowCmd.EDITOR_TAG, EModelService.IN_ANY_PERSPECTIVE).isEmpty();
+	}
+
+	/**
+	 * Get the IEditorReference of an editor part
+	 *
+	 * @param part
+	 * @return the IEditorReference or null
+	 */
+	IEditorReference getEditorReference(MPart part) {
+		IEditorReference result = null;
+		// TODO: There must be a better way of getting the editor out of e4, but I can't find it
+		Object cEditor = part.getObject();
+		if (cEditor != null) {
+			Method method = getRefAccessor(cEditor.getClass());
+			if (method != null) {
+				try {
+					result = (IEditorReference)method.invoke(cEditor);
+				} catch (Exception e) {
+					// not an editor
+				}
+			}
+		}
+		return result;
+	}
+
+	private Method getRefAccessor(Class<?> clazz) {
+		Method result = refAccessors.get(clazz);
+		if (result == null && !refAccessors.containsKey(clazz)) {
+			try {
+				// avoid discouraged access of org.eclipse.ui.internal.e4.compatibility.CompatibilityEditor
+				// which is expected cEditor's type in e4
+				result = clazz.getMethod(GET_REF);
+			} catch (NoSuchMethodException | SecurityException e) {
+				result = null;
+			}
+			refAccessors.put(clazz, result);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.execute;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * The bytes allocated by the current thread, as counted by the com.sun.management extension
+ * of the vm's thread bean.
+ *
+ * The extension is looked up reflectively, through the bean's own class, so there is no
+ * dependency on the (vm specific) package; on a vm without it, isSupported is false.
+ *
+ * @author mfeber
+ */
+public class AllocationCounter {
+
+	private static final String SUN_THREAD_BEAN = "com.sun.management.ThreadMXBean";	//$NON-NLS-1$
+	private static final String ALLOC_SUPPORTED = "isThreadAllocatedMemorySupported";	//$NON-NLS-1$
+	private static final String ALLOC_ENABLE = "setThreadAllocatedMemoryEnabled";	//$NON-NLS-1$
+	private static final String ALLOC_BYTES = "getThreadAllocatedBytes";	//$NON-NLS-1$
+
+	// the vm's thread bean, and its (HotSpot) allocation counter, if it has one
+	private static ThreadMXBean threadBean = null;
+	private static Method allocatedBytes = null;
+	private static boolean initialized = false;
+
+	private AllocationCounter() {}
+
+	/**
+	 * Look up (once) and enable the allocation counter
+	 *
+	 * @return true if allocation can be counted
+	 */
+	public static synchronized boolean isSupported() {
+		if (!initialized) {
+			initialized = true;
+			try {
+				ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+				Class<?> extension = findInterface(bean.getClass(), SUN_THREAD_BEAN);
+				if (extension != null && (Boolean)extension.getMethod(ALLOC_SUPPORTED).invoke(bean)) {
+					extension.getMethod(ALLOC_ENABLE, boolean.class).invoke(bean, true);
+					allocatedBytes = extension.getMethod(ALLOC_BYTES, long.class);
+					threadBean = bean;
+				}
+			} catch (Throwable e) {
+				// not available in this vm
+				allocatedBytes = null;
+			}
+		}
+		return allocatedBytes != null;
+	}
+
+	private static Class<?> findInterface(Class<?> c, String name) {
+		for (Class<?> k = c; k != null; k = k.getSuperclass()) {
+			for (Class<?> i : k.getInterfaces()) {
+				Class<?> result = (name.equals(i.getName()) ? i : findInterface(i, name));
+				if (result != null) {
+					return result;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the bytes allocated so far by the current thread, or 0 if not supported
+	 */
+	public static long allocated() {
+		if (isSupported()) {
+			try {
+				return (Long)allocatedBytes.invoke(threadBean, Thread.currentThread().getId());
+			} catch (Exception e) {
+				// fall through
+			}
+		}
+		return 0;
+	}
+}
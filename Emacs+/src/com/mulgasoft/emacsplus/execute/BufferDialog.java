@@ -24,6 +24,8 @@ import org.eclipse.swt.widgets.Table;
 import org.eclipse.ui.IEditorReference;
 import org.eclipse.ui.texteditor.ITextEditor;
 
+import com.mulgasoft.emacsplus.BufferRegistry.BufferRef;
+
 /**
  * @author Mark Feber - initial API and implementation
  */
@@ -46,7 +48,8 @@ public class BufferDialog extends SelectionDialog {
 		tip = new Shell((Shell) null, SWT.ON_TOP | SWT.TOOL);
 		tip.setLayout(new FillLayout());
 		tip.setBackground(table.getBackground());
-		createBufferTip(tip, (IEditorReference)getSelectables().get(txt));
+		Object buffer = getSelectables().get(txt);
+		createBufferTip(tip, (buffer instanceof BufferRef ? ((BufferRef)buffer).getToolTip() : ((IEditorReference)buffer).getTitleToolTip()));
 		Point size = tip.computeSize(SWT.DEFAULT, SWT.DEFAULT);
 		Rectangle rect = tp.getBounds();
 		Point pt = table.toDisplay(rect.x + getSizeAdjustment(), rect.y
@@ -55,7 +58,7 @@ public class BufferDialog extends SelectionDialog {
 		tip.setVisible(true);
 	}
 
-	private Control createBufferTip(Composite parent, IEditorReference ref) {
+	private Control createBufferTip(Composite parent, String toolTip) {
 
 		Composite result = new Composite(parent, SWT.NO_FOCUS);
 		Color bg = parent.getBackground();
@@ -66,7 +69,7 @@ public class BufferDialog extends SelectionDialog {
 
 		StyledText name = new StyledText(result, SWT.READ_ONLY | SWT.HIDE_SELECTION);
 		// italics results in slightly clipped text unless extended
-		String text = ref.getTitleToolTip() + ' ';
+		String text = toolTip + ' ';
 		name.setText(text);
 		name.setBackground(bg);
 		name.setCaret(null);
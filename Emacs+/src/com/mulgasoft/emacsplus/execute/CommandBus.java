@@ -0,0 +1,395 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.execute;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.core.commands.IExecutionListener;
+import org.eclipse.core.commands.IExecutionListenerWithChecks;
+import org.eclipse.core.commands.NotEnabledException;
+import org.eclipse.core.commands.NotHandledException;
+import org.eclipse.core.commands.common.NotDefinedException;
+import org.eclipse.ui.commands.ICommandService;
+
+/**
+ * A single execution listener for all Emacs+ command state handling.
+ *
+ * The bus is added once to the workbench command service, and Emacs+ listeners subscribe to it
+ * either for a category of command (all, Emacs+ or other) or for specific command ids.
+ * Each command id is classified once, and the resulting array of subscribers is cached until
+ * the subscriptions change, so each execution only visits the listeners interested in it.
+ *
+ * Category subscribers are notified before command id subscribers (in subscription order),
+ * which mirrors the order in which Eclipse notifies global and per-command listeners.
+ *
+ * @author mfeber
+ */
+public class CommandBus implements IExecutionListenerWithChecks {
+
+	/** Command id prefix of the Emacs+ commands */
+	private static final String EMACSPLUS_PREFIX = "com.mulgasoft.emacsplus";	//$NON-NLS-1$
+
+	public enum Category {
+		/** every command */
+		ALL,
+		/** Emacs+ commands */
+		EMACS_PLUS,
+		/** non-Emacs+ commands */
+		OTHER;
+	}
+
+	// notification types
+	private static final int PRE = 0;
+	private static final int SUCCESS = 1;
+	private static final int FAILURE = 2;
+	private static final int NOT_HANDLED = 3;
+	private static final int NOT_ENABLED = 4;
+	private static final int NOT_DEFINED = 5;
+
+	private static final Subscription[] NO_SUBSCRIBERS = new Subscription[0];
+
+	private static CommandBus instance;
+
+	private final List<Subscription> categorySubscribers = new ArrayList<Subscription>();
+	private final Map<String, List<Subscription>> idSubscribers = new HashMap<String, List<Subscription>>();
+	// command id -> subscribers, computed on first execution of the id
+	private final Map<String, Subscription[]> dispatchCache = new HashMap<String, Subscription[]>();
+
+	private ICommandService service = null;
+	private boolean timing = false;
+
+	private CommandBus() {}
+
+	public static CommandBus getInstance() {
+		if (instance == null) {
+			instance = new CommandBus();
+		}
+		return instance;
+	}
+
+	/**
+	 * Add the bus to the command service.  This should be done only once.
+	 *
+	 * @param ics the workbench command service
+	 */
+	public void register(ICommandService ics) {
+		if (service == null && ics != null) {
+			service = ics;
+			service.addExecutionListener(this);
+		}
+	}
+
+	/**
+	 * Remove the bus from the command service when the plugin stops
+	 */
+	public void unregister() {
+		if (service != null) {
+			service.removeExecutionListener(this);
+			service = null;
+		}
+	}
+
+	/**
+	 * Subscribe the listener to executions of a category of command.
+	 * Prefer {@link Category#EMACS_PLUS} or explicit command ids, as {@link Category#ALL}
+	 * subscribers are visited on every command executed in the workbench.
+	 *
+	 * @param listener
+	 * @param category
+	 */
+	public void subscribe(IExecutionListener listener, Category category) {
+		if (find(categorySubscribers, listener) == null) {
+			categorySubscribers.add(new Subscription(listener, category, category.name()));
+			dispatchCache.clear();
+		}
+	}
+
+	/**
+	 * Subscribe the listener to executions of the specified commands
+	 *
+	 * @param listener
+	 * @param commandIds
+	 */
+	public void subscribe(IExecutionListener listener, String... commandIds) {
+		for (String id : commandIds) {
+			List<Subscription> subs = idSubscribers.get(id);
+			if (subs == null) {
+				subs = new ArrayList<Subscription>(2);
+				idSubscribers.put(id, subs);
+			}
+			if (find(subs, listener) == null) {
+				subs.add(new Subscription(listener, null, id));
+			}
+		}
+		dispatchCache.clear();
+	}
+
+	/**
+	 * Remove all subscriptions of the listener
+	 *
+	 * @param listener
+	 */
+	public void unsubscribe(IExecutionListener listener) {
+		Subscription sub;
+		if ((sub = find(categorySubscribers, listener)) != null) {
+			categorySubscribers.remove(sub);
+		}
+		for (List<Subscription> subs : idSubscribers.values()) {
+			if ((sub = find(subs, listener)) != null) {
+				subs.remove(sub);
+			}
+		}
+		dispatchCache.clear();
+	}
+
+	private Subscription find(List<Subscription> subs, IExecutionListener listener) {
+		for (Subscription sub : subs) {
+			if (sub.listener == listener) {
+				return sub;
+			}
+		}
+		return null;
+	}
+
+	private Category classify(String commandId) {
+		return (commandId != null && commandId.startsWith(EMACSPLUS_PREFIX)) ? Category.EMACS_PLUS : Category.OTHER;
+	}
+
+	private Subscription[] getSubscribers(String commandId) {
+		Subscription[] result = dispatchCache.get(commandId);
+		if (result == null) {
+			Category category = classify(commandId);
+			List<Subscription> subs = new ArrayList<Subscription>();
+			for (Subscription sub : categorySubscribers) {
+				if (sub.category == Category.ALL || sub.category == category) {
+					subs.add(sub);
+				}
+			}
+			List<Subscription> ids = idSubscribers.get(commandId);
+			if (ids != null) {
+				subs.addAll(ids);
+			}
+			result = (subs.isEmpty() ? NO_SUBSCRIBERS : subs.toArray(new Subscription[subs.size()]));
+			dispatchCache.put(commandId, result);
+		}
+		return result;
+	}
+
+	/********************** Timing **********************/
+
+	public boolean isTimingEnabled() {
+		return timing;
+	}
+
+	/**
+	 * Enable or disable the per-listener timing.  Enabling resets the current statistics.
+	 *
+	 * @param enabled
+	 */
+	public void setTimingEnabled(boolean enabled) {
+		if (enabled && !timing) {
+			resetTimings();
+		}
+		timing = enabled;
+	}
+
+	public void resetTimings() {
+		for (Subscription sub : getAllSubscriptions()) {
+			sub.count = 0;
+			sub.total = 0;
+			sub.max = 0;
+		}
+	}
+
+	/**
+	 * @return a snapshot of the timing for each subscription, in dispatch order
+	 */
+	public List<Timing> getTimings() {
+		List<Timing> result = new ArrayList<Timing>();
+		for (Subscription sub : getAllSubscriptions()) {
+			result.add(new Timing(sub));
+		}
+		return result;
+	}
+
+	private List<Subscription> getAllSubscriptions() {
+		List<Subscription> result = new ArrayList<Subscription>(categorySubscribers);
+		for (List<Subscription> subs : idSubscribers.values()) {
+			result.addAll(subs);
+		}
+		return result;
+	}
+
+	/**
+	 * The accumulated execution time of a single subscription
+	 */
+	public static class Timing {
+		private final String listener;
+		private final String key;
+		private final long count;
+		private final long total;
+		private final long max;
+
+		private Timing(Subscription sub) {
+			listener = sub.listener.getClass().getName();
+			key = sub.key;
+			count = sub.count;
+			total = sub.total;
+			max = sub.max;
+		}
+
+		/** @return the class name of the listener */
+		public String getListener() {
+			return listener;
+		}
+
+		/** @return the category name or command id of the subscription */
+		public String getKey() {
+			return key;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		/** @return the total time in nanoseconds */
+		public long getTotal() {
+			return total;
+		}
+
+		/** @return the maximum time of a single notification in nanoseconds */
+		public long getMax() {
+			return max;
+		}
+	}
+
+	/********************** Dispatch **********************/
+
+	private void dispatch(int type, String commandId, Object arg) {
+		Subscription[] subs = getSubscribers(commandId);
+		if (subs.length > 0) {
+			if (timing) {
+				for (Subscription sub : subs) {
+					long start = System.nanoTime();
+					try {
+						sub.fire(type, commandId, arg);
+					} finally {
+						sub.record(System.nanoTime() - start);
+					}
+				}
+			} else {
+				for (Subscription sub : subs) {
+					sub.fire(type, commandId, arg);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @see org.eclipse.core.commands.IExecutionListener#preExecute(java.lang.String, org.eclipse.core.commands.ExecutionEvent)
+	 */
+	public void preExecute(String commandId, ExecutionEvent event) {
+		dispatch(PRE, commandId, event);
+	}
+
+	/**
+	 * @see org.eclipse.core.commands.IExecutionListener#postExecuteSuccess(java.lang.String, java.lang.Object)
+	 */
+	public void postExecuteSuccess(String commandId, Object returnValue) {
+		dispatch(SUCCESS, commandId, returnValue);
+	}
+
+	/**
+	 * @see org.eclipse.core.commands.IExecutionListener#postExecuteFailure(java.lang.String, org.eclipse.core.commands.ExecutionException)
+	 */
+	public void postExecuteFailure(String commandId, ExecutionException exception) {
+		dispatch(FAILURE, commandId, exception);
+	}
+
+	/**
+	 * @see org.eclipse.core.commands.IExecutionListener#notHandled(java.lang.String, org.eclipse.core.commands.NotHandledException)
+	 */
+	public void notHandled(String commandId, NotHandledException exception) {
+		dispatch(NOT_HANDLED, commandId, exception);
+	}
+
+	/**
+	 * @see org.eclipse.core.commands.IExecutionListenerWithChecks#notEnabled(java.lang.String, org.eclipse.core.commands.NotEnabledException)
+	 */
+	public void notEnabled(String commandId, NotEnabledException exception) {
+		dispatch(NOT_ENABLED, commandId, exception);
+	}
+
+	/**
+	 * @see org.eclipse.core.commands.IExecutionListenerWithChecks#notDefined(java.lang.String, org.eclipse.core.commands.common.NotDefinedException)
+	 */
+	public void notDefined(String commandId, NotDefinedException exception) {
+		dispatch(NOT_DEFINED, commandId, exception);
+	}
+
+	private static class Subscription {
+		private final IExecutionListener listener;
+		// null for command id subscriptions
+		private final Category category;
+		private final String key;
+		private final IExecutionListenerWithChecks checks;
+
+		private long count = 0;
+		private long total = 0;
+		private long max = 0;
+
+		Subscription(IExecutionListener listener, Category category, String key) {
+			this.listener = listener;
+			this.category = category;
+			this.key = key;
+			this.checks = (listener instanceof IExecutionListenerWithChecks ? (IExecutionListenerWithChecks)listener : null);
+		}
+
+		void record(long nanos) {
+			count++;
+			total += nanos;
+			if (nanos > max) {
+				max = nanos;
+			}
+		}
+
+		void fire(int type, String commandId, Object arg) {
+			switch (type) {
+				case PRE:
+					listener.preExecute(commandId, (ExecutionEvent)arg);
+					break;
+				case SUCCESS:
+					listener.postExecuteSuccess(commandId, arg);
+					break;
+				case FAILURE:
+					listener.postExecuteFailure(commandId, (ExecutionException)arg);
+					break;
+				case NOT_HANDLED:
+					listener.notHandled(commandId, (NotHandledException)arg);
+					break;
+				case NOT_ENABLED:
+					if (checks != null) {
+						checks.notEnabled(commandId, (NotEnabledException)arg);
+					}
+					break;
+				case NOT_DEFINED:
+					if (checks != null) {
+						checks.notDefined(commandId, (NotDefinedException)arg);
+					}
+					break;
+				default:
+			}
+		}
+	}
+}
@@ -0,0 +1,388 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.execute;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.core.commands.IExecutionListenerWithChecks;
+import org.eclipse.core.commands.NotEnabledException;
+import org.eclipse.core.commands.NotHandledException;
+import org.eclipse.core.commands.common.NotDefinedException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.handlers.HandlerUtil;
+import org.eclipse.ui.texteditor.IDocumentProvider;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+import com.mulgasoft.emacsplus.EmacsPlusActivator;
+import com.mulgasoft.emacsplus.EmacsPlusUtils;
+
+/**
+ * Record the latency of Emacs+ commands, by command id.
+ *
+ * While recording, the statistics subscribe to the command bus for Emacs+ commands, and record for each:
+ *  - the invocation count
+ *  - a latency histogram (from which p50/p99 are estimated) and the maximum latency
+ *  - the size of the document at invocation
+ *  - optionally, the bytes allocated on the ui thread during execution
+ * Work that completes outside of the command execution (minibuffer results, keyboard macros)
+ * is recorded explicitly through begin/end.
+ *
+ * When not recording, there is no subscription and so no cost.
+ *
+ * @author mfeber
+ */
+public class CommandStatistics implements IExecutionListenerWithChecks {
+
+	private static final String CSV_FILE = "command-statistics.csv";	//$NON-NLS-1$
+	private static final String CSV_HEADER = "command,count,mean_ms,p50_ms,p99_ms,max_ms,mean_size,max_size,mean_alloc_bytes";	//$NON-NLS-1$
+	private static final String CSV_FORMAT = "%s,%d,%.3f,%.3f,%.3f,%.3f,%d,%d,%d";	//$NON-NLS-1$
+	private static final String ROW_FORMAT = "%-48s %7d %9.2f %9.2f %9.2f %9.2f %10d %10d %12d";	//$NON-NLS-1$
+	private static final String HEAD_FORMAT = "%-48s %7s %9s %9s %9s %9s %10s %10s %12s";	//$NON-NLS-1$
+	private static final String BUS_FORMAT = "%-64s %-40s %9d %9.2f %9.2f";	//$NON-NLS-1$
+	private static final String BUS_HEAD_FORMAT = "%-64s %-40s %9s %9s %9s";	//$NON-NLS-1$
+	private static final String CR = "\n";	//$NON-NLS-1$
+
+	// Bucket i holds latencies in [2^i, 2^(i+1)) microseconds; bucket 0 also holds anything under 1 microsecond
+	private static final int BUCKETS = 32;
+	private static final double MILLIS = 1000000.0;
+
+	private static CommandStatistics instance;
+
+	private final Map<String, Stats> stats = new HashMap<String, Stats>();
+	// frames for (possibly nested) bus dispatched commands
+	private final ArrayDeque<Frame> frames = new ArrayDeque<Frame>();
+
+	private volatile boolean recording = false;
+	private boolean allocation = false;
+
+	private CommandStatistics() {}
+
+	public static CommandStatistics getInstance() {
+		if (instance == null) {
+			instance = new CommandStatistics();
+		}
+		return instance;
+	}
+
+	public boolean isRecording() {
+		return recording;
+	}
+
+	public boolean isAllocation() {
+		return allocation;
+	}
+
+	/**
+	 * Start recording command statistics
+	 *
+	 * @param withAllocation if true, also record allocation, if supported by the vm
+	 */
+	public synchronized void start(boolean withAllocation) {
+		allocation = withAllocation && AllocationCounter.isSupported();
+		if (!recording) {
+			recording = true;
+			frames.clear();
+			CommandBus.getInstance().subscribe(this, CommandBus.Category.EMACS_PLUS);
+			CommandBus.getInstance().setTimingEnabled(true);
+		}
+	}
+
+	/**
+	 * Stop recording command statistics; the statistics gathered are retained until reset
+	 */
+	public synchronized void stop() {
+		if (recording) {
+			recording = false;
+			frames.clear();
+			CommandBus.getInstance().unsubscribe(this);
+			CommandBus.getInstance().setTimingEnabled(false);
+		}
+	}
+
+	public synchronized void reset() {
+		stats.clear();
+		frames.clear();
+	}
+
+	private long allocated() {
+		return AllocationCounter.allocated();
+	}
+
+	/**
+	 * Begin recording an execution
+	 *
+	 * @param key the command id or name under which the execution is recorded
+	 * @param document the document at invocation, or null
+	 * @return the execution frame or null if not recording
+	 */
+	public Frame begin(String key, IDocument document) {
+		Frame result = null;
+		if (recording) {
+			result = new Frame(key, (document != null ? document.getLength() : 0),
+					(allocation ? Thread.currentThread() : null), (allocation ? allocated() : 0));
+		}
+		return result;
+	}
+
+	/**
+	 * End recording an execution
+	 *
+	 * @param frame the result of begin (may be null)
+	 */
+	public void end(Frame frame) {
+		if (frame != null && recording) {
+			long elapsed = System.nanoTime() - frame.start;
+			// allocation can only be measured if we're on the same thread
+			long bytes = (frame.thread == Thread.currentThread() ? allocated() - frame.allocStart : -1);
+			synchronized (this) {
+				Stats s = stats.get(frame.key);
+				if (s == null) {
+					s = new Stats(frame.key);
+					stats.put(frame.key, s);
+				}
+				s.record(elapsed, frame.size, bytes);
+			}
+		}
+	}
+
+	/**
+	 * A single (in progress) execution
+	 */
+	public static class Frame {
+		private final String key;
+		private final int size;
+		private final Thread thread;
+		private final long allocStart;
+		private final long start;
+
+		private Frame(String key, int size, Thread thread, long allocStart) {
+			this.key = key;
+			this.size = size;
+			this.thread = thread;
+			this.allocStart = allocStart;
+			this.start = System.nanoTime();
+		}
+	}
+
+	private static class Stats {
+		private final String key;
+		private final long[] histogram = new long[BUCKETS];
+		private long count = 0;
+		private long total = 0;
+		private long max = 0;
+		private long totalSize = 0;
+		private int maxSize = 0;
+		private long allocCount = 0;
+		private long allocTotal = 0;
+
+		Stats(String key) {
+			this.key = key;
+		}
+
+		void record(long nanos, int size, long bytes) {
+			++count;
+			total += nanos;
+			if (nanos > max) {
+				max = nanos;
+			}
+			long micros = nanos / 1000;
+			int bucket = (micros <= 1 ? 0 : Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros)));
+			++histogram[bucket];
+			totalSize += size;
+			if (size > maxSize) {
+				maxSize = size;
+			}
+			if (bytes >= 0) {
+				++allocCount;
+				allocTotal += bytes;
+			}
+		}
+
+		/**
+		 * Estimate the latency at the percentile from the histogram, using the upper bound of the bucket
+		 *
+		 * @param percentile
+		 * @return the estimate in nanoseconds
+		 */
+		long percentile(double percentile) {
+			long rank = (long)Math.ceil(percentile * count);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += histogram[i];
+				if (seen >= rank) {
+					return Math.min(max, (1L << (i + 1)) * 1000);
+				}
+			}
+			return max;
+		}
+
+		double mean() {
+			return (count > 0 ? total / (double)count : 0);
+		}
+
+		long meanSize() {
+			return (count > 0 ? totalSize / count : 0);
+		}
+
+		long meanAlloc() {
+			return (allocCount > 0 ? allocTotal / allocCount : 0);
+		}
+	}
+
+	/**
+	 * @return a snapshot of the statistics, in descending order of total time
+	 */
+	private synchronized List<Stats> getStats() {
+		List<Stats> result = new ArrayList<Stats>(stats.values());
+		Collections.sort(result, (a, b) -> Long.compare(b.total, a.total));
+		return result;
+	}
+
+	/**
+	 * Print the statistics to the Emacs+ console
+	 */
+	public void printReport() {
+		EmacsPlusConsole console = EmacsPlusConsole.getInstance();
+		console.clear();
+		console.activate();
+		console.printBold(EmacsPlusActivator.getResourceString(recording ? "Stats_Recording" : "Stats_Stopped") + CR + CR);	//$NON-NLS-1$ //$NON-NLS-2$
+		console.printBold(String.format(HEAD_FORMAT, "Command", "Count", "Mean ms", "p50 ms", "p99 ms", "Max ms",  //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+				"Mean size", "Max size", "Mean alloc") + CR);	//$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		for (Stats s : getStats()) {
+			console.print(String.format(ROW_FORMAT, s.key, s.count, s.mean() / MILLIS, s.percentile(.5) / MILLIS,
+					s.percentile(.99) / MILLIS, s.max / MILLIS, s.meanSize(), s.maxSize, s.meanAlloc()) + CR);
+		}
+		List<CommandBus.Timing> timings = CommandBus.getInstance().getTimings();
+		if (!timings.isEmpty()) {
+			console.print(CR);
+			console.printBold(String.format(BUS_HEAD_FORMAT, "Listener", "Subscription", "Count", "Total ms", "Max ms") + CR);	//$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+			for (CommandBus.Timing t : timings) {
+				if (t.getCount() > 0) {
+					console.print(String.format(BUS_FORMAT, t.getListener(), t.getKey(), t.getCount(), t.getTotal() / MILLIS, t.getMax() / MILLIS) + CR);
+				}
+			}
+		}
+		console.setFocus(true);
+	}
+
+	/**
+	 * Export the statistics in csv format to the plug-in state location
+	 *
+	 * @return the exported file
+	 * @throws IOException
+	 */
+	public File exportCsv() throws IOException {
+		File file = EmacsPlusActivator.getDefault().getStateLocation().append(CSV_FILE).toFile();
+		PrintWriter writer = new PrintWriter(new FileWriter(file));
+		try {
+			writer.println(CSV_HEADER);
+			for (Stats s : getStats()) {
+				writer.println(String.format(Locale.ROOT, CSV_FORMAT, csvField(s.key), s.count, s.mean() / MILLIS, s.percentile(.5) / MILLIS,
+						s.percentile(.99) / MILLIS, s.max / MILLIS, s.meanSize(), s.maxSize, s.meanAlloc()));
+			}
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Quote a csv field, if necessary, as in RFC 4180
+	 *
+	 * @param field
+	 * @return the field, quoted if it contains a comma, quote or line break
+	 */
+	private String csvField(String field) {
+		String result = field;
+		if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+			result = '"' + field.replace("\"", "\"\"") + '"';	//$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return result;
+	}
+
+	/********************** IExecutionListenerWithChecks **********************/
+
+	private IDocument getDocument(ExecutionEvent event) {
+		IDocument result = null;
+		IEditorPart part = HandlerUtil.getActiveEditor(event);
+		ITextEditor editor = (part instanceof ITextEditor ? (ITextEditor)part : EmacsPlusUtils.getActiveTextEditor(part));
+		if (editor != null) {
+			IDocumentProvider provider = editor.getDocumentProvider();
+			if (provider != null) {
+				result = provider.getDocument(editor.getEditorInput());
+			}
+		}
+		return result;
+	}
+
+	private void endCommand(String commandId) {
+		Frame frame = frames.peek();
+		if (frame != null && frame.key.equals(commandId)) {
+			end(frames.pop());
+		}
+	}
+
+	/**
+	 * @see org.eclipse.core.commands.IExecutionListener#preExecute(java.lang.String, org.eclipse.core.commands.ExecutionEvent)
+	 */
+	public void preExecute(String commandId, ExecutionEvent event) {
+		Frame frame = begin(commandId, getDocument(event));
+		if (frame != null) {
+			frames.push(frame);
+		}
+	}
+
+	/**
+	 * @see org.eclipse.core.commands.IExecutionListener#postExecuteSuccess(java.lang.String, java.lang.Object)
+	 */
+	public void postExecuteSuccess(String commandId, Object returnValue) {
+		endCommand(commandId);
+	}
+
+	/**
+	 * @see org.eclipse.core.commands.IExecutionListener#postExecuteFailure(java.lang.String, org.eclipse.core.commands.ExecutionException)
+	 */
+	public void postExecuteFailure(String commandId, ExecutionException exception) {
+		endCommand(commandId);
+	}
+
+	/**
+	 * @see org.eclipse.core.commands.IExecutionListener#notHandled(java.lang.String, org.eclipse.core.commands.NotHandledException)
+	 */
+	public void notHandled(String commandId, NotHandledException exception) {
+		endCommand(commandId);
+	}
+
+	/**
+	 * @see org.eclipse.core.commands.IExecutionListenerWithChecks#notEnabled(java.lang.String, org.eclipse.core.commands.NotEnabledException)
+	 */
+	public void notEnabled(String commandId, NotEnabledException exception) {
+		endCommand(commandId);
+	}
+
+	/**
+	 * @see org.eclipse.core.commands.IExecutionListenerWithChecks#notDefined(java.lang.String, org.eclipse.core.commands.common.NotDefinedException)
+	 */
+	public void notDefined(String commandId, NotDefinedException exception) {
+		endCommand(commandId);
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.execute;
+
+import java.text.CharacterIterator;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+
+/**
+ * A read only view of a range of a document, as a CharacterIterator (for a BreakIterator) and as
+ * a CharSequence (for a regexp Matcher), that reads the characters from the document in place
+ * rather than copying its text.
+ *
+ * CharacterIterator indexes are document offsets; CharSequence indexes are relative to the
+ * start of the range.  The document must not change while the view is in use.
+ *
+ * @author mfeber
+ */
+class DocumentCharacterIterator implements CharacterIterator, CharSequence {
+
+	private final IDocument document;
+	private final int first;
+	private final int last;
+	private int index;
+
+	/**
+	 * View the whole document
+	 *
+	 * @param document
+	 */
+	DocumentCharacterIterator(IDocument document) {
+		this(document, 0, document.getLength());
+	}
+
+	/**
+	 * @param document
+	 * @param first the document offset of the start of the range
+	 * @param last the document offset of the end (exclusive) of the range
+	 */
+	DocumentCharacterIterator(IDocument document, int first, int last) {
+		if (first < 0 || first > last || last > document.getLength()) {
+			throw new IllegalArgumentException();
+		}
+		this.document = document;
+		this.first = first;
+		this.last = last;
+		this.index = first;
+	}
+
+	private char get(int offset) {
+		try {
+			return document.getChar(offset);
+		} catch (BadLocationException e) {
+			throw new IndexOutOfBoundsException(e.getMessage());
+		}
+	}
+
+	/**
+	 * @see java.text.CharacterIterator#first()
+	 */
+	public char first() {
+		return setIndex(first);
+	}
+
+	/**
+	 * @see java.text.CharacterIterator#last()
+	 */
+	public char last() {
+		return setIndex(first == last ? last : last - 1);
+	}
+
+	/**
+	 * @see java.text.CharacterIterator#current()
+	 */
+	public char current() {
+		return (index >= first && index < last ? get(index) : DONE);
+	}
+
+	/**
+	 * @see java.text.CharacterIterator#next()
+	 */
+	public char next() {
+		return setIndex(Math.min(index + 1, last));
+	}
+
+	/**
+	 * @see java.text.CharacterIterator#previous()
+	 */
+	public char previous() {
+		if (index > first) {
+			return setIndex(index - 1);
+		}
+		return DONE;
+	}
+
+	/**
+	 * @see java.text.CharacterIterator#setIndex(int)
+	 */
+	public char setIndex(int position) {
+		if (position < first || position > last) {
+			throw new IllegalArgumentException();
+		}
+		index = position;
+		return current();
+	}
+
+	/**
+	 * @see java.text.CharacterIterator#getBeginIndex()
+	 */
+	public int getBeginIndex() {
+		return first;
+	}
+
+	/**
+	 * @see java.text.CharacterIterator#getEndIndex()
+	 */
+	public int getEndIndex() {
+		return last;
+	}
+
+	/**
+	 * @see java.text.CharacterIterator#getIndex()
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @see java.lang.CharSequence#length()
+	 */
+	public int length() {
+		return last - first;
+	}
+
+	/**
+	 * @see java.lang.CharSequence#charAt(int)
+	 */
+	public char charAt(int position) {
+		if (position < 0 || position >= length()) {
+			throw new IndexOutOfBoundsException();
+		}
+		return get(first + position);
+	}
+
+	/**
+	 * @see java.lang.CharSequence#subSequence(int, int)
+	 */
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > length() || start > end) {
+			throw new IndexOutOfBoundsException();
+		}
+		return new DocumentCharacterIterator(document, first + start, first + end);
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		try {
+			return document.get(first, last - first);
+		} catch (BadLocationException e) {
+			return "";	//$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * @see java.lang.Object#clone()
+	 */
+	@Override
+	public Object clone() {
+		DocumentCharacterIterator result = new DocumentCharacterIterator(document, first, last);
+		result.index = index;
+		return result;
+	}
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.execute;
+
+import java.text.BreakIterator;
+
+import org.eclipse.jface.text.IDocument;
+
+/**
+ * The word boundaries of a document, as used by sexp movement.
+ *
+ * A large document is iterated in place, rather than copying all of it to a String on every
+ * sexp step; a small one is copied, as the copy is cheap and a String iterates faster.
+ *
+ * @author mfeber
+ */
+public class DocumentWords {
+
+	private DocumentWords() {}
+
+	/**
+	 * @param document
+	 * @param inPlace true to iterate over the document itself, false to copy its text
+	 * @return a new word BreakIterator over the document
+	 */
+	public static BreakIterator getWordIterator(IDocument document, boolean inPlace) {
+		BreakIterator result = BreakIterator.getWordInstance();
+		if (inPlace) {
+			result.setText(new DocumentCharacterIterator(document));
+		} else {
+			result.setText(document.get());
+		}
+		return result;
+	}
+}
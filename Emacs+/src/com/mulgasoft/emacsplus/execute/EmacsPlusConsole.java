@@ -10,6 +10,10 @@
 package com.mulgasoft.emacsplus.execute;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.swt.SWT;
@@ -18,6 +22,7 @@ import org.eclipse.swt.custom.StyledText;
 import org.eclipse.swt.custom.VerifyKeyListener;
 import org.eclipse.swt.events.VerifyEvent;
 import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.console.ConsolePlugin;
 import org.eclipse.ui.console.IConsole;
 import org.eclipse.ui.console.IConsoleView;
@@ -78,6 +83,7 @@ public class EmacsPlusConsole extends IOConsole implements VerifyKeyListener {
 	 */
 	protected void dispose() {
 		clear();
+		closeStreams();
 		super.dispose();
 	}
 	
@@ -85,6 +91,7 @@ public class EmacsPlusConsole extends IOConsole implements VerifyKeyListener {
 	 * Clear console content.
 	 */
 	public void clear() {
+		discardPending();
 		setName(WI_CONSOLE);
 		removeBackground();
 		setKeyHandler(null);
@@ -119,6 +126,7 @@ public class EmacsPlusConsole extends IOConsole implements VerifyKeyListener {
     }
 
 	public void setFocus(final boolean reset) {
+		flush();
 		super.activate();
 		if (getWidget() != null) {
 			if (reset) {
@@ -181,27 +189,197 @@ public class EmacsPlusConsole extends IOConsole implements VerifyKeyListener {
 		this.print(message,SWT.DEFAULT);
 	}
 
-	private IOConsoleOutputStream getOutputStream() {
-		return newOutputStream();			
+	/**
+	 * Print a message without bringing the console to the front, for output
+	 * (e.g. a run summary) that should not interrupt the user
+	 * 
+	 * @param message
+	 */
+	public void log(String message) {
+		printMessage(message, null, SWT.DEFAULT, false);
+	}
+
+	/**
+	 * Replace the console contents with text in a single write, on the UI thread.
+	 * 
+	 * @param text the full listing
+	 * @see #replaceContents(Listing)
+	 */
+	public void replaceContents(String text) {
+		replaceContents(createListing().print(text));
+	}
+
+	/**
+	 * Replace the console contents with a (styled) listing in one ordered batch, on the UI thread:
+	 * each run of text in the same color and style is a single write to its stream.
+	 * 
+	 * The text is written through the console's streams rather than set in its document, as
+	 * the console treats document changes that don't come from its streams as typed input.
+	 * Off the UI thread, the replacement is queued behind any scheduled flush, so earlier
+	 * output cannot land after it.
+	 * 
+	 * @param listing the full listing
+	 */
+	public void replaceContents(final Listing listing) {
+		if (Display.getCurrent() == null) {
+			EmacsPlusUtils.asyncUiRun(() -> replaceContents(listing));
+		} else {
+			synchronized (this) {
+				clear();
+				for (Run run : listing.runs) {
+					write(getOutputStream(run.color, run.style, true), run.text.toString());
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return a new, empty listing for replaceContents
+	 */
+	public Listing createListing() {
+		return new Listing();
+	}
+
+	private static class Run {
+		final Color color;
+		final int style;
+		final StringBuilder text = new StringBuilder();
+
+		Run(Color color, int style) {
+			this.color = color;
+			this.style = style;
+		}
+	}
+
+	/**
+	 * A full listing, built up with the same print methods as the console and written 
+	 * by replaceContents.  Consecutive prints in the same color and style are accumulated
+	 * into a single run.
+	 */
+	public class Listing {
+
+		private final List<Run> runs = new ArrayList<Run>();
+
+		private Listing() {}
+
+		public Listing print(String message, Color c, int style) {
+			if (message != null) {
+				Run run = (runs.isEmpty() ? null : runs.get(runs.size() - 1));
+				if (run == null || run.color != c || run.style != style) {
+					run = new Run(c, style);
+					runs.add(run);
+				}
+				run.text.append(message);
+			}
+			return this;
+		}
+
+		public Listing printContext(String context) {
+			return print(context,contextColor,SWT.ITALIC);
+		}
+
+		public Listing printBold(String str) {
+			return print(str,defaultColor,SWT.BOLD);
+		}
+
+		public Listing printItalic(String str) {
+			return print(str,defaultColor,SWT.ITALIC);
+		}
+
+		public Listing print(String message, int style) {
+			return print(message,null,style);
+		}
+
+		public Listing print(String message, Color c) {
+			return print(message,c,SWT.DEFAULT);
+		}
+
+		public Listing print(String message) {
+			return print(message,SWT.DEFAULT);
+		}
+	}
+
+	// Output streams are cached by color, style and activation, and consecutive prints in the same style are 
+	// accumulated and written as a single chunk, rather than opening a new stream for each message
+	
+	private static final int CHUNK_SIZE = 16 * 1024;
+	private final Map<String, IOConsoleOutputStream> streams = new HashMap<String, IOConsoleOutputStream>();
+	private final StringBuilder pending = new StringBuilder();
+	private IOConsoleOutputStream pendingStream = null;
+	private boolean flushScheduled = false;
+
+	private IOConsoleOutputStream getOutputStream(Color c, int style, boolean activate) {
+		String key = (c == null ? EmacsPlusUtils.EMPTY_STR : c.getRGB().toString()) + ':' + style + ':' + activate;
+		IOConsoleOutputStream result = streams.get(key);
+		if (result == null || result.isClosed()) {
+			result = newOutputStream();
+			result.setActivateOnWrite(activate);
+			if (c != null) {
+				result.setColor(c);
+			}
+			result.setFontStyle(style);
+			streams.put(key, result);
+		}
+		return result;
 	}
 	
 	protected void printMessage(String message, Color c, int style) {
+		printMessage(message, c, style, true);
+	}
+
+	private synchronized void printMessage(String message, Color c, int style, boolean activate) {
 
 		if (message != null) {
-			IOConsoleOutputStream outputStream = getOutputStream();
-			outputStream.setActivateOnWrite(true);
-			if (c != null) {
-				outputStream.setColor(c);
+			IOConsoleOutputStream outputStream = getOutputStream(c, style, activate);
+			if (outputStream != pendingStream) {
+				flush();
+				pendingStream = outputStream;
+			}
+			pending.append(message);
+			if (pending.length() >= CHUNK_SIZE) {
+				flush();
+			} else if (!flushScheduled) {
+				flushScheduled = true;
+				EmacsPlusUtils.asyncUiRun(() -> flush());
 			}
-			outputStream.setFontStyle(style);
+		}
+	}
+
+	/**
+	 * Write any accumulated output to the console
+	 */
+	public synchronized void flush() {
+		flushScheduled = false;
+		if (pendingStream != null && pending.length() > 0) {
+			write(pendingStream, pending.toString());
+		}
+		pending.setLength(0);
+	}
+
+	private void write(IOConsoleOutputStream stream, String text) {
+		try {
+			stream.write(text);
+			stream.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private synchronized void discardPending() {
+		pending.setLength(0);
+		pendingStream = null;
+	}
+
+	private synchronized void closeStreams() {
+		discardPending();
+		for (IOConsoleOutputStream stream : streams.values()) {
 			try {
-				outputStream.write(message);
-				outputStream.flush();
-				outputStream.close();
+				stream.close();
 			} catch (IOException e) {
-				e.printStackTrace();
+				// ignore
 			}
 		}
+		streams.clear();
 	}
 
 	public int getLine() {
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.execute;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Event;
+
+import com.mulgasoft.emacsplus.EmacsPlusUtils;
+import com.mulgasoft.emacsplus.execute.KbdMacroSupport.KbdEvent;
+
+/**
+ * Compile the recorded events of a keyboard macro into the (shorter) form that is replayed.
+ *
+ * - A run of typed plain characters becomes a single insertion of their text.  A backspace
+ *   within the run removes the preceding character from the text, so the pair is dropped.
+ *   The insertion keeps the events it was compiled from, and the executor replays those
+ *   whenever the text cannot be inserted directly (e.g. while a minibuffer is reading keys).
+ * - A run of the same command (with the same parameters) becomes a single event with a
+ *   repeat count, executed in one pass on the UI thread.
+ *
+ * The recorded events are never modified, so edit-kbd-macro and saving see them as recorded.
+ *
+ * @author mfeber
+ */
+public class KbdMacroCompiler {
+
+	// punctuation that editors do not (by default) treat specially when typed, as they do
+	// quotes and brackets (auto-close), '.' (content assist) and ';' (smart semicolon)
+	private static final String PLAIN_CHARS = " _-+=,!@#$%&|~?";	//$NON-NLS-1$
+
+	private KbdMacroCompiler() {}
+
+	/**
+	 * @param macro the recorded events
+	 * @return the compiled events
+	 */
+	public static ArrayList<KbdEvent> compile(List<KbdEvent> macro) {
+		ArrayList<KbdEvent> result = new ArrayList<KbdEvent>();
+		StringBuilder text = new StringBuilder();
+		ArrayList<KbdEvent> source = new ArrayList<KbdEvent>();
+		int size = macro.size();
+		for (int i = 0; i < size; i++) {
+			KbdEvent e = macro.get(i);
+			char c = getPlainChar(e);
+			if (c != 0) {
+				text.append(c);
+				source.add(e);
+			} else if (isBackspace(e) && text.length() > 0) {
+				// typed and deleted
+				text.setLength(text.length() - 1);
+				source.add(e);
+			} else {
+				addInsertion(result, text, source);
+				int repeat = 1;
+				if (isRepeatable(e)) {
+					while (i + 1 < size && isSameCommand(e, macro.get(i + 1))) {
+						++repeat;
+						++i;
+					}
+				}
+				result.add(repeat > 1 ? KbdEvent.repeated(e, repeat) : e);
+			}
+		}
+		addInsertion(result, text, source);
+		result.trimToSize();
+		return result;
+	}
+
+	private static void addInsertion(List<KbdEvent> result, StringBuilder text, ArrayList<KbdEvent> source) {
+		if (source.size() == 1) {
+			result.add(source.get(0));
+		} else if (!source.isEmpty()) {
+			// even if all the text was deleted, the first character replaced any selection
+			result.add(KbdEvent.insertion(text.toString(), new ArrayList<KbdEvent>(source)));
+		}
+		text.setLength(0);
+		source.clear();
+	}
+
+	/**
+	 * @param e
+	 * @return the character that e types, if it is plain, else 0
+	 */
+	static char getPlainChar(KbdEvent e) {
+		char result = 0;
+		if (e.isChar() && e.isWait()) {
+			Event ev = e.getEvent();
+			if (ev.stateMask == 0) {
+				if (Character.isLetterOrDigit(ev.character) || PLAIN_CHARS.indexOf(ev.character) >= 0) {
+					result = ev.character;
+				}
+			} else if (ev.stateMask == SWT.SHIFT && Character.isLetter((char)ev.keyCode)) {
+				// shifted keys are recorded by key code
+				result = Character.toUpperCase((char)ev.keyCode);
+			}
+		}
+		return result;
+	}
+
+	static boolean isBackspace(KbdEvent e) {
+		return e.isChar() && e.isWait() && e.getEvent().stateMask == 0 && e.getEvent().character == SWT.BS;
+	}
+
+	/**
+	 * Nested kbd macros are waited upon (by id) on each execution, so are never folded
+	 *
+	 * @param e
+	 * @return true if a run of e may be executed as one event
+	 */
+	private static boolean isRepeatable(KbdEvent e) {
+		return e.getCmd() != null && !EmacsPlusUtils.isMacroId(e.getCmd());
+	}
+
+	private static boolean isSameCommand(KbdEvent e, KbdEvent next) {
+		Map<?,?> params = e.getCmdParameters();
+		Map<?,?> nextParams = next.getCmdParameters();
+		return e.getCmd().equals(next.getCmd())
+				&& (params == null ? nextParams == null : params.equals(nextParams));
+	}
+}
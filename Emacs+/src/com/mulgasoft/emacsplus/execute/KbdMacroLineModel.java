@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.execute;
+
+import java.util.List;
+
+import com.mulgasoft.emacsplus.IEmacsPlusCommandDefinitionIds;
+import com.mulgasoft.emacsplus.execute.KbdMacroSupport.KbdEvent;
+
+/**
+ * Run a line-local keyboard macro against the text of a line, without the editor.
+ *
+ * A (compiled) macro is line-local if it only types plain characters, moves by character or to
+ * the beginning/end of the line, and deletes single characters - with no parameters, so no prefix
+ * argument or mark is involved.  Such a macro, started at the beginning of a line, can be run on
+ * the line's text to get the line as the macro would leave it; or it can be discovered that the
+ * macro would leave the line (e.g. by moving or deleting past its end), in which case it must be
+ * executed normally.
+ * 
+ * With smart home/end, where the line start/end commands go depends on the editor (e.g. the Java
+ * editor skips comment prefixes), so a macro that uses them is not line-local.
+ *
+ * @author mfeber
+ */
+public class KbdMacroLineModel {
+
+	private static final int INSERT = 0;
+	private static final int FORWARD = 1;
+	private static final int BACKWARD = 2;
+	private static final int BEGIN = 3;
+	private static final int END = 4;
+	private static final int DELETE_NEXT = 5;
+	private static final int DELETE_PREVIOUS = 6;
+
+	private final int[] ops;
+	private final int[] counts;
+	private final String[] texts;
+	private int caret = 0;
+
+	private KbdMacroLineModel(int size) {
+		ops = new int[size];
+		counts = new int[size];
+		texts = new String[size];
+	}
+
+	/**
+	 * @param macro the compiled macro
+	 * @param smartHomeEnd the editor's smart home/end preference
+	 * @return the line model of the macro, or null if it is not line-local
+	 */
+	public static KbdMacroLineModel compile(List<KbdEvent> macro, boolean smartHomeEnd) {
+		if (macro == null || macro.isEmpty()) {
+			return null;
+		}
+		KbdMacroLineModel result = new KbdMacroLineModel(macro.size());
+		for (int i = 0; i < macro.size(); i++) {
+			KbdEvent e = macro.get(i);
+			int op = -1;
+			result.counts[i] = 1;
+			if (e.isInsert()) {
+				op = INSERT;
+				result.texts[i] = e.getInsertText();
+			} else if (e.isChar()) {
+				char c = KbdMacroCompiler.getPlainChar(e);
+				if (c != 0) {
+					op = INSERT;
+					result.texts[i] = String.valueOf(c);
+				} else if (KbdMacroCompiler.isBackspace(e)) {
+					op = DELETE_PREVIOUS;
+				}
+			} else if (e.getCmd() != null && e.getCmdParameters() == null) {
+				op = getOp(e.getCmd());
+				result.counts[i] = e.getRepeat();
+			}
+			if (op < 0 || (smartHomeEnd && (op == BEGIN || op == END))) {
+				return null;
+			}
+			result.ops[i] = op;
+		}
+		return result;
+	}
+
+	private static int getOp(String cmdId) {
+		int result = -1;
+		if (IEmacsPlusCommandDefinitionIds.FORWARD_CHAR.equals(cmdId) || IEmacsPlusCommandDefinitionIds.COLUMN_NEXT.equals(cmdId)) {
+			result = FORWARD;
+		} else if (IEmacsPlusCommandDefinitionIds.BACKWARD_CHAR.equals(cmdId) || IEmacsPlusCommandDefinitionIds.COLUMN_PREVIOUS.equals(cmdId)) {
+			result = BACKWARD;
+		} else if (IEmacsPlusCommandDefinitionIds.BEGIN_LINE.equals(cmdId) || IEmacsPlusCommandDefinitionIds.LINE_START.equals(cmdId)) {
+			result = BEGIN;
+		} else if (IEmacsPlusCommandDefinitionIds.END_LINE.equals(cmdId) || IEmacsPlusCommandDefinitionIds.LINE_END.equals(cmdId)) {
+			result = END;
+		} else if (IEmacsPlusCommandDefinitionIds.DELETE_NEXT.equals(cmdId)) {
+			result = DELETE_NEXT;
+		} else if (IEmacsPlusCommandDefinitionIds.DELETE_PREVIOUS.equals(cmdId)) {
+			result = DELETE_PREVIOUS;
+		}
+		return result;
+	}
+
+	/**
+	 * Run the macro on a line, starting at its beginning
+	 *
+	 * @param line the text of the line, without its delimiter
+	 * @return the resulting text of the line, or null if the macro would leave the line
+	 */
+	public String apply(String line) {
+		StringBuilder text = new StringBuilder(line);
+		int pos = 0;
+		for (int i = 0; i < ops.length; i++) {
+			for (int n = 0; n < counts[i]; n++) {
+				switch (ops[i]) {
+					case INSERT:
+						text.insert(pos, texts[i]);
+						pos += texts[i].length();
+						break;
+					case FORWARD:
+						if (pos == text.length()) {
+							return null;
+						}
+						++pos;
+						break;
+					case BACKWARD:
+						if (pos == 0) {
+							return null;
+						}
+						--pos;
+						break;
+					case BEGIN:
+						pos = 0;
+						break;
+					case END:
+						pos = text.length();
+						break;
+					case DELETE_NEXT:
+						if (pos == text.length()) {
+							return null;
+						}
+						text.deleteCharAt(pos);
+						break;
+					case DELETE_PREVIOUS:
+						if (pos == 0) {
+							return null;
+						}
+						text.deleteCharAt(--pos);
+						break;
+					default:
+						return null;
+				}
+			}
+		}
+		caret = pos;
+		return text.toString();
+	}
+
+	/**
+	 * @return the offset in the line at which the last apply left the cursor
+	 */
+	public int getCaret() {
+		return caret;
+	}
+}
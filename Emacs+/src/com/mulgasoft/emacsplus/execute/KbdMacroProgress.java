@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.execute;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import com.mulgasoft.emacsplus.EmacsPlusActivator;
+import com.mulgasoft.emacsplus.EmacsPlusUtils;
+
+/**
+ * Track the progress of a repeated (counted or region) keyboard macro execution.
+ *
+ * A run of more than one iteration is shown in the progress area (after a short delay, so quick
+ * runs don't flash) with its iterations, events per second and, if the count is known, the time
+ * remaining.  Canceling it there interrupts the macro, just as ringing the bell does.
+ * On completion, a summary of every run is written to the Emacs+ console, without bringing it to the front.
+ *
+ * @author mfeber
+ */
+public class KbdMacroProgress {
+
+	private static final String JOB_NAME = EmacsPlusActivator.getResourceString("KbdMacro_Job");			//$NON-NLS-1$
+	private static final String PROGRESS = EmacsPlusActivator.getResourceString("KbdMacro_Progress");		//$NON-NLS-1$
+	private static final String PROGRESS_UNBOUNDED = EmacsPlusActivator.getResourceString("KbdMacro_Progress_Unbounded");	//$NON-NLS-1$
+	private static final String SUMMARY = EmacsPlusActivator.getResourceString("KbdMacro_Summary");			//$NON-NLS-1$
+	private static final String SUMMARY_OF = EmacsPlusActivator.getResourceString("KbdMacro_Summary_Of");	//$NON-NLS-1$
+	private static final String SUMMARY_INTERRUPTED = EmacsPlusActivator.getResourceString("KbdMacro_Summary_Interrupted");	//$NON-NLS-1$
+	private static final String SUMMARY_CANCELED = EmacsPlusActivator.getResourceString("KbdMacro_Summary_Canceled");		//$NON-NLS-1$
+	private static final String CR = "\n";	//$NON-NLS-1$
+
+	// delay before showing progress
+	private static final long SHOW_DELAY = 500;
+	// interval between progress updates
+	private static final long UPDATE_INTERVAL = 250;
+	private static final double NANOS = 1000000000.0;
+
+	private final String name;
+	private final long start = System.nanoTime();
+	// the number of iterations to run, Integer.MAX_VALUE if until error
+	private int total = 1;
+	// updated from both the KBD and UI threads
+	private final AtomicInteger iterations = new AtomicInteger();
+	private final AtomicInteger events = new AtomicInteger();
+	private volatile boolean done = false;
+	private volatile boolean canceled = false;
+	private Job job = null;
+
+	/**
+	 * @param name the macro name, or the command id that executes it
+	 */
+	public KbdMacroProgress(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Set the number of iterations, which shows the progress if there are more than one
+	 *
+	 * @param total the count, or Integer.MAX_VALUE if until error
+	 */
+	public synchronized void setTotal(int total) {
+		this.total = total;
+		if (total > 1 && job == null && !done) {
+			job = new ProgressJob();
+			job.schedule(SHOW_DELAY);
+		}
+	}
+
+	public void addIteration() {
+		iterations.incrementAndGet();
+	}
+
+	public void addIterations(int count) {
+		iterations.addAndGet(count);
+	}
+
+	public void addEvent() {
+		events.incrementAndGet();
+	}
+
+	public void addEvents(int count) {
+		events.addAndGet(count);
+	}
+
+	/**
+	 * Called once when execution completes, to stop showing progress and report the run.
+	 * Must be called from the ui-thread.
+	 *
+	 * @param interrupted true if the macro was interrupted
+	 */
+	public synchronized void finish(boolean interrupted) {
+		done = true;
+		if (job != null) {
+			// a running job will notice we're done on its next update
+			if (job.getState() != Job.RUNNING) {
+				job.cancel();
+			}
+		}
+		EmacsPlusConsole console = EmacsPlusConsole.getInstance();
+		console.log(getSummary(interrupted) + CR);
+		console.flush();
+	}
+
+	private String getSummary(boolean interrupted) {
+		double seconds = getSeconds();
+		return String.format(SUMMARY, name, iterations.get(), (total == Integer.MAX_VALUE ? EmacsPlusUtils.EMPTY_STR : String.format(SUMMARY_OF, total)),
+				events.get(), seconds, getRate(seconds), (canceled ? SUMMARY_CANCELED : (interrupted ? SUMMARY_INTERRUPTED : EmacsPlusUtils.EMPTY_STR)));
+	}
+
+	private String getProgress() {
+		double seconds = getSeconds();
+		String result;
+		int count = iterations.get();
+		if (total == Integer.MAX_VALUE) {
+			result = String.format(PROGRESS_UNBOUNDED, count, getRate(seconds));
+		} else {
+			// estimate the remaining time from the mean time of the iterations so far
+			long remaining = (count > 0 ? Math.round(seconds * (total - count) / count) : 0);
+			result = String.format(PROGRESS, count, total, getRate(seconds), remaining);
+		}
+		return result;
+	}
+
+	private double getSeconds() {
+		return (System.nanoTime() - start) / NANOS;
+	}
+
+	private double getRate(double seconds) {
+		return (seconds > 0 ? events.get() / seconds : 0);
+	}
+
+	/**
+	 * Show the progress until the macro is done, and interrupt it if canceled
+	 */
+	private class ProgressJob extends Job {
+
+		ProgressJob() {
+			super(String.format(JOB_NAME, name));
+			setPriority(Job.SHORT);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			boolean bounded = total != Integer.MAX_VALUE;
+			monitor.beginTask(getName(), (bounded ? total : IProgressMonitor.UNKNOWN));
+			int reported = 0;
+			try {
+				while (!done) {
+					if (monitor.isCanceled()) {
+						canceled = true;
+						// interrupt as though the bell was rung
+						EmacsPlusUtils.asyncUiRun(new Runnable() {
+							public void run() {
+								if (!done) {
+									KbdMacroSupport.interruptKbdMacro();
+								}
+							}
+						});
+						return Status.CANCEL_STATUS;
+					}
+					int count = iterations.get();
+					if (bounded && count > reported) {
+						monitor.worked(count - reported);
+						reported = count;
+					}
+					monitor.subTask(getProgress());
+					try {
+						Thread.sleep(UPDATE_INTERVAL);
+					} catch (InterruptedException e) {
+						return Status.CANCEL_STATUS;
+					}
+				}
+			} finally {
+				monitor.done();
+			}
+			return Status.OK_STATUS;
+		}
+	}
+}
@@ -19,6 +19,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
@@ -45,7 +46,6 @@ import org.eclipse.swt.custom.VerifyKeyListener;
 import org.eclipse.swt.events.VerifyEvent;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.ui.PlatformUI;
-import org.eclipse.ui.commands.ICommandService;
 import org.eclipse.ui.keys.IBindingService;
 import org.eclipse.ui.texteditor.AbstractTextEditor;
 import org.eclipse.ui.texteditor.ITextEditor;
@@ -73,7 +73,6 @@ public class KbdMacroSupport extends RepeatingSupport {
 	
 	private ISourceViewer viewer = null;
 	private ITextEditor editor = null;
-	private ICommandService ics = null; 
 	
 	private boolean isdefining = false;
 	private static WithMinibuffer mini = null;
@@ -289,6 +288,26 @@ public class KbdMacroSupport extends RepeatingSupport {
 		return result;
 	}
 	
+	/**
+	 * @return the compiled form of the current macro for execution (see KbdMacroCompiler)
+	 */
+	public ArrayList<KbdEvent> getCompiledMacroEvents(){
+		return (kbdMacro != null ? kbdMacro.getCompiledMacro() : null);
+	}
+	
+	/**
+	 * @param name
+	 * @return the compiled form of the named macro for execution (see KbdMacroCompiler)
+	 */
+	public ArrayList<KbdEvent> getCompiledMacroEvents(String name){
+		ArrayList<KbdEvent> result = null;
+		KbdMacro namedMacro = namedMacros.get(name);
+		if (namedMacro != null) {
+			result = namedMacro.getCompiledMacro();			
+		}
+		return result;
+	}
+	
 	public KbdMacro getKbdMacro(String name){
 		return ((name == null) ? kbdMacro : namedMacros.get(name));
 	}
@@ -304,9 +323,8 @@ public class KbdMacroSupport extends RepeatingSupport {
 		if (!isExecuting()) {
 			setEditor(editor);
 			isdefining = true;
-			ics = (ICommandService) editor.getSite().getService(ICommandService.class);
-			// listen for command executions
-			ics.addExecutionListener(this);
+			// listen for command executions: the macro records Eclipse commands as well
+			CommandBus.getInstance().subscribe(this, CommandBus.Category.ALL);
 			addDocumentListener(editor);
 			if (!append || kbdMacro == null) {
 				kbdMacro = new KbdMacro();
@@ -341,10 +359,7 @@ public class KbdMacroSupport extends RepeatingSupport {
 	private boolean endKbdMacro(boolean abort) {
 		boolean result = isDefining();
 		if (result) {
-			if (ics != null) {
-				ics.removeExecutionListener(this);
-				ics = null;
-			}
+			CommandBus.getInstance().unsubscribe(this);
 			if (viewer != null) {
 				if (viewer instanceof ITextViewerExtension) {
 					((ITextViewerExtension) viewer)
@@ -356,6 +371,7 @@ public class KbdMacroSupport extends RepeatingSupport {
 				// restore last from ring buffer
 				restoreFromHistory();
 			} else {
+				kbdMacro.compile();
 				addToHistory(kbdMacro);
 			}
 			ITextEditor ed = getEditor();
@@ -620,11 +636,12 @@ public class KbdMacroSupport extends RepeatingSupport {
 				public void run() {
 					if (!results.isEmpty()) {
 						EmacsPlusConsole console = EmacsPlusConsole.getInstance();
-						console.clear();
-						console.activate();
+						StringBuilder report = new StringBuilder();
 						for (String r : results) {
-							console.print(r + '\n');
+							report.append(r).append('\n');
 						}
+						console.replaceContents(report.toString());
+						console.activate();
 					}
 				}
 			});
@@ -904,6 +921,8 @@ public class KbdMacroSupport extends RepeatingSupport {
 		private String name = null;
 		private String bindSequence = null;
 		ArrayList<KbdEvent> macro = new ArrayList<KbdEvent>();
+		// the compiled form of macro, rebuilt on demand after any change
+		private transient ArrayList<KbdEvent> compiled = null;
 		
 		public void setBindingKeys(String sequence) {
 			bindSequence = sequence;
@@ -923,12 +942,33 @@ public class KbdMacroSupport extends RepeatingSupport {
 
 		public void add(KbdEvent event) {
 			macro.add(event);
+			compiled = null;
 		}
 
+		/**
+		 * @return the events as recorded
+		 */
 		public ArrayList<KbdEvent> getKbdMacro() {
 			return macro;
 		}
 
+		/**
+		 * @return the events as compiled for execution
+		 */
+		public ArrayList<KbdEvent> getCompiledMacro() {
+			if (compiled == null) {
+				compile();
+			}
+			return compiled;
+		}
+
+		/**
+		 * Compile the recorded events for execution
+		 */
+		public void compile() {
+			compiled = KbdMacroCompiler.compile(macro);
+		}
+
 		public boolean isEmpty() {
 			return macro.isEmpty();
 		}
@@ -943,6 +983,7 @@ public class KbdMacroSupport extends RepeatingSupport {
 						for (int j = i; i < size; i++) { 
 							macro.remove(j);
 						}
+						compiled = null;
 					}
 					break;
 				}
@@ -961,12 +1002,14 @@ public class KbdMacroSupport extends RepeatingSupport {
 			for (KbdEvent e : macro) {
 				result.macro.add(e);
 			}
+			result.compiled = compiled;
 			return result;
 		}
 
 		void addExit() {
 			if (!macro.isEmpty() && !macro.get(macro.size()-1).isExit()) {
 				macro.add(new KbdEvent(true));
+				compiled = null;
 			}
 		}
 		
@@ -993,6 +1036,7 @@ public class KbdMacroSupport extends RepeatingSupport {
 		 */
 		void checkBinding(Binding binding) {
 			boolean processed = false;
+			compiled = null;
 			int index = macro.size() -1;
 			Event keyevent = macro.get(index).getEvent();
 			if (keyevent != null) {
@@ -1027,6 +1071,7 @@ public class KbdMacroSupport extends RepeatingSupport {
 		 */
 
 		void checkTrigger(String cmdId, Map<?,?> parameters, Event trigger, boolean onExit) {
+			compiled = null;
 			int index = macro.size() -1;
 			if (!macro.isEmpty() && trigger != null && macro.get(index).isSubCmd()) {
 				Event event = macro.get(index).getEvent();
@@ -1094,6 +1139,12 @@ public class KbdMacroSupport extends RepeatingSupport {
 		Map<?,?> params = null;
 		boolean exitMinibuffer = false;
 		boolean dontWait = false;
+		// the compiled forms (see KbdMacroCompiler) are never saved 
+		private transient String text = null;				// text of an insertion
+		private transient List<KbdEvent> source = null;	// the events an insertion replaces
+		private transient int repeat = 1;					// count for a command
+		
+		private KbdEvent() {}
 		
 		public KbdEvent(Event keyEvent) {
 			if (keyEvent != null) {
@@ -1119,6 +1170,29 @@ public class KbdMacroSupport extends RepeatingSupport {
 			this.exitMinibuffer= exit;
 		}
 		
+		/**
+		 * @param text
+		 * @param source the typed events that produce the text
+		 * @return a compiled insertion of text
+		 */
+		static KbdEvent insertion(String text, List<KbdEvent> source) {
+			KbdEvent result = new KbdEvent();
+			result.text = text;
+			result.source = source;
+			return result;
+		}
+		
+		/**
+		 * @param command
+		 * @param repeat
+		 * @return a compiled repetition of command
+		 */
+		static KbdEvent repeated(KbdEvent command, int repeat) {
+			KbdEvent result = new KbdEvent(command.cmdId, command.params);
+			result.repeat = repeat;
+			return result;
+		}
+		
 		public Event getEvent() {
 			Event keyEvent = ev;
 			if (keyEvent == null && event != null) {
@@ -1151,6 +1225,19 @@ public class KbdMacroSupport extends RepeatingSupport {
 		public boolean isWait() {
 			return !dontWait;
 		}
+		public boolean isInsert() {
+			return text != null;
+		}
+		public String getInsertText() {
+			return text;
+		}
+		public List<KbdEvent> getInsertSource() {
+			return source;
+		}
+		public int getRepeat() {
+			// transient fields are not initialized when a saved macro is loaded
+			return Math.max(repeat, 1);
+		}
 		
 		public String toBriefString() {
 			String result = null;
@@ -1201,6 +1288,8 @@ public class KbdMacroSupport extends RepeatingSupport {
 				}
 			} else if (isExit()) {
 				result = EXIT_STR;
+			} else if (isInsert()) {
+				result = text;
 			}
 			return result;
 		}
@@ -0,0 +1,563 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.execute;
+
+import java.nio.CharBuffer;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Region;
+
+/**
+ * An indexed table of the lines of a region.
+ *
+ * The region is read once into a single string, and each line is an offset/length
+ * pair (without its delimiter) into that string.  Stages (reverse, sort, unique, filter, map)
+ * only permute or drop line indices - or, for map, record a replacement for a line - and the
+ * result is joined once for a single replace of the region.
+ *
+ * @author mfeber
+ */
+public class LineTable {
+
+	/**
+	 * Compare two lines of the table by their index
+	 */
+	public interface LineComparator {
+		int compare(LineTable table, int line1, int line2);
+	}
+
+	private final String text;
+	private final int base;
+	private int[] starts = new int[64];
+	private int[] lengths = new int[64];
+	// the length of the delimiter that ends each line as read (0 for an unterminated last line)
+	private int[] delimiters = new int[64];
+	private int lineCount = 0;
+
+	// the current lines, as indices into starts/lengths
+	private int[] order;
+	private int size;
+	// replacement text of mapped lines, or null
+	private String[] mapped = null;
+	// true if the region ends with a line delimiter that belongs to its last line
+	private boolean terminated = false;
+
+	/**
+	 * Read the region from the document
+	 *
+	 * @param document
+	 * @param offset start of the region
+	 * @param length length of the region
+	 * @throws BadLocationException
+	 */
+	public LineTable(IDocument document, int offset, int length) throws BadLocationException {
+		this(document.get(offset, length), offset, false);
+	}
+
+	/**
+	 * Read the region from the document
+	 *
+	 * @param document
+	 * @param offset start of the region
+	 * @param length length of the region
+	 * @param terminated if true, and the region ends with a line delimiter, each line is
+	 *        written back with a delimiter (rather than the region ending with an empty line)
+	 * @throws BadLocationException
+	 */
+	public LineTable(IDocument document, int offset, int length, boolean terminated) throws BadLocationException {
+		this(document.get(offset, length), offset, terminated);
+	}
+
+	/**
+	 * @param text the text of the region
+	 * @param base the document offset of the start of the text
+	 */
+	public LineTable(String text, int base) {
+		this(text, base, false);
+	}
+
+	/**
+	 * @param text the text of the region
+	 * @param base the document offset of the start of the text
+	 * @param terminated see {@link #LineTable(IDocument, int, int, boolean)}
+	 */
+	public LineTable(String text, int base, boolean terminated) {
+		this.text = text;
+		this.base = base;
+		int len = text.length();
+		int start = 0;
+		for (int i = 0; i < len; i++) {
+			char c = text.charAt(i);
+			if (c == '\n' || c == '\r') {
+				int lineEnd = i;
+				if (c == '\r' && i + 1 < len && text.charAt(i + 1) == '\n') {
+					i++;
+				}
+				addLine(start, lineEnd - start, i + 1 - lineEnd);
+				start = i + 1;
+			}
+		}
+		if (terminated && len > 0 && start == len) {
+			this.terminated = true;
+		} else {
+			addLine(start, len - start, 0);
+		}
+		order = new int[lineCount];
+		for (int i = 0; i < lineCount; i++) {
+			order[i] = i;
+		}
+		size = lineCount;
+	}
+
+	/**
+	 * Get the region of whole lines between offset and endOffset, as used by keep-lines et al.
+	 * It begins at the start of the line of offset if offset is at the start of a line, else at the
+	 * start of the next line, and it extends through the line delimiter of the line of endOffset
+	 * (unless endOffset is at the start of a line).
+	 *
+	 * @param document
+	 * @param offset
+	 * @param endOffset
+	 * @return the region, which may be empty
+	 * @throws BadLocationException
+	 */
+	public static IRegion getWholeLines(IDocument document, int offset, int endOffset) throws BadLocationException {
+		int start = nextLineStart(document, offset);
+		int end = nextLineStart(document, endOffset);
+		return new Region(start, Math.max(end - start, 0));
+	}
+
+	private static int nextLineStart(IDocument document, int offset) throws BadLocationException {
+		int line = document.getLineOfOffset(offset);
+		int result = document.getLineOffset(line);
+		if (result != offset) {
+			result = (line + 1 < document.getNumberOfLines() ? document.getLineOffset(line + 1) : document.getLength());
+		}
+		return result;
+	}
+
+	private void addLine(int start, int length, int delimiter) {
+		if (lineCount == starts.length) {
+			int[] s = new int[lineCount * 2];
+			int[] l = new int[lineCount * 2];
+			int[] d = new int[lineCount * 2];
+			System.arraycopy(starts, 0, s, 0, lineCount);
+			System.arraycopy(lengths, 0, l, 0, lineCount);
+			System.arraycopy(delimiters, 0, d, 0, lineCount);
+			starts = s;
+			lengths = l;
+			delimiters = d;
+		}
+		starts[lineCount] = start;
+		lengths[lineCount] = length;
+		delimiters[lineCount] = delimiter;
+		lineCount++;
+	}
+
+	/**
+	 * @return the document offset of the start of the region
+	 */
+	public int getBase() {
+		return base;
+	}
+
+	/**
+	 * @return the length of the region as read
+	 */
+	public int getRegionLength() {
+		return text.length();
+	}
+
+	/**
+	 * @return the current number of lines
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of lines read from the region
+	 */
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * @param line the current index of the line
+	 * @return the length of the line
+	 */
+	public int getLength(int line) {
+		int slot = order[line];
+		return (isMapped(slot) ? mapped[slot].length() : lengths[slot]);
+	}
+
+	/**
+	 * @param line the current index of the line
+	 * @param index the index of the character in the line
+	 * @return the character
+	 */
+	public char charAt(int line, int index) {
+		int slot = order[line];
+		return (isMapped(slot) ? mapped[slot].charAt(index) : text.charAt(starts[slot] + index));
+	}
+
+	/**
+	 * @param line the current index of the line
+	 * @return a read only view of the line (no copy is made unless the line has been mapped)
+	 */
+	public CharSequence getSequence(int line) {
+		int slot = order[line];
+		return (isMapped(slot) ? mapped[slot] : CharBuffer.wrap(text, starts[slot], starts[slot] + lengths[slot]));
+	}
+
+	/**
+	 * @param line the current index of the line
+	 * @return a copy of the line
+	 */
+	public String getLine(int line) {
+		int slot = order[line];
+		return (isMapped(slot) ? mapped[slot] : text.substring(starts[slot], starts[slot] + lengths[slot]));
+	}
+
+	/**
+	 * @return true if the order or content of the lines has changed
+	 */
+	public boolean isChanged() {
+		if (size != lineCount || mapped != null) {
+			return true;
+		}
+		for (int i = 0; i < size; i++) {
+			if (order[i] != i) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/********************** Stages **********************/
+
+	/**
+	 * Reverse the order of the lines
+	 *
+	 * @return this
+	 */
+	public LineTable reverse() {
+		for (int i = 0, j = size - 1; i < j; i++, j--) {
+			int tmp = order[i];
+			order[i] = order[j];
+			order[j] = tmp;
+		}
+		return this;
+	}
+
+	/**
+	 * Stable sort of the lines
+	 *
+	 * @param comparator
+	 * @return this
+	 */
+	public LineTable sort(LineComparator comparator) {
+		if (size > 1) {
+			// sort positions into the current order, so the comparator sees current indices
+			int[] positions = new int[size];
+			for (int i = 0; i < size; i++) {
+				positions[i] = i;
+			}
+			mergeSort(positions, new int[size], 0, size, comparator);
+			int[] result = new int[order.length];
+			for (int i = 0; i < size; i++) {
+				result[i] = order[positions[i]];
+			}
+			order = result;
+		}
+		return this;
+	}
+
+	private void mergeSort(int[] a, int[] tmp, int from, int to, LineComparator comparator) {
+		int len = to - from;
+		if (len < 8) {
+			// insertion sort is stable
+			for (int i = from + 1; i < to; i++) {
+				int v = a[i];
+				int j = i;
+				while (j > from && comparator.compare(this, a[j - 1], v) > 0) {
+					a[j] = a[j - 1];
+					j--;
+				}
+				a[j] = v;
+			}
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		mergeSort(a, tmp, from, mid, comparator);
+		mergeSort(a, tmp, mid, to, comparator);
+		if (comparator.compare(this, a[mid - 1], a[mid]) <= 0) {
+			return;
+		}
+		System.arraycopy(a, from, tmp, from, len);
+		for (int i = from, p = from, q = mid; i < to; i++) {
+			if (q >= to || (p < mid && comparator.compare(this, tmp[p], tmp[q]) <= 0)) {
+				a[i] = tmp[p++];
+			} else {
+				a[i] = tmp[q++];
+			}
+		}
+	}
+
+	/**
+	 * Remove duplicate lines, keeping the first occurrence
+	 *
+	 * @param adjacent if true, only remove a line that is a duplicate of the line before it
+	 * @return this
+	 */
+	public LineTable unique(boolean adjacent) {
+		if (size > 1) {
+			int n = 0;
+			if (adjacent) {
+				for (int i = 0; i < size; i++) {
+					if (n == 0 || !equals(order[n - 1], order[i])) {
+						order[n++] = order[i];
+					}
+				}
+			} else {
+				// open addressing hash table of slot+1 (and its hash), grown to stay at most half full
+				int cap = 1024;
+				int[] table = new int[cap];
+				int[] hashes = new int[cap];
+				for (int i = 0; i < size; i++) {
+					int slot = order[i];
+					int hash = hash(slot);
+					int h = hash & (cap - 1);
+					boolean found = false;
+					while (table[h] != 0) {
+						if (hashes[h] == hash && equals(table[h] - 1, slot)) {
+							found = true;
+							break;
+						}
+						h = (h + 1) & (cap - 1);
+					}
+					if (!found) {
+						table[h] = slot + 1;
+						hashes[h] = hash;
+						order[n++] = slot;
+						if (n * 2 > cap) {
+							// rehash
+							int[] t = new int[cap * 2];
+							int[] hs = new int[cap * 2];
+							for (int k = 0; k < cap; k++) {
+								if (table[k] != 0) {
+									int r = hashes[k] & (cap * 2 - 1);
+									while (t[r] != 0) {
+										r = (r + 1) & (cap * 2 - 1);
+									}
+									t[r] = table[k];
+									hs[r] = hashes[k];
+								}
+							}
+							cap *= 2;
+							table = t;
+							hashes = hs;
+						}
+					}
+				}
+			}
+			size = n;
+		}
+		return this;
+	}
+
+	private boolean isMapped(int slot) {
+		return mapped != null && mapped[slot] != null;
+	}
+
+	private int hash(int slot) {
+		int h = 0;
+		if (isMapped(slot)) {
+			h = mapped[slot].hashCode();
+		} else {
+			for (int i = starts[slot], end = i + lengths[slot]; i < end; i++) {
+				h = 31 * h + text.charAt(i);
+			}
+		}
+		return h ^ (h >>> 16);
+	}
+
+	private boolean equals(int slot1, int slot2) {
+		if (isMapped(slot1) || isMapped(slot2)) {
+			String s1 = (isMapped(slot1) ? mapped[slot1] : text.substring(starts[slot1], starts[slot1] + lengths[slot1]));
+			String s2 = (isMapped(slot2) ? mapped[slot2] : text.substring(starts[slot2], starts[slot2] + lengths[slot2]));
+			return s1.equals(s2);
+		}
+		int len = lengths[slot1];
+		return len == lengths[slot2] && text.regionMatches(starts[slot1], text, starts[slot2], len);
+	}
+
+	/**
+	 * Keep (or flush) the lines that contain a match for the pattern
+	 *
+	 * @param pattern
+	 * @param keep if true keep matching lines, else remove them
+	 * @return this
+	 */
+	public LineTable filter(Pattern pattern, boolean keep) {
+		// a single matcher over the region, bounded to each line in turn
+		Matcher matcher = pattern.matcher(text);
+		Matcher mappedMatcher = null;
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			int slot = order[i];
+			boolean found;
+			if (isMapped(slot)) {
+				mappedMatcher = (mappedMatcher == null ? pattern.matcher(mapped[slot]) : mappedMatcher.reset(mapped[slot]));
+				found = mappedMatcher.find();
+			} else {
+				found = matcher.region(starts[slot], starts[slot] + lengths[slot]).find();
+			}
+			if (found == keep) {
+				order[n++] = slot;
+			}
+		}
+		size = n;
+		return this;
+	}
+
+	/**
+	 * Replace the text of each line with the result of the function
+	 *
+	 * @param function
+	 * @return this
+	 */
+	public LineTable map(UnaryOperator<String> function) {
+		if (mapped == null) {
+			mapped = new String[lineCount];
+		}
+		for (int i = 0; i < size; i++) {
+			mapped[order[i]] = function.apply(getLine(i));
+		}
+		return this;
+	}
+
+	/********************** Output **********************/
+
+	/**
+	 * Join the current lines
+	 *
+	 * @param delimiter the line delimiter
+	 * @return the text of the region
+	 */
+	public String getText(String delimiter) {
+		StringBuilder result = new StringBuilder(text.length() + size * delimiter.length());
+		for (int i = 0; i < size; i++) {
+			if (i > 0 && !terminated) {
+				result.append(delimiter);
+			}
+			int slot = order[i];
+			if (isMapped(slot)) {
+				result.append(mapped[slot]);
+			} else {
+				result.append(text, starts[slot], starts[slot] + lengths[slot]);
+			}
+			if (terminated) {
+				result.append(delimiter);
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Join the current lines, each followed by the delimiter it was read with, so mixed line
+	 * endings are kept.  Only a line read without one (an unterminated last line) ends without
+	 * a delimiter, unless it is no longer last, when it gets the default.
+	 *
+	 * @param delimiter the default line delimiter
+	 * @return the text of the region
+	 */
+	public String getOriginalText(String delimiter) {
+		StringBuilder result = new StringBuilder(text.length());
+		for (int i = 0; i < size; i++) {
+			int slot = order[i];
+			if (isMapped(slot)) {
+				result.append(mapped[slot]);
+			} else {
+				result.append(text, starts[slot], starts[slot] + lengths[slot]);
+			}
+			if (delimiters[slot] > 0) {
+				int end = starts[slot] + lengths[slot];
+				result.append(text, end, end + delimiters[slot]);
+			} else if (i < size - 1) {
+				result.append(delimiter);
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Replace the region with the current lines using a single replace
+	 *
+	 * @param document
+	 * @param delimiter the line delimiter
+	 * @throws BadLocationException
+	 */
+	public void apply(IDocument document, String delimiter) throws BadLocationException {
+		document.replace(base, text.length(), getText(delimiter));
+	}
+
+	/********************** Comparators **********************/
+
+	/**
+	 * Compare lines ignoring leading and trailing whitespace (as String.trim())
+	 *
+	 * @param foldCase if true, ignore case as String.CASE_INSENSITIVE_ORDER
+	 * @param reverse if true, reverse the order
+	 * @return the comparator
+	 */
+	public static LineComparator trimmedOrder(boolean foldCase, boolean reverse) {
+		return (table, line1, line2) -> {
+			int result = table.compareTrimmed(line1, line2, foldCase);
+			return (reverse ? -result : result);
+		};
+	}
+
+	private int compareTrimmed(int line1, int line2, boolean foldCase) {
+		int s1 = 0, e1 = getLength(line1);
+		int s2 = 0, e2 = getLength(line2);
+		while (s1 < e1 && charAt(line1, s1) <= ' ') s1++;
+		while (e1 > s1 && charAt(line1, e1 - 1) <= ' ') e1--;
+		while (s2 < e2 && charAt(line2, s2) <= ' ') s2++;
+		while (e2 > s2 && charAt(line2, e2 - 1) <= ' ') e2--;
+		int len1 = e1 - s1;
+		int len2 = e2 - s2;
+		int lim = Math.min(len1, len2);
+		for (int k = 0; k < lim; k++) {
+			char c1 = charAt(line1, s1 + k);
+			char c2 = charAt(line2, s2 + k);
+			if (c1 != c2) {
+				if (foldCase) {
+					c1 = Character.toUpperCase(c1);
+					c2 = Character.toUpperCase(c2);
+					if (c1 != c2) {
+						c1 = Character.toLowerCase(c1);
+						c2 = Character.toLowerCase(c2);
+						if (c1 != c2) {
+							return c1 - c2;
+						}
+					}
+				} else {
+					return c1 - c2;
+				}
+			}
+		}
+		return len1 - len2;
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.execute;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+
+/**
+ * Literal (non-regexp) search over a document that finds the Nth occurrence, or counts all
+ * occurrences, in a single scan.
+ *
+ * The document is read in fixed size chunks (which overlap by the pattern length - 1, so no
+ * match is lost at a chunk boundary), and each chunk is searched with String.indexOf/lastIndexOf,
+ * which the JVM implements as a vectorized character search.  So there is no regexp compilation
+ * or matching, and no copy of the whole document.
+ *
+ * Occurrences do not overlap: a forward search continues from the end of the previous match,
+ * and a backward search finds matches that end at or before the start of the previous match.
+ *
+ * @author mfeber
+ */
+public class LiteralSearch {
+
+	private static final int CHUNK = 64 * 1024;
+	// characters that make a regexp something other than a literal string
+	private static final String REGEXP_META = "\\[](){}.*+?^$|";	//$NON-NLS-1$
+
+	private final String pattern;
+	private final boolean caseSensitive;
+	private int matches = 0;
+
+	/**
+	 * @param pattern the (non-empty) literal string to search for
+	 * @param caseSensitive
+	 */
+	public LiteralSearch(String pattern, boolean caseSensitive) {
+		this.caseSensitive = caseSensitive;
+		this.pattern = fold(pattern);
+	}
+
+	/**
+	 * @param regexp
+	 * @return true if the regexp has no metacharacters, and so matches only itself
+	 */
+	public static boolean isLiteral(String regexp) {
+		if (regexp == null || regexp.length() == 0) {
+			return false;
+		}
+		for (int i = 0; i < regexp.length(); i++) {
+			if (REGEXP_META.indexOf(regexp.charAt(i)) >= 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of occurrences found by the last find or count
+	 */
+	public int getMatches() {
+		return matches;
+	}
+
+	/**
+	 * Find the Nth occurrence of the pattern
+	 *
+	 * @param document
+	 * @param from the offset at which to start: a forward match starts at or after it,
+	 *        a backward match ends at or before it
+	 * @param count the occurrence to find
+	 * @param forward the direction of the search
+	 * @return the offset of the start of the occurrence, or -1 if there are fewer than count
+	 *         occurrences (see getMatches)
+	 * @throws BadLocationException
+	 */
+	public int find(IDocument document, int from, int count, boolean forward) throws BadLocationException {
+		return (forward ? findForward(document, from, document.getLength(), count) : findBackward(document, from, count));
+	}
+
+	/**
+	 * Count the occurrences of the pattern in a region of the document
+	 *
+	 * @param document
+	 * @param from
+	 * @param to
+	 * @return the number of occurrences
+	 * @throws BadLocationException
+	 */
+	public int count(IDocument document, int from, int to) throws BadLocationException {
+		findForward(document, from, to, Integer.MAX_VALUE);
+		return matches;
+	}
+
+	private int findForward(IDocument document, int from, int limit, int count) throws BadLocationException {
+		int m = pattern.length();
+		int pos = from;
+		matches = 0;
+		while (pos + m <= limit) {
+			int chunkEnd = Math.min(limit, pos + CHUNK + m - 1);
+			String text = fold(document.get(pos, chunkEnd - pos));
+			int next = 0;	// the end of the last match in this chunk
+			int i;
+			while ((i = text.indexOf(pattern, next)) >= 0) {
+				if (++matches == count) {
+					return pos + i;
+				}
+				next = i + m;
+			}
+			if (chunkEnd == limit) {
+				break;
+			}
+			// every match starting before pos + CHUNK has been seen
+			pos += Math.max(CHUNK, next);
+		}
+		return -1;
+	}
+
+	private int findBackward(IDocument document, int from, int count) throws BadLocationException {
+		int m = pattern.length();
+		int end = from;
+		matches = 0;
+		while (end >= m) {
+			int chunkStart = Math.max(0, end - CHUNK - m + 1);
+			String text = fold(document.get(chunkStart, end - chunkStart));
+			int first = text.length();	// the start of the earliest match in this chunk
+			int i = text.length() - m;
+			while (i >= 0 && (i = text.lastIndexOf(pattern, i)) >= 0) {
+				if (++matches == count) {
+					return chunkStart + i;
+				}
+				first = i;
+				i -= m;
+			}
+			if (chunkStart == 0) {
+				break;
+			}
+			// every match ending after end - CHUNK has been seen
+			end = Math.min(end - CHUNK, chunkStart + first);
+		}
+		return -1;
+	}
+
+	private String fold(String text) {
+		if (caseSensitive) {
+			return text;
+		}
+		// fold each character in place, so offsets into the folded text are document offsets
+		char[] chars = text.toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		}
+		return new String(chars);
+	}
+}
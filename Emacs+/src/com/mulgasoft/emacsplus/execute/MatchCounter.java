@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.execute;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+
+/**
+ * Count the (case insensitive) matches of a regexp from an offset to the end of a document,
+ * in a single scan that reads the document in place.
+ *
+ * A regexp with no metacharacters is counted with LiteralSearch.  Any other is counted with a
+ * single Matcher over the whole document, rather than a FindReplaceDocumentAdapter search 
+ * (which compiles the pattern) per match; as the matcher sees the whole document, ^, \b and 
+ * look-behind see the text before the offset.
+ *
+ * As in Emacs, each search starts from the end of the previous match, so overlapping matches
+ * are not counted.
+ *
+ * @author mfeber
+ */
+public class MatchCounter {
+
+	private MatchCounter() {}
+
+	/**
+	 * @param document
+	 * @param begin start the search here
+	 * @param regExp the search string
+	 * @return the number of matches from begin to the end of the document, or -1 on an empty
+	 *         match, which would not move the search forward
+	 * @throws BadLocationException
+	 */
+	public static int count(IDocument document, int begin, String regExp) throws BadLocationException {
+		int length = document.getLength();
+		if (LiteralSearch.isLiteral(regExp)) {
+			return new LiteralSearch(regExp, false).count(document, begin, length);
+		}
+		int count = 0;
+		// the flags used by FindReplaceDocumentAdapter for a case insensitive regexp search
+		Pattern pattern = Pattern.compile(regExp, Pattern.MULTILINE | Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+		Matcher matcher = pattern.matcher(new DocumentCharacterIterator(document, 0, length));
+		matcher.useTransparentBounds(true);
+		matcher.useAnchoringBounds(false);
+		matcher.region(begin, length);
+		while (matcher.find()) {
+			if (matcher.end() == matcher.start()) {
+				return -1;
+			}
+			++count;
+		}
+		return count;
+	}
+}
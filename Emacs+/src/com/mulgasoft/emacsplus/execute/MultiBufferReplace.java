@@ -0,0 +1,314 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.execute;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.ITextFileBufferManager;
+import org.eclipse.core.filebuffers.LocationKind;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.search.core.text.TextSearchEngine;
+import org.eclipse.search.core.text.TextSearchMatchAccess;
+import org.eclipse.search.core.text.TextSearchRequestor;
+import org.eclipse.search.core.text.TextSearchScope;
+import org.eclipse.text.edits.MalformedTreeException;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+import org.eclipse.text.undo.DocumentUndoManagerRegistry;
+import org.eclipse.text.undo.IDocumentUndoManager;
+
+/**
+ * Regexp replace across many files.
+ *
+ * The files of a search scope are scanned by the platform text search engine (which reads open
+ * editors' documents rather than their files, and may search files in parallel) with a single
+ * compiled pattern, and each match is recorded with its replacement text.  The caller then
+ * accepts matches - one at a time, or all of them - and the accepted matches of each file are
+ * applied as a single batch of text edits, which is a single undo in that file.
+ *
+ * The replacement string may refer to groups as $n; \ quotes the next character.
+ *
+ * @author mfeber
+ */
+public class MultiBufferReplace {
+
+	/**
+	 * A match of the pattern, and its replacement
+	 */
+	public static class Match {
+		private final int offset;
+		private final int length;
+		private final String text;
+		private final String replacement;
+		private boolean accepted = false;
+
+		Match(int offset, int length, String text, String replacement) {
+			this.offset = offset;
+			this.length = length;
+			this.text = text;
+			this.replacement = replacement;
+		}
+
+		public int getOffset() {
+			return offset;
+		}
+
+		public int getLength() {
+			return length;
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		public String getReplacement() {
+			return replacement;
+		}
+
+		public boolean isAccepted() {
+			return accepted;
+		}
+
+		public void setAccepted(boolean accepted) {
+			this.accepted = accepted;
+		}
+	}
+
+	/**
+	 * The matches of a file, in document order
+	 */
+	public static class FileMatches {
+		private final IFile file;
+		private final List<Match> matches = new ArrayList<Match>();
+
+		FileMatches(IFile file) {
+			this.file = file;
+		}
+
+		public IFile getFile() {
+			return file;
+		}
+
+		public List<Match> getMatches() {
+			return matches;
+		}
+
+		/**
+		 * Accept all the matches of the file from index on
+		 *
+		 * @param index
+		 */
+		public void acceptFrom(int index) {
+			for (int i = index; i < matches.size(); i++) {
+				matches.get(i).setAccepted(true);
+			}
+		}
+	}
+
+	private final Pattern pattern;
+	private final String replacement;
+	// true if the replacement refers to groups, or quotes characters
+	private final boolean expand;
+
+	/**
+	 * @param pattern the compiled search pattern
+	 * @param replacement the replacement string
+	 */
+	public MultiBufferReplace(Pattern pattern, String replacement) {
+		this.pattern = pattern;
+		this.replacement = replacement;
+		this.expand = replacement.indexOf('$') >= 0 || replacement.indexOf('\\') >= 0;
+	}
+
+	/**
+	 * Find all the matches in the scope
+	 *
+	 * @param scope
+	 * @param monitor
+	 * @return the matches, by file, with files in path order
+	 */
+	public List<FileMatches> scan(TextSearchScope scope, IProgressMonitor monitor) {
+		final Map<IFile, FileMatches> found = new HashMap<IFile, FileMatches>();
+		TextSearchEngine.create().search(scope, new TextSearchRequestor() {
+
+			// matches are recorded per file, so files may be searched concurrently (Eclipse 4.7+)
+			public boolean canRunInParallel() {
+				return true;
+			}
+
+			@Override
+			public boolean acceptPatternMatch(TextSearchMatchAccess access) throws CoreException {
+				int offset = access.getMatchOffset();
+				int length = access.getMatchLength();
+				Match match = new Match(offset, length, access.getFileContent(offset, length), getReplacement(access));
+				synchronized (found) {
+					FileMatches matches = found.get(access.getFile());
+					if (matches == null) {
+						matches = new FileMatches(access.getFile());
+						found.put(access.getFile(), matches);
+					}
+					matches.matches.add(match);
+				}
+				return true;
+			}
+		}, pattern, monitor);
+		List<FileMatches> result = new ArrayList<FileMatches>(found.values());
+		Collections.sort(result, new Comparator<FileMatches>() {
+			public int compare(FileMatches f1, FileMatches f2) {
+				return f1.getFile().getFullPath().toString().compareTo(f2.getFile().getFullPath().toString());
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Apply the accepted matches of a file, as one compound change.
+	 * A match whose text has changed since the scan is skipped.
+	 * A file that is not open elsewhere (e.g. in an editor), and had no unsaved changes, is saved.
+	 *
+	 * Must be called on the UI thread, as the file's document may be displayed in an editor.
+	 *
+	 * @param matches
+	 * @param monitor
+	 * @return the number of matches replaced
+	 * @throws CoreException
+	 * @throws BadLocationException
+	 */
+	public int apply(FileMatches matches, IProgressMonitor monitor) throws CoreException, BadLocationException {
+		int result = 0;
+		ITextFileBufferManager manager = FileBuffers.getTextFileBufferManager();
+		IPath path = matches.getFile().getFullPath();
+		manager.connect(path, LocationKind.IFILE, monitor);
+		try {
+			ITextFileBuffer buffer = manager.getTextFileBuffer(path, LocationKind.IFILE);
+			IDocument document = buffer.getDocument();
+			boolean save = !buffer.isShared() && !buffer.isDirty();
+			MultiTextEdit edit = new MultiTextEdit();
+			for (Match match : matches.getMatches()) {
+				if (match.isAccepted() && match.getOffset() + match.getLength() <= document.getLength()
+						&& match.getText().equals(document.get(match.getOffset(), match.getLength()))) {
+					edit.addChild(new ReplaceEdit(match.getOffset(), match.getLength(), match.getReplacement()));
+					++result;
+				}
+			}
+			if (result > 0) {
+				DocumentUndoManagerRegistry.connect(document);
+				try {
+					IDocumentUndoManager undoer = DocumentUndoManagerRegistry.getDocumentUndoManager(document);
+					undoer.beginCompoundChange();
+					try {
+						edit.apply(document, TextEdit.NONE);
+					} finally {
+						undoer.endCompoundChange();
+					}
+				} finally {
+					DocumentUndoManagerRegistry.disconnect(document);
+				}
+				if (save) {
+					buffer.commit(monitor, false);
+				}
+			}
+		} catch (MalformedTreeException e) {
+			throw new BadLocationException(e.getLocalizedMessage());
+		} finally {
+			manager.disconnect(path, LocationKind.IFILE, monitor);
+		}
+		return result;
+	}
+
+	private String getReplacement(TextSearchMatchAccess access) {
+		String result = replacement;
+		if (expand) {
+			// rematch in place, so that groups (and look arounds) see the whole file
+			Matcher matcher = pattern.matcher(new ContentSequence(access, 0, access.getFileContentLength()));
+			matcher.useTransparentBounds(true);
+			matcher.useAnchoringBounds(false);
+			matcher.region(access.getMatchOffset(), access.getFileContentLength());
+			if (matcher.lookingAt()) {
+				result = expand(matcher);
+			}
+		}
+		return result;
+	}
+
+	private String expand(Matcher matcher) {
+		StringBuilder result = new StringBuilder();
+		int len = replacement.length();
+		for (int i = 0; i < len; i++) {
+			char c = replacement.charAt(i);
+			if (c == '\\' && i + 1 < len) {
+				result.append(replacement.charAt(++i));
+			} else if (c == '$' && i + 1 < len && Character.isDigit(replacement.charAt(i + 1))) {
+				int group = replacement.charAt(++i) - '0';
+				// take further digits while they make a valid group number
+				while (i + 1 < len && Character.isDigit(replacement.charAt(i + 1))) {
+					int next = group * 10 + (replacement.charAt(i + 1) - '0');
+					if (next > matcher.groupCount()) {
+						break;
+					}
+					group = next;
+					++i;
+				}
+				if (group <= matcher.groupCount() && matcher.group(group) != null) {
+					result.append(matcher.group(group));
+				}
+			} else {
+				result.append(c);
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * The content of the file being searched, without copying it
+	 */
+	private static class ContentSequence implements CharSequence {
+		private final TextSearchMatchAccess access;
+		private final int base;
+		private final int length;
+
+		ContentSequence(TextSearchMatchAccess access, int base, int length) {
+			this.access = access;
+			this.base = base;
+			this.length = length;
+		}
+
+		public int length() {
+			return length;
+		}
+
+		public char charAt(int index) {
+			return access.getFileContentChar(base + index);
+		}
+
+		public CharSequence subSequence(int start, int end) {
+			return new ContentSequence(access, base + start, end - start);
+		}
+
+		@Override
+		public String toString() {
+			return access.getFileContent(base, length);
+		}
+	}
+}
@@ -0,0 +1,490 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.execute;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IRegion;
+
+/**
+ * An index of the paragraph separators of a document: the sorted offsets of its blank lines
+ * (lines that are empty, or contain only spaces, tabs and form feeds - the final empty line
+ * after a trailing delimiter does not count).
+ *
+ * The index is built on first use - in a background job, if the document is large - and is then
+ * kept up to date on each document change by rescanning only the changed lines.  The offsets after
+ * a change are shifted lazily, so typing within a paragraph does not touch the rest of the index.
+ * Until the background build has completed, lookups scan the document's lines directly.
+ *
+ * Documents are weakly referenced, so an index is discarded along with its document.
+ *
+ * @author mfeber
+ */
+public class ParagraphIndex implements IDocumentListener {
+
+	// documents at least this long are indexed in a background job
+	private static final int BACKGROUND_LENGTH = 1024 * 1024;
+	private static final int CHUNK = 64 * 1024;
+	// delay before rebuilding, if the document changed during a background build
+	private static final long REBUILD_DELAY = 500;
+	private static final String JOB_NAME = "Paragraph Index";	//$NON-NLS-1$
+	private static final String CR = "\r";						//$NON-NLS-1$
+
+	private static final Map<IDocument, ParagraphIndex> indices = new WeakHashMap<IDocument, ParagraphIndex>();
+
+	private final WeakReference<IDocument> document;
+	// the sorted blank line offsets (or null until built); those at or after shiftFrom are off by shiftDelta
+	private int[] starts = null;
+	private int size = 0;
+	private int shiftFrom = 0;
+	private int shiftDelta = 0;
+	// incremented on each change, so a background build can tell if it read a stale document
+	private int generation = 0;
+	private Job job = null;
+	// the offset of the first changed line, recorded before the change
+	private int changeLine = -1;
+
+	private ParagraphIndex(IDocument document) {
+		this.document = new WeakReference<IDocument>(document);
+	}
+
+	/**
+	 * Get the paragraph index of a document, creating it on first use
+	 *
+	 * @param document
+	 * @return the document's index
+	 */
+	public static ParagraphIndex getIndex(IDocument document) {
+		synchronized (indices) {
+			ParagraphIndex result = indices.get(document);
+			if (result == null) {
+				result = new ParagraphIndex(document);
+				indices.put(document, result);
+				document.addDocumentListener(result);
+				result.build(document);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * @param offset
+	 * @return the offset of the first blank line that starts at or after offset, or -1
+	 */
+	public synchronized int next(int offset) {
+		if (starts != null) {
+			int i = lowerBound(offset);
+			return (i < size ? get(i) : -1);
+		}
+		IDocument doc = document.get();
+		int result = -1;
+		if (doc != null && offset <= doc.getLength()) {
+			try {
+				int line = doc.getLineOfOffset(Math.max(0, offset));
+				if (doc.getLineOffset(line) < offset) {
+					++line;
+				}
+				for (int lines = doc.getNumberOfLines(); line < lines; line++) {
+					if (isBlank(doc, line)) {
+						result = doc.getLineOffset(line);
+						break;
+					}
+				}
+			} catch (BadLocationException e) {
+				result = -1;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param offset
+	 * @return the offset of the last blank line that starts at or before offset, or -1
+	 */
+	public synchronized int previous(int offset) {
+		if (starts != null) {
+			int i = lowerBound(offset + 1) - 1;
+			return (i >= 0 ? get(i) : -1);
+		}
+		IDocument doc = document.get();
+		int result = -1;
+		if (doc != null && offset >= 0) {
+			try {
+				for (int line = doc.getLineOfOffset(Math.min(offset, doc.getLength())); line >= 0; line--) {
+					if (isBlank(doc, line)) {
+						result = doc.getLineOffset(line);
+						break;
+					}
+				}
+			} catch (BadLocationException e) {
+				result = -1;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Find the end of the paragraph at or after offset.  If offset is on a blank line, the
+	 * whole run of blank lines it is in is skipped first, so the result is the end of the
+	 * paragraph that follows the run.
+	 *
+	 * @param offset
+	 * @return the offset of the first blank line after the paragraph, or -1
+	 */
+	public synchronized int forward(int offset) {
+		IDocument doc = document.get();
+		int result = -1;
+		if (doc != null && offset >= 0 && offset <= doc.getLength()) {
+			try {
+				int from = offset;
+				int line = doc.getLineOfOffset(offset);
+				if (isSeparator(doc, line)) {
+					for (int lines = doc.getNumberOfLines(); line + 1 < lines && isSeparator(doc, line + 1); line++);
+					from = doc.getLineOffset(line);
+				}
+				result = next(from + 1);
+			} catch (BadLocationException e) {
+				result = -1;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Find the start of the paragraph at or before offset.  If offset is on a blank line, or at
+	 * the start of a line just below one, the whole run of blank lines is skipped first, so the
+	 * result is the start of the paragraph that precedes the run.
+	 *
+	 * @param offset
+	 * @return the offset of the last blank line before the paragraph, or -1
+	 */
+	public synchronized int backward(int offset) {
+		IDocument doc = document.get();
+		int result = -1;
+		if (doc != null && offset >= 0 && offset <= doc.getLength()) {
+			try {
+				int from = offset;
+				int line = doc.getLineOfOffset(offset);
+				if (!isSeparator(doc, line) && offset == doc.getLineOffset(line)) {
+					// the blank lines directly above belong to the start of this paragraph
+					--line;
+				}
+				if (line >= 0 && isSeparator(doc, line)) {
+					for (; line > 0 && isSeparator(doc, line - 1); line--);
+					from = doc.getLineOffset(line);
+				}
+				result = previous(from - 1);
+			} catch (BadLocationException e) {
+				result = -1;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param doc
+	 * @param line
+	 * @return true if the line is a paragraph separator
+	 * @throws BadLocationException
+	 */
+	private boolean isSeparator(IDocument doc, int line) throws BadLocationException {
+		if (starts != null) {
+			int offset = doc.getLineOffset(line);
+			int i = lowerBound(offset);
+			return i < size && get(i) == offset;
+		}
+		return isBlank(doc, line);
+	}
+
+	private boolean isBlank(IDocument doc, int line) throws BadLocationException {
+		IRegion info = doc.getLineInformation(line);
+		if (info.getLength() == 0) {
+			// the empty line after a trailing delimiter does not separate anything
+			return doc.getLineDelimiter(line) != null;
+		}
+		String text = doc.get(info.getOffset(), info.getLength());
+		for (int i = 0; i < text.length(); i++) {
+			if (!isWhite(text.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isWhite(char c) {
+		return c == ' ' || c == '\t' || c == '\f';
+	}
+
+	/**
+	 * @see org.eclipse.jface.text.IDocumentListener#documentAboutToBeChanged(org.eclipse.jface.text.DocumentEvent)
+	 */
+	public synchronized void documentAboutToBeChanged(DocumentEvent event) {
+		++generation;
+		changeLine = -1;
+		if (starts != null) {
+			try {
+				IDocument doc = event.getDocument();
+				int line = doc.getLineOfOffset(event.getOffset());
+				if (line > 0 && CR.equals(doc.getLineDelimiter(line - 1))) {
+					// the change may join the line to the previous one, by making its \r a \r\n
+					--line;
+				}
+				changeLine = doc.getLineOffset(line);
+			} catch (BadLocationException e) {
+				changeLine = -1;
+			}
+		}
+	}
+
+	/**
+	 * @see org.eclipse.jface.text.IDocumentListener#documentChanged(org.eclipse.jface.text.DocumentEvent)
+	 */
+	public synchronized void documentChanged(DocumentEvent event) {
+		if (starts != null) {
+			IDocument doc = event.getDocument();
+			try {
+				if (changeLine < 0) {
+					throw new BadLocationException();
+				}
+				int oldEnd = event.getOffset() + event.getLength();
+				int newEnd = event.getOffset() + (event.getText() == null ? 0 : event.getText().length());
+				// rescan from the start of the first changed line to the end of the last
+				IRegion last = doc.getLineInformationOfOffset(newEnd);
+				int end = last.getOffset() + last.getLength();
+				Scanner scanner = new Scanner();
+				scanner.scan(doc.get(changeLine, end - changeLine), changeLine);
+				scanner.finish(end, end < doc.getLength());
+				replace(changeLine, oldEnd, newEnd - oldEnd, scanner);
+			} catch (BadLocationException e) {
+				// shouldn't happen, but start over
+				starts = null;
+				build(doc);
+			}
+		}
+	}
+
+	/**
+	 * Replace the entries of the old lines [from, oldEnd] with those of the rescanned lines,
+	 * and shift the entries that follow
+	 */
+	private void replace(int from, int oldEnd, int delta, Scanner scanner) {
+		int lo = lowerBound(from);
+		int hi = lowerBound(oldEnd + 1);
+		if (lo == hi && scanner.size == 0) {
+			// the usual case: no blank line gained or lost
+			shift(lo, delta);
+		} else {
+			normalize();
+			int n = size - (hi - lo) + scanner.size;
+			int[] result = starts;
+			if (n > starts.length) {
+				result = new int[Math.max(n, starts.length * 2)];
+				System.arraycopy(starts, 0, result, 0, lo);
+			}
+			System.arraycopy(starts, hi, result, lo + scanner.size, size - hi);
+			System.arraycopy(scanner.starts, 0, result, lo, scanner.size);
+			starts = result;
+			size = n;
+			shift(lo + scanner.size, delta);
+		}
+	}
+
+	private void shift(int from, int delta) {
+		if (delta != 0) {
+			if (shiftDelta != 0 && shiftFrom != from) {
+				normalize();
+			}
+			if (shiftDelta == 0) {
+				shiftFrom = from;
+			}
+			shiftDelta += delta;
+		}
+	}
+
+	private void normalize() {
+		if (shiftDelta != 0) {
+			for (int i = shiftFrom; i < size; i++) {
+				starts[i] += shiftDelta;
+			}
+			shiftDelta = 0;
+		}
+	}
+
+	private int get(int i) {
+		return (i >= shiftFrom ? starts[i] + shiftDelta : starts[i]);
+	}
+
+	/**
+	 * @param offset
+	 * @return the index of the first entry at or after offset
+	 */
+	private int lowerBound(int offset) {
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (get(mid) < offset) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private void build(IDocument doc) {
+		if (doc.getLength() < BACKGROUND_LENGTH) {
+			Scanner scanner = new Scanner();
+			scanner.scan(doc.get(), 0);
+			scanner.finish(doc.getLength(), false);
+			install(scanner);
+		} else if (job == null) {
+			job = new BuildJob();
+			job.schedule();
+		}
+	}
+
+	private void install(Scanner scanner) {
+		starts = scanner.starts;
+		size = scanner.size;
+		shiftFrom = 0;
+		shiftDelta = 0;
+	}
+
+	/**
+	 * Called by the job on completion, with the result of its build (or null)
+	 */
+	private synchronized void built(Scanner scanner, int gen) {
+		job = null;
+		if (scanner != null && gen == generation) {
+			install(scanner);
+		} else if (document.get() != null) {
+			// the document changed during the build, so try again once it settles
+			job = new BuildJob();
+			job.schedule(REBUILD_DELAY);
+		}
+	}
+
+	private synchronized int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Build the index of a large document without blocking the UI thread.
+	 * The document is read in chunks, and the result is discarded if it changes in the meantime.
+	 */
+	private class BuildJob extends Job {
+
+		BuildJob() {
+			super(JOB_NAME);
+			setSystem(true);
+			setPriority(Job.DECORATE);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			IDocument doc = document.get();
+			if (doc != null) {
+				int gen = getGeneration();
+				Scanner scanner = new Scanner();
+				try {
+					int length = doc.getLength();
+					for (int pos = 0; pos < length && scanner != null; pos += CHUNK) {
+						if (monitor.isCanceled()) {
+							return Status.CANCEL_STATUS;
+						}
+						if (gen != getGeneration()) {
+							scanner = null;
+						} else {
+							scanner.scan(doc.get(pos, Math.min(CHUNK, length - pos)), pos);
+						}
+					}
+					if (scanner != null) {
+						scanner.finish(length, false);
+					}
+				} catch (BadLocationException | RuntimeException e) {
+					// the document changed under us
+					scanner = null;
+				}
+				built(scanner, gen);
+			}
+			return Status.OK_STATUS;
+		}
+	}
+
+	/**
+	 * Collect the offsets of the blank lines of text that starts at a line start, which may be
+	 * fed in consecutive pieces.
+	 */
+	private static class Scanner {
+		private int[] starts = new int[16];
+		private int size = 0;
+		// the start of the current line, or -1 if no character of it has been seen
+		private int lineStart = -1;
+		private boolean blank = true;
+		private boolean afterCR = false;
+
+		void scan(String text, int base) {
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				if (c == '\n' && afterCR) {
+					// the end of a \r\n delimiter
+					afterCR = false;
+					continue;
+				}
+				if (lineStart < 0) {
+					lineStart = base + i;
+					blank = true;
+				}
+				afterCR = (c == '\r');
+				if (c == '\n' || c == '\r') {
+					if (blank) {
+						add(lineStart);
+					}
+					lineStart = -1;
+				} else if (blank && !isWhite(c)) {
+					blank = false;
+				}
+			}
+		}
+
+		/**
+		 * @param end the offset of the end of the text
+		 * @param terminated true if a line (that would be empty) starts at end
+		 */
+		void finish(int end, boolean terminated) {
+			if (lineStart >= 0) {
+				if (blank) {
+					add(lineStart);
+				}
+			} else if (terminated) {
+				add(end);
+			}
+		}
+
+		private void add(int offset) {
+			if (size == starts.length) {
+				int[] tmp = new int[size * 2];
+				System.arraycopy(starts, 0, tmp, 0, size);
+				starts = tmp;
+			}
+			starts[size++] = offset;
+		}
+	}
+}
@@ -9,6 +9,8 @@
  */
 package com.mulgasoft.emacsplus.execute;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.SortedMap;
 
 import org.eclipse.jface.dialogs.Dialog;
@@ -19,6 +21,8 @@ import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.MouseEvent;
 import org.eclipse.swt.events.MouseTrackListener;
 import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.layout.GridData;
@@ -26,7 +30,6 @@ import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Event;
-import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Table;
@@ -44,8 +47,19 @@ public class SelectionDialog extends PopupDialog {
 	// TODO: there should be a way to determine this value
 	private static int SIZE_ADJUST = 15;
 	private static int MIN_COLUMNS = 3;
+	// maximum number of candidates measured when estimating the column width
+	private static int MEASURE_SAMPLE = 64;
 	
 	private Point sizeHint; 
+	private Point maxSize;
+	
+	// the (virtual) table and its current content 
+	private Table table = null;
+	private String[] keys = new String[0];
+	private int tableColumns = 1;
+	// cache of measured text widths, and the font they were measured with
+	private final Map<String,Integer> extents = new HashMap<String,Integer>();
+	private Font extentsFont = null;
 	private boolean clicked = false;
 	private boolean mouseIn = false;
 	
@@ -98,9 +112,20 @@ public class SelectionDialog extends PopupDialog {
 		
 		Shell shell = getShell();
 		if (shell != null) {
+			// update the table in place if its layout is still valid
+			if (!shell.isDisposed() && table != null && !table.isDisposed()) {
+				String[] inputKeys = getSelectableKeys();
+				if (getColumnCount(table, inputKeys, maxSize.x) == tableColumns) {
+					disposeTip();
+					setKeys(inputKeys);
+					configureLocation(sizeHint);
+					return OK;
+				}
+			}
 			close();
 		}
 		sizeHint = configureSize();
+		maxSize = new Point(sizeHint.x, sizeHint.y);
 		create();
 		// Configure the size and location.
 		configureLocation(sizeHint);
@@ -223,14 +248,16 @@ public class SelectionDialog extends PopupDialog {
 
 		String[] inputKeys = getSelectableKeys();
 		int columnCount = 0;
-		Point dimens = getColumnCount( parent, inputKeys, sizeHint.x); 
-		int count = dimens.x;
+		// measure with the font the table will have, as the in place update in open does
+		Dialog.applyDialogFont(parent);
+		int count = getColumnCount(parent, inputKeys, sizeHint.x); 
 
 		GridLayout compositeLayout = new GridLayout(count,true);
 		parent.setLayout(compositeLayout);
 		parent.setLayoutData(new GridData(GridData.FILL_BOTH));
 		
-		Table table = new Table(parent, SWT.V_SCROLL | SWT.HORIZONTAL | SWT.WRAP | SWT.FULL_SELECTION); //| SWT.MULTI);
+		// the items are only populated as they become visible
+		table = new Table(parent, SWT.VIRTUAL | SWT.V_SCROLL | SWT.HORIZONTAL | SWT.WRAP | SWT.FULL_SELECTION); //| SWT.MULTI);
 		GridData gridData = new GridData(GridData.FILL_BOTH);
 		table.setLayoutData(gridData);
 		table.setBackground(parent.getBackground());
@@ -249,57 +276,96 @@ public class SelectionDialog extends PopupDialog {
 			layout.setColumnData(columns[i], new ColumnWeightData(100/count,columnWidth,false));
 		}
 		parent.setLayout(layout);
+		tableColumns = columnCount;
 		
-		int len = inputKeys.length;
-		int rowCount = len / columnCount;
-		if ((len - rowCount * columnCount) > 0) {
-			rowCount++;
-		}
-		for (int i = 0; i < rowCount; i++) {
-			String[] row = new String[columnCount];
-			for (int j = 0; j < columnCount; j++) {
-				int sourceIndex = i * columnCount + j;
-				row[j] = (sourceIndex < len ? (String) inputKeys[sourceIndex] : ""); //$NON-NLS-1$ 
+		table.addListener(SWT.SetData, new Listener() {
+			public void handleEvent(Event event) {
+				TableItem item = (TableItem) event.item;
+				int index = event.index;
+				String[] row = new String[tableColumns];
+				for (int j = 0; j < row.length; j++) {
+					int sourceIndex = index * row.length + j;
+					row[j] = (sourceIndex < keys.length ? keys[sourceIndex] : ""); //$NON-NLS-1$ 
+				}
+				item.setText(row);
 			}
-			TableItem item = new TableItem(table, SWT.NULL);
-			item.setText(row);
-		}
-
-		table.pack();
-		sizeHint.y = Math.min(table.getBounds().height + getSizeAdjustment(),sizeHint.y);
+		});
+		setKeys(inputKeys);
 
 		Dialog.applyDialogFont(parent);
 		addTableListeners(table);
 	}
 	
+	/**
+	 * Set the table content, and size the dialog height to fit
+	 * 
+	 * @param inputKeys
+	 */
+	private void setKeys(String[] inputKeys) {
+		keys = (inputKeys != null ? inputKeys : new String[0]);
+		int len = keys.length;
+		int rowCount = len / tableColumns;
+		if ((len - rowCount * tableColumns) > 0) {
+			rowCount++;
+		}
+		table.setItemCount(rowCount);
+		table.clearAll();
+		Rectangle trim = table.computeTrim(0, 0, 0, rowCount * table.getItemHeight());
+		sizeHint.y = Math.min(trim.height + getSizeAdjustment(), maxSize.y);
+	}
+	
 	/**
 	 * Determine the appropriate number of columns.  If the number of items is less than
 	 * the computed number, choose the smaller.
 	 * 
-	 * @param parent
+	 * Rather than measure every value, measure (and cache) only the longest values and 
+	 * compare with an estimate based on the average character width.
+	 * 
+	 * @param control
 	 * @param vals
 	 * @param width
-	 * @return
+	 * @return the number of columns
 	 */
-	private Point getColumnCount(Composite parent, Object[] vals, int width) {
-		Point result = new Point(0,0);
-		int iWidth = MIN_COLUMNS;
+	private int getColumnCount(Control control, String[] vals, int width) {
+		int result = 0;
 		int len = vals.length;
-		int size = 0;
-		Label l = null;
+		GC gc = null;
 		try {
-			l = new Label(parent, SWT.NULL);
+			int maxLen = 0;
 			for (int i = 0; i < len; i++) {
-				l.setText((String) vals[i]);
-				size = Math.max(size, l.computeSize(SWT.DEFAULT, SWT.DEFAULT).x);
+				maxLen = Math.max(maxLen, vals[i].length());
 			}
-			result = l.getSize();
-			l.dispose();
-
-			result.x = Math.max(iWidth, width / (size + 5));
-			result.x = Math.min(result.x, vals.length);
+			Font font = control.getFont();
+			if (!font.equals(extentsFont)) {
+				extents.clear();
+				extentsFont = font;
+			}
+			gc = new GC(control);
+			gc.setFont(font);
+			int size = (int)Math.ceil(maxLen * gc.getFontMetrics().getAverageCharacterWidth());
+			// measure a sample of the longest values
+			int minLen = (maxLen * 4) / 5;
+			int measured = 0;
+			for (int i = 0; i < len && measured < MEASURE_SAMPLE; i++) {
+				String val = vals[i];
+				if (val.length() >= minLen) {
+					Integer extent = extents.get(val);
+					if (extent == null) {
+						extent = gc.textExtent(val).x;
+						extents.put(val, extent);
+					}
+					size = Math.max(size, extent);
+					measured++;
+				}
+			}
+			result = Math.max(MIN_COLUMNS, width / (size + 5));
+			result = Math.max(Math.min(result, len), 1);
 		} catch (Exception e) {
-			result = new Point(0,0);
+			result = 1;
+		} finally {
+			if (gc != null) {
+				gc.dispose();
+			}
 		}
 		return result;
 	}
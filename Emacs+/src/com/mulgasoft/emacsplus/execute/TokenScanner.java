@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.execute;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Region;
+
+/**
+ * Scan a document for tokens in either direction, without regular expressions
+ * 
+ * A token is a run of the character class used by the command token expressions:
+ *    [\p{L}\p{Mn}\p{Nd}]  (letters, non spacing marks and decimal digits)
+ * The document is read in chunks, so the cost of a scan is proportional to the distance
+ * scanned, rather than to the distance from the start of the document (as for a backward 
+ * regex search).
+ * 
+ * @author mfeber
+ */
+public class TokenScanner {
+
+	private static final int CHUNK_SIZE = 1024;
+
+	private final IDocument document;
+	private final int length;
+
+	private String chunk = null;
+	private int chunkStart = 0;
+
+	public TokenScanner(IDocument document) {
+		this.document = document;
+		this.length = document.getLength();
+	}
+
+	/**
+	 * @param c
+	 * @return true if c is in the token character class
+	 */
+	public static boolean isTokenChar(char c) {
+		if (Character.isLetter(c)) {
+			return true;
+		}
+		int type = Character.getType(c);
+		return type == Character.NON_SPACING_MARK || type == Character.DECIMAL_DIGIT_NUMBER;
+	}
+
+	/**
+	 * Find the first token at or after offset; if offset is within a token,
+	 * the result is the remainder of that token
+	 * 
+	 * @param offset
+	 * @return the token region or null
+	 * @throws BadLocationException
+	 */
+	public IRegion nextToken(int offset) throws BadLocationException {
+		IRegion result = null;
+		int start = skipForward(Math.max(offset, 0), false);
+		if (start < length) {
+			int end = skipForward(start, true);
+			result = new Region(start, end - start);
+		}
+		return result;
+	}
+
+	/**
+	 * Find the last complete token that ends at or before limit
+	 * 
+	 * @param limit
+	 * @return the token region or null
+	 * @throws BadLocationException
+	 */
+	public IRegion previousToken(int limit) throws BadLocationException {
+		IRegion result = null;
+		int end = Math.min(limit, length);
+		if (end > 0 && end < length && isTokenAt(end - 1, false) && isTokenAt(end, false)) {
+			// the token at limit extends past it, so skip it
+			end = skipBackward(end, true);
+		}
+		end = skipBackward(end, false);
+		if (end > 0) {
+			int start = skipBackward(end, true);
+			result = new Region(start, end - start);
+		}
+		return result;
+	}
+
+	/**
+	 * Find the first character at or after offset that is not a token character
+	 * 
+	 * @param offset
+	 * @return the single character region or null
+	 * @throws BadLocationException
+	 */
+	public IRegion nextNonToken(int offset) throws BadLocationException {
+		IRegion result = null;
+		int pos = skipForward(Math.max(offset, 0), true);
+		if (pos < length) {
+			result = new Region(pos, 1);
+		}
+		return result;
+	}
+
+	/**
+	 * @param pos
+	 * @param token
+	 * @return the first position at or after pos whose character is not (token == true) 
+	 *         or is (token == false) a token character, or the document length
+	 * @throws BadLocationException
+	 */
+	private int skipForward(int pos, boolean token) throws BadLocationException {
+		while (pos < length && isTokenAt(pos, true) == token) {
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * @param pos
+	 * @param token
+	 * @return the position after the last character before pos that is not (token == true) 
+	 *         or is (token == false) a token character, or 0
+	 * @throws BadLocationException
+	 */
+	private int skipBackward(int pos, boolean token) throws BadLocationException {
+		while (pos > 0 && isTokenAt(pos - 1, false) == token) {
+			pos--;
+		}
+		return pos;
+	}
+
+	private boolean isTokenAt(int pos, boolean forward) throws BadLocationException {
+		return isTokenChar(charAt(pos, forward));
+	}
+
+	/**
+	 * Read through a chunk of the document, loading the next chunk in the scan direction as needed
+	 */
+	private char charAt(int pos, boolean forward) throws BadLocationException {
+		if (chunk == null || pos < chunkStart || pos >= chunkStart + chunk.length()) {
+			int start = (forward ? pos : Math.max(0, pos - CHUNK_SIZE + 1));
+			int end = Math.min(length, start + CHUNK_SIZE);
+			chunk = document.get(start, end - start);
+			chunkStart = start;
+		}
+		return chunk.charAt(pos - chunkStart);
+	}
+}
@@ -0,0 +1,284 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.execute;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentRewriteSession;
+import org.eclipse.jface.text.DocumentRewriteSessionType;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+
+/**
+ * Whitespace cleanup over a region of a document.
+ *
+ * The region is read once, each operation makes a single pass over it and adds to a
+ * compact, ordered list of edits, and apply replaces only the range of each edit, last
+ * edit first, inside a single sequential rewrite session.  The unchanged text is never
+ * rewritten, so the positions (marks, breakpoints, annotations, folds) in it are kept.
+ *
+ * Edits are recorded in document offsets, in ascending order and must not overlap.
+ *
+ * @author mfeber
+ */
+public class WhitespaceEngine {
+
+	private static final String EMPTY_STR = "";	//$NON-NLS-1$
+
+	private final CharSequence text;
+	private final int base;
+
+	private int[] offsets = new int[16];
+	private int[] lengths = new int[16];
+	private String[] texts = new String[16];
+	private int size = 0;
+
+	/**
+	 * Read the region from the document
+	 *
+	 * @param document
+	 * @param offset start of the region
+	 * @param length length of the region
+	 * @throws BadLocationException
+	 */
+	public WhitespaceEngine(IDocument document, int offset, int length) throws BadLocationException {
+		this(document.get(offset, length), offset);
+	}
+
+	/**
+	 * @param text the text of the region
+	 * @param base the document offset of the start of the text
+	 */
+	public WhitespaceEngine(CharSequence text, int base) {
+		this.text = text;
+		this.base = base;
+	}
+
+	/**
+	 * @return the number of edits
+	 */
+	public int size() {
+		return size;
+	}
+
+	private static boolean isEol(char c) {
+		return c == '\n' || c == '\r';
+	}
+
+	private static boolean isBlank(char c) {
+		return c == ' ' || c == '\t';
+	}
+
+	private void add(int index, int length, String replacement) {
+		if (size == offsets.length) {
+			int newLength = size * 2;
+			int[] o = new int[newLength];
+			int[] l = new int[newLength];
+			String[] t = new String[newLength];
+			System.arraycopy(offsets, 0, o, 0, size);
+			System.arraycopy(lengths, 0, l, 0, size);
+			System.arraycopy(texts, 0, t, 0, size);
+			offsets = o;
+			lengths = l;
+			texts = t;
+		}
+		offsets[size] = base + index;
+		lengths[size] = length;
+		texts[size] = replacement;
+		size++;
+	}
+
+	/**
+	 * delete-trailing-whitespace: delete all whitespace after the last non-whitespace
+	 * character of each line.  The end of the region is treated as the end of a line.
+	 *
+	 * @return this
+	 */
+	public WhitespaceEngine deleteTrailing() {
+		int len = text.length();
+		int lineStart = 0;
+		int lastText = -1;		// index of last non-whitespace character of the current line
+		for (int i = 0; i <= len; i++) {
+			char c = (i < len ? text.charAt(i) : '\n');
+			if (isEol(c)) {
+				int wsStart = Math.max(lastText + 1, lineStart);
+				if (wsStart < i) {
+					add(wsStart, i - wsStart, EMPTY_STR);
+				}
+				lineStart = i + 1;
+			} else if (!Character.isWhitespace(c)) {
+				lastText = i;
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * delete-horizontal-space/just-one-space: replace the spaces and tabs around index
+	 *
+	 * @param offset the document offset of point
+	 * @param replacement the replacement string
+	 * @return the document offset following the replacement
+	 */
+	public int replaceHorizontal(int offset, String replacement) {
+		int index = offset - base;
+		int start = index;
+		int end = index;
+		// as in countWS, treat any control character (other than an eol) as whitespace
+		while (start > 0 && text.charAt(start - 1) <= ' ' && !isEol(text.charAt(start - 1))) {
+			start--;
+		}
+		while (end < text.length() && text.charAt(end) <= ' ' && !isEol(text.charAt(end))) {
+			end++;
+		}
+		if (end - start != replacement.length() || !replacement.contentEquals(text.subSequence(start, end))) {
+			add(start, end - start, replacement);
+		}
+		return base + start + replacement.length();
+	}
+
+	/**
+	 * untabify: convert all tabs to the equivalent number of spaces
+	 *
+	 * @param column the column of the first character of the region
+	 * @param tabWidth
+	 * @return this
+	 */
+	public WhitespaceEngine untabify(int column, int tabWidth) {
+		int len = text.length();
+		int col = column;
+		for (int i = 0; i < len; i++) {
+			char c = text.charAt(i);
+			if (c == '\t') {
+				int start = i;
+				int startCol = col;
+				// convert a run of tabs with a single edit
+				while (i < len && text.charAt(i) == '\t') {
+					col += tabWidth - (col % tabWidth);
+					i++;
+				}
+				add(start, i - start, spaces(col - startCol));
+				i--;
+			} else if (isEol(c)) {
+				col = 0;
+			} else {
+				col++;
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * tabify: convert each run of two or more spaces and tabs, that contains at least one space,
+	 * to tabs (and then spaces) where that is shorter
+	 *
+	 * @param column the column of the first character of the region
+	 * @param tabWidth
+	 * @return this
+	 */
+	public WhitespaceEngine tabify(int column, int tabWidth) {
+		int len = text.length();
+		int col = column;
+		for (int i = 0; i < len; i++) {
+			char c = text.charAt(i);
+			if (isBlank(c)) {
+				int start = i;
+				int startCol = col;
+				boolean hasSpace = false;
+				while (i < len && isBlank(c = text.charAt(i))) {
+					if (c == ' ') {
+						hasSpace = true;
+						col++;
+					} else {
+						col += tabWidth - (col % tabWidth);
+					}
+					i++;
+				}
+				if (hasSpace && i - start > 1) {
+					String replacement = tabs(startCol, col, tabWidth);
+					if (replacement.length() < i - start) {
+						add(start, i - start, replacement);
+					}
+				}
+				i--;
+			} else if (isEol(c)) {
+				col = 0;
+			} else {
+				col++;
+			}
+		}
+		return this;
+	}
+
+	private static String spaces(int count) {
+		StringBuilder result = new StringBuilder(count);
+		for (int i = 0; i < count; i++) {
+			result.append(' ');
+		}
+		return result.toString();
+	}
+
+	private static String tabs(int startCol, int endCol, int tabWidth) {
+		StringBuilder result = new StringBuilder();
+		int col = startCol;
+		int next;
+		while ((next = col + tabWidth - (col % tabWidth)) <= endCol) {
+			result.append('\t');
+			col = next;
+		}
+		for (; col < endCol; col++) {
+			result.append(' ');
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Map a document offset through the edits: an offset inside a replaced range
+	 * moves to the start of the replacement, one after it is shifted
+	 *
+	 * @param offset the offset before the edits are applied
+	 * @return the offset after the edits are applied
+	 */
+	public int mapOffset(int offset) {
+		int delta = 0;
+		for (int i = 0; i < size && offsets[i] < offset; i++) {
+			int end = offsets[i] + lengths[i];
+			if (offset < end) {
+				return offsets[i] + delta;
+			}
+			delta += texts[i].length() - lengths[i];
+		}
+		return offset + delta;
+	}
+
+	/**
+	 * Apply each edit to its own range, last edit first so the earlier offsets stay valid.
+	 * Multiple edits run in a sequential rewrite session so listeners see a single batch;
+	 * the caller's compound change, if any, owns the undo
+	 *
+	 * @param document
+	 * @throws BadLocationException
+	 */
+	public void apply(IDocument document) throws BadLocationException {
+		if (size > 0) {
+			DocumentRewriteSession session = null;
+			if (size > 1 && document instanceof IDocumentExtension4) {
+				session = ((IDocumentExtension4) document).startRewriteSession(DocumentRewriteSessionType.SEQUENTIAL);
+			}
+			try {
+				for (int i = size - 1; i >= 0; i--) {
+					document.replace(offsets[i], lengths[i], texts[i]);
+				}
+			} finally {
+				if (session != null) {
+					((IDocumentExtension4) document).stopRewriteSession(session);
+				}
+			}
+		}
+	}
+}
@@ -476,7 +476,7 @@ public abstract class CompletionMinibuffer extends ExecutingMinibuffer implement
 				searchResults.keySet().toArray(searchArray);
 				updateStatusLine(searchArray[getNextIndex()]);
 				if (showingCompletions) {
-					closeDialog();
+					// the dialog updates its table in place
 					showCompletions();
 				}
 			} else {
@@ -22,8 +22,6 @@ import org.eclipse.swt.custom.StyledText;
 import org.eclipse.swt.events.FocusEvent;
 import org.eclipse.swt.events.FocusListener;
 import org.eclipse.ui.IWorkbenchPage;
-import org.eclipse.ui.PlatformUI;
-import org.eclipse.ui.commands.ICommandService;
 import org.eclipse.ui.texteditor.ITextEditor;
 
 import com.mulgasoft.emacsplus.Beeper;
@@ -31,6 +29,7 @@ import com.mulgasoft.emacsplus.EmacsPlusActivator;
 import com.mulgasoft.emacsplus.EmacsPlusUtils;
 import com.mulgasoft.emacsplus.IEmacsPlusCommandDefinitionIds;
 import com.mulgasoft.emacsplus.RingBuffer;
+import com.mulgasoft.emacsplus.execute.CommandBus;
 import com.mulgasoft.emacsplus.execute.CommandHelp;
 import com.mulgasoft.emacsplus.execute.CommandSupport;
 import com.mulgasoft.emacsplus.execute.ICommandResult;
@@ -308,10 +307,8 @@ public class MetaXMinibuffer extends CompletionMinibuffer implements IExecutionL
 	 */
 	@Override
 	protected void addOtherListeners(IWorkbenchPage page, ISourceViewer viewer, StyledText widget) {
-		ICommandService commandService = (ICommandService) PlatformUI.getWorkbench().getAdapter(ICommandService.class);
-		if (commandService != null) {
-			commandService.addExecutionListener(this);
-		}
+		// any command may be invoked through M-x, so listen to all while it is active
+		CommandBus.getInstance().subscribe(this, CommandBus.Category.ALL);
 		super.addOtherListeners(page, viewer, widget);
 	}
 	
@@ -320,10 +317,7 @@ public class MetaXMinibuffer extends CompletionMinibuffer implements IExecutionL
 	 */
 	@Override
 	protected void removeOtherListeners(IWorkbenchPage page, ISourceViewer viewer, StyledText widget) {
-		ICommandService commandService = (ICommandService) PlatformUI.getWorkbench().getAdapter(ICommandService.class);
-		if (commandService != null) {
-			commandService.removeExecutionListener(this);
-		}
+		CommandBus.getInstance().unsubscribe(this);
 		super.removeOtherListeners(page, viewer, widget);
 	}
 
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.minibuffer;
+
+import org.eclipse.swt.events.VerifyEvent;
+
+/**
+ * Read a single query-replace response character.
+ *
+ * As in Emacs, DEL answers n (skip), and ESC answers q (exit), so that the executable
+ * always sees the response and can finish the replacement session cleanly.
+ *
+ * @author mfeber
+ */
+public class QueryReplaceMinibuffer extends TextMinibuffer {
+
+	public static final char SKIP = 'n';
+	public static final char EXIT = 'q';
+
+	/**
+	 * @param executable
+	 */
+	public QueryReplaceMinibuffer(IMinibufferExecutable executable) {
+		super(executable);
+	}
+
+	/**
+	 * Respond immediately to a character
+	 *
+	 * @see com.mulgasoft.emacsplus.minibuffer.WithMinibuffer#charEvent(org.eclipse.swt.events.VerifyEvent)
+	 */
+	protected void charEvent(VerifyEvent event) {
+		switch (event.character) {
+		case 0x1B: // ESC
+			respond(event, EXIT);
+			break;
+		case 0x08: // BS
+		case 0x7F: // DEL
+			respond(event, SKIP);
+			break;
+		default:
+			immediateCharEvent(event);
+		}
+	}
+
+	private void respond(VerifyEvent event, char response) {
+		event.doit = false;
+		addIt(String.valueOf(response));
+		executeCR(event);
+	}
+}
@@ -14,7 +14,7 @@ import org.eclipse.ui.texteditor.ITextEditor;
 import com.mulgasoft.emacsplus.EmacsPlusActivator;
 
 /**
- * Simple extension for use in counting matches
+ * Simple extension for use in counting matches (and other commands that read a regexp)
  * 
  * @author Mark Feber - initial API and implementation
  */
@@ -22,6 +22,8 @@ public class ReadRegexpMinibuffer extends ISearchMinibuffer {
 
 	private final static String prefix = EmacsPlusActivator.getResourceString("Count_Match_Prefix");	//$NON-NLS-1$
 	private IMinibufferExecutable executable;
+	private String minibufferPrefix = prefix;
+	private boolean matchRequired = true;
 	
 	/**
 	 * 
@@ -32,13 +34,23 @@ public class ReadRegexpMinibuffer extends ISearchMinibuffer {
 		this.executable = executable;
 	}
 
+	/**
+	 * @param executable
+	 * @param minibufferPrefix the prompt
+	 * @param matchRequired if false, return the regexp even if there is no match following point
+	 */
+	public ReadRegexpMinibuffer(IMinibufferExecutable executable, String minibufferPrefix, boolean matchRequired) {
+		this(executable);
+		this.minibufferPrefix = minibufferPrefix;
+		this.matchRequired = matchRequired;
+	}
 	
 	/**
 	 * @see com.mulgasoft.emacsplus.minibuffer.ISearchMinibuffer#getMinibufferPrefix()
 	 */
 	@Override
 	public String getMinibufferPrefix() {
-		return prefix;
+		return minibufferPrefix;
 	}
 
 
@@ -50,7 +62,7 @@ public class ReadRegexpMinibuffer extends ISearchMinibuffer {
 		if (wasHistoryUpdated()) {
 			findNext(getSearchString());
 		}
-		if (this.isFound()) {
+		if (this.isFound() || (!matchRequired && getSearchString().length() > 0)) {
 			result = getSearchString(); 
 		}
 		return executable.executeResult(editor,result);
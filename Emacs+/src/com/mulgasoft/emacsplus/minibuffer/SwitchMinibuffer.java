@@ -9,9 +9,6 @@
  */
 package com.mulgasoft.emacsplus.minibuffer;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedMap;
@@ -22,6 +19,8 @@ import org.eclipse.ui.IEditorReference;
 import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.texteditor.ITextEditor;
 
+import com.mulgasoft.emacsplus.BufferRegistry;
+import com.mulgasoft.emacsplus.BufferRegistry.BufferRef;
 import com.mulgasoft.emacsplus.EmacsPlusUtils;
 import com.mulgasoft.emacsplus.RingBuffer;
 import com.mulgasoft.emacsplus.execute.BufferDialog;
@@ -34,7 +33,7 @@ import com.mulgasoft.emacsplus.execute.BufferDialog;
  */
 public class SwitchMinibuffer extends CompletionMinibuffer {
 
-	private TreeMap<String, BufRef> bufferMap = null;
+	private TreeMap<String, BufferRef> bufferMap = null;
 	private IEditorReference defaultFile = null;
 	private String defaultFilePrefix = null;
 	private IWorkbenchPage page = null;
@@ -42,7 +41,7 @@ public class SwitchMinibuffer extends CompletionMinibuffer {
 	private String prefix = null;
 	private boolean withSelf = false;
 	
-	private TreeMap<String, BufRef> getBufferMap() {
+	private TreeMap<String, BufferRef> getBufferMap() {
 		return bufferMap;
 	}
 	
@@ -65,7 +64,10 @@ public class SwitchMinibuffer extends CompletionMinibuffer {
 	protected boolean initializeBuffer(ITextEditor editor, IWorkbenchPage page) {
 		this.page = page;
 		EmacsPlusUtils.clearMessage(editor);
-		List<BufRef> refs = setupRefs();
+		List<BufferRef> refs = setupRefs();
+		if (refs == null || refs.isEmpty()) {
+			return false;
+		}
 		defaultFile = refs.get(0).getRef();
 		defaultFilePrefix = prePre + defaultFile.getName() + prePost;
 		setHistoryRing(refs);
@@ -107,12 +109,12 @@ public class SwitchMinibuffer extends CompletionMinibuffer {
 		IEditorReference result = null;
 		if (bufferName != null && bufferName.length() > 0) {
 			// get the editor reference by name
-			BufRef buf = getBufferMap().get(bufferName);			
+			BufferRef buf = getBufferMap().get(bufferName);			
 			result = buf != null ? buf.getRef() : null;
 			if (result == null) {
 				try {
 					// Attempt auto-completion if name fetch failed
-					SortedMap<String, BufRef> viewTree = getBuffers(bufferName,false, false);
+					SortedMap<String, BufferRef> viewTree = getBuffers(bufferName,false, false);
 					if (viewTree.size() == 1) {
 						bufferName = viewTree.firstKey();
 						result = viewTree.get(bufferName).getRef();
@@ -157,70 +159,30 @@ public class SwitchMinibuffer extends CompletionMinibuffer {
 	}
 	
 	/**
-	 * Convert the platforms array of editor references in activation order into
-	 * structures used by the history and completion mechanisms
+	 * Get the page's editors, in activation order, from the buffer registry 
+	 * for use by the history and completion mechanisms
 	 * 
-	 * @return the List of converted references
+	 * @return the List of buffer references
 	 */
-	private List<BufRef> setupRefs() {
-		List<BufRef> buffers = new ArrayList<BufRef>();
+	private List<BufferRef> setupRefs() {
+		List<BufferRef> buffers = null;
 		if (bufferMap == null) {
-			IEditorReference[] tmp = EmacsPlusUtils.getSortedEditors(page); 
+			BufferRegistry registry = BufferRegistry.getRegistry(page); 
 			this.page = null;
-			if (tmp == null || tmp.length <= 1) {
+			if (registry == null || registry.size() <= 1) {
 				leave(true);
 			} else {
-				bufferMap = new TreeMap<String,BufRef>();
-				Set<BufRef> checkSet = new HashSet<BufRef>();
-				BufRef collider = null;				
-				for (int i=(withSelf ? 0 : 1); i< tmp.length; i++) {
-					BufRef rr = new BufRef(tmp[i].getName().trim(), tmp[i]);
-					if ((collider = bufferMap.get(rr.getName())) != null) {
-						checkSet.add(collider);
-						rr.setName(fixName(rr.getName(),rr.getRef()));
-					}
-					bufferMap.put(rr.getName(), rr);
-					buffers.add(rr);
-				}
-				// fix up the colliders
-				Iterator<BufRef> it = checkSet.iterator();
-				while (it.hasNext()) {
-					BufRef rr = it.next();
-					bufferMap.remove(rr.getName());
-					rr.setName(fixName(rr.getName(),rr.getRef()));
-					bufferMap.put(rr.getName(), rr);
+				buffers = registry.getBuffers();
+				// the index is already sorted, so the copy is linear
+				bufferMap = new TreeMap<String,BufferRef>(registry.getIndex());
+				if (!withSelf) {
+					bufferMap.remove(buffers.remove(0).getName());
 				}
 			}
 		}
 		return buffers;
 	}
 
-	/**
-	 * When there are multiple buffers with the same name, disambiguate 
-	 * by adding the title tool tip to the string we're going to use
-	 * 
-	 * @param name - the name that collides with others
-	 * @param ref - the editor reference object
-	 * @return a disambiguated name
-	 */
-	private String fixName(String name, IEditorReference ref) {
-		String result = name;
-		String tip = ref.getTitleToolTip();
-		if (tip != null) {
-			String subPart;
-			int sublen = tip.length() - (result.length() + 1);
-			// some plugins construct inconsiderate (empty) names
-			if (sublen < 0) {
-				subPart = ref.getTitle();
-			} else {
-				// remove the buffer name part of the tip
-				subPart = tip.substring(0, sublen);
-			}
-			result = result + '(' + subPart + ')';
-		}
-		return result;
-	}
-	
 	/**
 	 * @see com.mulgasoft.emacsplus.minibuffer.WithMinibuffer#showCompletions()
 	 */
@@ -256,10 +218,10 @@ public class SwitchMinibuffer extends CompletionMinibuffer {
 	 * @param subString
 	 * @return a SortedMap of buffers that match
 	 */
-	private SortedMap<String,BufRef> getBuffers(String subString, boolean insensitive, boolean regex) {
-		SortedMap<String,BufRef> result = null;
+	private SortedMap<String,BufferRef> getBuffers(String subString, boolean insensitive, boolean regex) {
+		SortedMap<String,BufferRef> result = null;
 		if (subString != null && subString.length() > 0) {
-			result = new TreeMap<String, BufRef>();
+			result = new TreeMap<String, BufferRef>();
 			Set<String> keySet = getBufferMap().keySet();
 			String searchStr = (regex ? subString : toRegex(subString));
 			boolean isRegex = (regex || isRegex(searchStr,subString));
@@ -269,7 +231,7 @@ public class SwitchMinibuffer extends CompletionMinibuffer {
 					// we have to build the map up one by one on regex search
 					for (String key : keySet) {
 						if (pat.matcher(key).matches()) {
-							BufRef c = getBufferMap().get(key);
+							BufferRef c = getBufferMap().get(key);
 							result.put(key, c);
 						}
 					}
@@ -278,10 +240,10 @@ public class SwitchMinibuffer extends CompletionMinibuffer {
 				}
 				if (result.size() == 0 && !insensitive) {
 					// try non-regex lookup
-					result = getSubBuffers(subString, keySet);					
+					result = getSubBuffers(subString);					
 				}
 			} else {
-				result = getSubBuffers(subString, keySet);
+				result = getSubBuffers(subString);
 			}
 			if ((result == null || result.size() == 0) && !insensitive) {
 				// try once with case insensitivity
@@ -294,36 +256,14 @@ public class SwitchMinibuffer extends CompletionMinibuffer {
 	}
 
 	/**
-	 * Walk the buffer list looking for matches with subString on initial characters
+	 * Get the buffers whose names start with subString
 	 * 
 	 * @param subString
-	 * @param result
-	 * @param keySet
-	 * @return subsection of map, each of whose entries start with subString
+	 * @return subsection of map, each of whose entries start with subString, or null
 	 */
-	private SortedMap<String, BufRef> getSubBuffers(String subString, Set<String> keySet) {
-		SortedMap<String, BufRef> result = null;
-		String fromKey = null;
-		String toKey = null;
-		for (String key : keySet) {
-			if (key.startsWith(subString)) {
-				if (fromKey == null) {
-					fromKey = key;
-				}
-			} else if (fromKey != null) {
-				toKey = key;
-				break;
-			}
-		}
-		// too bad we can't use 1.6
-		if (fromKey != null) {
-			if (toKey == null) {
-				result = getBufferMap().tailMap(fromKey);
-			} else {
-				result = getBufferMap().subMap(fromKey, toKey);
-			}
-		}
-		return result;
+	private SortedMap<String, BufferRef> getSubBuffers(String subString) {
+		SortedMap<String, BufferRef> result = getBufferMap().subMap(subString, subString + Character.MAX_VALUE);
+		return (result.isEmpty() ? null : result);
 	}
 
 	/**
@@ -336,27 +276,6 @@ public class SwitchMinibuffer extends CompletionMinibuffer {
 		leave(true);
 	}
 
-	private class BufRef {
-		private IEditorReference ref;
-		private String name;
-		BufRef(String name, IEditorReference ref) {
-			this.name = name;
-			this.ref = ref;
-		}
-		void setName(String name) {
-			this.name = name;
-		}
-		String getName() {
-			return name;
-		}
-		IEditorReference getRef() {
-			return ref;
-		}
-		public String toString() {
-			return getName();
-		}
-	}
-	
 	/**** Local RingBuffer ****/
 
 	/**
@@ -364,16 +283,16 @@ public class SwitchMinibuffer extends CompletionMinibuffer {
 	 * 
 	 * @see com.mulgasoft.emacsplus.minibuffer.HistoryMinibuffer#getHistoryRing()
 	 */
-	private RingBuffer<BufRef> ring = null;
+	private RingBuffer<BufferRef> ring = null;
 	
-	private void setHistoryRing(List<BufRef> refs) {
-		ring = new RingBuffer<BufRef>(refs);
+	private void setHistoryRing(List<BufferRef> refs) {
+		ring = new RingBuffer<BufferRef>(refs);
 		ring.setInfiniteLoop(false);
 	}
 	
 	@Override
 	@SuppressWarnings("unchecked")	
-	protected RingBuffer<BufRef> getHistoryRing() {
+	protected RingBuffer<BufferRef> getHistoryRing() {
 		return ring;
 	}
 	
@@ -19,6 +19,7 @@ import static com.mulgasoft.emacsplus.preferences.PrefVars.FRAME_DEF;
 import static com.mulgasoft.emacsplus.preferences.PrefVars.FRAME_INIT;
 import static com.mulgasoft.emacsplus.preferences.PrefVars.KILL_RING_MAX;
 import static com.mulgasoft.emacsplus.preferences.PrefVars.KILL_WHOLE_LINE;
+import static com.mulgasoft.emacsplus.preferences.PrefVars.LARGE_FILE_THRESHOLD;
 import static com.mulgasoft.emacsplus.preferences.PrefVars.REPLACE_TEXT_TO_KILLRING;
 import static com.mulgasoft.emacsplus.preferences.PrefVars.RING_BELL_FUNCTION;
 import static com.mulgasoft.emacsplus.preferences.PrefVars.SEARCH_EXIT_OPTION;
@@ -89,5 +90,6 @@ public class EmacsPlusPreferenceInitializer extends AbstractPreferenceInitialize
 		store.setDefault(RING_BELL_FUNCTION.getPref(), (String)RING_BELL_FUNCTION.getDefault());
 		store.setDefault(SEARCH_EXIT_OPTION.getPref(), (String)SEARCH_EXIT_OPTION.getDefault());
 		store.setDefault(SCROLL_MARGIN.getPref(), Integer.toString((Integer)SCROLL_MARGIN.getDefault()));		
+		store.setDefault(LARGE_FILE_THRESHOLD.getPref(), Integer.toString((Integer)LARGE_FILE_THRESHOLD.getDefault()));
 	}
 }
\ No newline at end of file
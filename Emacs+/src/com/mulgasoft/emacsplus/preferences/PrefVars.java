@@ -49,6 +49,7 @@ public enum PrefVars {
 	FRAME_INIT(Ptype.RECT, P_FRAME_INIT, PRect.DEFAULT),
 	KILL_RING_MAX(Ptype.INTEGER, P_RING_SIZE, 60),
 	KILL_WHOLE_LINE(Ptype.BOOLEAN, false),
+	LARGE_FILE_THRESHOLD(Ptype.P_INTEGER, 10000000),
 	REPLACE_TEXT_TO_KILLRING(Ptype.BOOLEAN, P_REPLACED_TOKILL, false),
 	RING_BELL_FUNCTION(Ptype.STRING, RingBellOptions.nil),
 	SCROLL_MARGIN(Ptype.P_INTEGER, PV_SCROLL_MARGIN, 0),
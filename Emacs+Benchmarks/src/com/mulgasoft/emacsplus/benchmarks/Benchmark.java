@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.benchmarks;
+
+import org.eclipse.jface.text.IDocument;
+
+import com.mulgasoft.emacsplus.execute.AllocationCounter;
+
+/**
+ * A single benchmark: setUp is called once per input document, and run is
+ * called repeatedly (untimed during warm up, then timed) and returns the number 
+ * of operations it performed.
+ * 
+ * @author mfeber
+ */
+public abstract class Benchmark {
+
+	/**
+	 * @return the name used in the report
+	 */
+	public abstract String getName();
+	
+	/**
+	 * Prepare to run against the document
+	 * 
+	 * @param document
+	 * @throws Exception
+	 */
+	public abstract void setUp(IDocument document) throws Exception;
+
+	/**
+	 * Run a batch of operations
+	 * 
+	 * @return the number of operations performed
+	 * @throws Exception
+	 */
+	public abstract long run() throws Exception;
+
+	/**
+	 * Release anything held by setUp
+	 */
+	public void tearDown() {
+	}
+	
+	/**
+	 * Warm up, then time run until the duration has elapsed
+	 *  
+	 * @param warmup warm up duration in milliseconds
+	 * @param duration measurement duration in milliseconds
+	 * @return the result
+	 * @throws Exception
+	 */
+	public Result measure(long warmup, long duration) throws Exception {
+		long end = System.currentTimeMillis() + warmup;
+		while (System.currentTimeMillis() < end) {
+			run();
+		}
+		long ops = 0;
+		long alloc = AllocationCounter.allocated();
+		long start = System.nanoTime();
+		long stop = start + duration * 1000000L; 
+		long now;
+		do {
+			ops += run();
+		} while ((now = System.nanoTime()) < stop);
+		alloc = (AllocationCounter.isSupported() ? AllocationCounter.allocated() - alloc : -1);
+		return new Result(ops, now - start, alloc);
+	}
+	
+	public static class Result {
+		private final long ops;
+		private final long nanos;
+		private final long bytes;
+		
+		Result(long ops, long nanos, long bytes) {
+			this.ops = ops;
+			this.nanos = nanos;
+			this.bytes = bytes;
+		}
+		
+		/** @return operations per second */
+		public double getThroughput() {
+			return ops / (nanos / 1e9); 
+		}
+		
+		/** @return bytes allocated per operation, or -1 if not supported */
+		public double getAllocation() {
+			return (bytes < 0 || ops == 0 ? -1 : bytes / (double)ops);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jface.text.IDocument;
+
+/**
+ * Run the Emacs+ document algorithm benchmarks headless: no workbench, display or 
+ * OSGi framework is required, only the Emacs+ classes and org.eclipse.text/jface.text.
+ * In the IDE, launch this class as a Java Application from this fragment project.
+ * 
+ * Arguments (all optional):
+ *   -lines 1000,10000,100000,1000000   document sizes in lines
+ *   -warmup 1000                       warm up time per benchmark in milliseconds
+ *   -time 3000                         measurement time per benchmark in milliseconds
+ *   name ...                           only run the named benchmarks
+ *   
+ * Prints throughput (ops/s) and allocation (bytes/op) for each benchmark and document size.
+ * 
+ * @author mfeber
+ */
+public class BenchmarkRunner {
+
+	private static final String HEAD_FORMAT = "%-24s %10s %14s %14s%n";	//$NON-NLS-1$
+	private static final String ROW_FORMAT = "%-24s %10d %14.1f %14.1f%n";	//$NON-NLS-1$
+	
+	static List<Benchmark> getBenchmarks() {
+		return new ArrayList<Benchmark>(Arrays.asList(
+				new TokenScannerBenchmark(true),
+				new TokenScannerBenchmark(false),
+				new MarkOffsetsBenchmark(),
+				new WhitespaceBenchmark(),
+				new SexpBoundaryBenchmark(true),
+				new SexpBoundaryBenchmark(false),
+				new LineTableBenchmark(LineTableBenchmark.SORT),
+				new LineTableBenchmark(LineTableBenchmark.REVERSE),
+				new LineTableBenchmark(LineTableBenchmark.UNIQUE),
+				new LineTableBenchmark(LineTableBenchmark.FILTER),
+				new CountMatchesBenchmark(true),
+				new CountMatchesBenchmark(false),
+				new ParagraphIndexBenchmark()
+				));
+	}
+	
+	public static void main(String[] args) throws Exception {
+		int[] lines = { 1000, 10000, 100000, 1000000 };
+		long warmup = 1000;
+		long time = 3000;
+		List<String> names = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if ("-lines".equals(args[i]) && i + 1 < args.length) {	//$NON-NLS-1$
+				String[] sizes = args[++i].split(",");	//$NON-NLS-1$
+				lines = new int[sizes.length];
+				for (int j = 0; j < sizes.length; j++) {
+					lines[j] = Integer.parseInt(sizes[j].trim());
+				}
+			} else if ("-warmup".equals(args[i]) && i + 1 < args.length) {	//$NON-NLS-1$
+				warmup = Long.parseLong(args[++i]);
+			} else if ("-time".equals(args[i]) && i + 1 < args.length) {	//$NON-NLS-1$
+				time = Long.parseLong(args[++i]);
+			} else {
+				names.add(args[i]);
+			}
+		}
+		System.out.printf(HEAD_FORMAT, "Benchmark", "Lines", "ops/s", "bytes/op");	//$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		for (Benchmark benchmark : getBenchmarks()) {
+			if (names.isEmpty() || names.contains(benchmark.getName())) {
+				for (int size : lines) {
+					// a fresh document for each run, so edits don't accumulate across benchmarks
+					IDocument document = DocumentGenerator.generate(size, size);
+					benchmark.setUp(document);
+					try {
+						Benchmark.Result result = benchmark.measure(warmup, time);
+						System.out.printf(ROW_FORMAT, benchmark.getName(), size, result.getThroughput(), result.getAllocation());
+					} finally {
+						benchmark.tearDown();
+					}
+				}
+			}
+		}
+	}
+}
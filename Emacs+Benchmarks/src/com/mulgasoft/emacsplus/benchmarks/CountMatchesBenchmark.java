@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.benchmarks;
+
+import org.eclipse.jface.text.IDocument;
+
+import com.mulgasoft.emacsplus.execute.MatchCounter;
+
+/**
+ * count-matches from the start of the document, through the MatchCounter used by
+ * CountMatchesHandler: a literal string (counted with LiteralSearch), or a regexp (counted
+ * with a single Matcher reading the document in place, as in large file mode).
+ * Each operation is one line of the document.
+ * 
+ * @author mfeber
+ */
+public class CountMatchesBenchmark extends Benchmark {
+
+	private static final String LITERAL = "value";			//$NON-NLS-1$
+	private static final String REGEXP = "\\bget\\w+\\(";	//$NON-NLS-1$
+
+	private final boolean literal;
+	private IDocument document;
+	// the matches found, so the counts are not optimized away
+	private long matches = 0;
+
+	/**
+	 * @param literal true to count a literal string, else a regexp
+	 */
+	public CountMatchesBenchmark(boolean literal) {
+		this.literal = literal;
+	}
+
+	@Override
+	public String getName() {
+		return (literal ? "count-matches-literal" : "count-matches-regexp");	//$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	@Override
+	public void setUp(IDocument document) {
+		this.document = document;
+	}
+
+	@Override
+	public long run() throws Exception {
+		matches += MatchCounter.count(document, 0, (literal ? LITERAL : REGEXP));
+		return document.getNumberOfLines();
+	}
+
+	@Override
+	public void tearDown() {
+		document = null;
+	}
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.benchmarks;
+
+import java.util.Random;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+
+/**
+ * Generate reproducible, source-like documents: nested bracketed blocks of identifier, 
+ * number and punctuation tokens, with variable indentation, trailing whitespace and blank lines
+ * 
+ * @author mfeber
+ */
+public class DocumentGenerator {
+
+	private static final String[] WORDS = { "int", "count", "value", "getValue", "setValue", "return", "if", "else",  //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$
+		"document", "offset", "length", "r\u00e9gion", "\u00fcber", "x", "i", "buffer_name", "line.length" };	//$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$
+	private static final String[] PUNCT = { " = ", ", ", " + ", "(", ")", "[0]", "; ", " " };	//$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$
+	
+	private DocumentGenerator() {}
+	
+	/**
+	 * @param lines the number of lines to generate
+	 * @param seed
+	 * @return the new document
+	 */
+	public static IDocument generate(int lines, long seed) {
+		Random random = new Random(seed);
+		StringBuilder text = new StringBuilder(lines * 40);
+		int depth = 0;
+		for (int i = 0; i < lines; i++) {
+			int kind = random.nextInt(20);
+			if (kind == 0) {
+				// blank line
+			} else if (kind == 1 && depth < 8) {
+				indent(text, depth++);
+				text.append(WORDS[random.nextInt(WORDS.length)]).append(" {");	//$NON-NLS-1$
+			} else if (kind == 2 && depth > 0) {
+				indent(text, --depth);
+				text.append('}');
+			} else {
+				indent(text, depth);
+				int tokens = 2 + random.nextInt(8);
+				for (int t = 0; t < tokens; t++) {
+					if (random.nextInt(6) == 0) {
+						text.append(random.nextInt(10000));
+					} else {
+						text.append(WORDS[random.nextInt(WORDS.length)]);
+					}
+					text.append(PUNCT[random.nextInt(PUNCT.length)]);
+				}
+				if (random.nextInt(8) == 0) {
+					// trailing whitespace
+					text.append(" \t ");	//$NON-NLS-1$
+				}
+			}
+			text.append('\n');
+		}
+		return new Document(text.toString());
+	}
+	
+	private static void indent(StringBuilder text, int depth) {
+		for (int d = 0; d < depth; d++) {
+			text.append('\t');
+		}
+	}
+}
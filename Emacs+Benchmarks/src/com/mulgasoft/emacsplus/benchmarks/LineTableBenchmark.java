@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.benchmarks;
+
+import java.util.regex.Pattern;
+
+import org.eclipse.jface.text.IDocument;
+
+import com.mulgasoft.emacsplus.execute.LineTable;
+
+/**
+ * The line table pipeline of the line commands over the whole document: read the lines,
+ * run the stage and join the result (but don't replace the document, so each run sees the 
+ * same input).  Each operation is one line of the document.
+ * 
+ * @author mfeber
+ */
+public class LineTableBenchmark extends Benchmark {
+
+	public static final int SORT = 0;
+	public static final int REVERSE = 1;
+	public static final int UNIQUE = 2;
+	public static final int FILTER = 3;
+
+	private static final String[] NAMES = { "sort-lines", "reverse-region", "delete-duplicate-lines", "keep-lines" };	//$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	private static final String DELIMITER = "\n";	//$NON-NLS-1$
+	private static final Pattern KEEP = Pattern.compile("getValue|setValue");	//$NON-NLS-1$
+
+	private final int stage;
+	private IDocument document;
+
+	/**
+	 * @param stage one of SORT, REVERSE, UNIQUE or FILTER
+	 */
+	public LineTableBenchmark(int stage) {
+		this.stage = stage;
+	}
+
+	@Override
+	public String getName() {
+		return NAMES[stage];
+	}
+
+	@Override
+	public void setUp(IDocument document) {
+		this.document = document;
+	}
+
+	@Override
+	public long run() throws Exception {
+		LineTable table = new LineTable(document, 0, document.getLength());
+		switch (stage) {
+			case SORT:
+				table.sort(LineTable.trimmedOrder(false, false));
+				break;
+			case REVERSE:
+				table.reverse();
+				break;
+			case UNIQUE:
+				table.unique(false);
+				break;
+			default:
+				table.filter(KEEP, true);
+		}
+		if (table.getText(DELIMITER).length() < 0) {
+			throw new IllegalStateException();
+		}
+		return table.getLineCount();
+	}
+
+	@Override
+	public void tearDown() {
+		document = null;
+	}
+}
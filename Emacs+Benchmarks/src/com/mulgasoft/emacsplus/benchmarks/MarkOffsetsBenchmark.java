@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.benchmarks;
+
+import java.util.Random;
+
+import org.eclipse.jface.text.IDocument;
+
+import com.mulgasoft.emacsplus.MarkOffsets;
+
+/**
+ * Mark maintenance under editing: with a full mark ring in the document, 
+ * each operation is an insertion or deletion at a random offset
+ * 
+ * @author mfeber
+ */
+public class MarkOffsetsBenchmark extends Benchmark {
+
+	private static final int MARKS = 16;
+	private static final int EDITS = 32;
+	private static final String INSERTION = "inserted";	//$NON-NLS-1$
+	private static final String EMPTY_STR = "";	//$NON-NLS-1$
+
+	private final Random random = new Random(17);
+	private IDocument document;
+	private MarkOffsets.Mark[] marks;
+	
+	@Override
+	public String getName() {
+		return "mark-update";	//$NON-NLS-1$
+	}
+
+	@Override
+	public void setUp(IDocument document) {
+		this.document = document;
+		marks = new MarkOffsets.Mark[MARKS];
+		for (int i = 0; i < MARKS; i++) {
+			marks[i] = MarkOffsets.addMark(document, random.nextInt(document.getLength()));
+		}
+	}
+
+	@Override
+	public long run() throws Exception {
+		for (int i = 0; i < EDITS; i++) {
+			int offset = random.nextInt(document.getLength() - INSERTION.length());
+			if ((i & 1) == 0) {
+				document.replace(offset, 0, INSERTION);
+			} else {
+				document.replace(offset, INSERTION.length(), EMPTY_STR);
+			}
+		}
+		return EDITS;
+	}
+
+	@Override
+	public void tearDown() {
+		for (MarkOffsets.Mark mark : marks) {
+			mark.release();
+		}
+		MarkOffsets.removeTable(document);
+		document = null;
+	}
+}
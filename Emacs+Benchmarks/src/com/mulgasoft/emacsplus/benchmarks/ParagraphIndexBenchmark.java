@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.benchmarks;
+
+import java.util.Random;
+
+import org.eclipse.jface.text.IDocument;
+
+import com.mulgasoft.emacsplus.execute.ParagraphIndex;
+
+/**
+ * Paragraph movement while typing: each run types (and deletes) a word at a random offset, 
+ * which the index must track, then looks up the next and previous paragraph separators from
+ * successive offsets.  Large documents are indexed in the background, which warm up allows for.
+ * Each operation is one lookup.
+ * 
+ * @author mfeber
+ */
+public class ParagraphIndexBenchmark extends Benchmark {
+
+	private static final int LOOKUPS = 64;
+	private static final int STRIDE = 4099;	// prime, so we visit offsets all over the document
+	private static final String INSERTION = "typed";	//$NON-NLS-1$
+	private static final String EMPTY_STR = "";	//$NON-NLS-1$
+
+	private final Random random = new Random(17);
+	private IDocument document;
+	private ParagraphIndex index;
+	private int offset = 0;
+
+	@Override
+	public String getName() {
+		return "paragraph-move";	//$NON-NLS-1$
+	}
+
+	@Override
+	public void setUp(IDocument document) {
+		this.document = document;
+		this.offset = 0;
+		index = ParagraphIndex.getIndex(document);
+	}
+
+	@Override
+	public long run() throws Exception {
+		int edit = random.nextInt(document.getLength() - INSERTION.length());
+		document.replace(edit, 0, INSERTION);
+		document.replace(edit, INSERTION.length(), EMPTY_STR);
+		int length = document.getLength();
+		for (int i = 0; i < LOOKUPS; i++) {
+			offset = (offset + STRIDE) % length;
+			if ((i & 1) == 0) {
+				index.next(offset);
+			} else {
+				index.previous(offset);
+			}
+		}
+		return LOOKUPS;
+	}
+
+	@Override
+	public void tearDown() {
+		document.removeDocumentListener(index);
+		index = null;
+		document = null;
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.benchmarks;
+
+import org.eclipse.jface.text.IDocument;
+
+import com.mulgasoft.emacsplus.execute.DocumentWords;
+
+/**
+ * The word boundary search of sexp movement: each step sets up the DocumentWords iterator that
+ * SexpHandler uses - in place, as in large file mode, or on a copy of the text - and finds the 
+ * boundary following successive offsets.  Each operation is one step.
+ * 
+ * @author mfeber
+ */
+public class SexpBoundaryBenchmark extends Benchmark {
+
+	private static final int STEPS = 16;
+	private static final int STRIDE = 4099;	// prime, so we visit offsets all over the document
+
+	private final boolean inPlace;
+	private IDocument document;
+	private int offset = 0;
+	// the boundaries found, so the searches are not optimized away
+	private long boundaries = 0;
+
+	/**
+	 * @param inPlace true to iterate over the document, false to copy its text
+	 */
+	public SexpBoundaryBenchmark(boolean inPlace) {
+		this.inPlace = inPlace;
+	}
+
+	@Override
+	public String getName() {
+		return (inPlace ? "sexp-boundary" : "sexp-boundary-copy");	//$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	@Override
+	public void setUp(IDocument document) {
+		this.document = document;
+		this.offset = 0;
+	}
+
+	@Override
+	public long run() throws Exception {
+		int length = document.getLength();
+		for (int i = 0; i < STEPS; i++) {
+			offset = (offset + STRIDE) % length;
+			// a new iterator per step, as each sexp command does
+			boundaries += DocumentWords.getWordIterator(document, inPlace).following(offset);
+		}
+		return STEPS;
+	}
+
+	@Override
+	public void tearDown() {
+		document = null;
+	}
+}
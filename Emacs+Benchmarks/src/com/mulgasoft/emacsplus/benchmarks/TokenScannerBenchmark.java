@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.benchmarks;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+
+import com.mulgasoft.emacsplus.execute.TokenScanner;
+
+/**
+ * Token movement as used by the case commands: scan a window of tokens forward or 
+ * backward from successive offsets in the document
+ * 
+ * @author mfeber
+ */
+public class TokenScannerBenchmark extends Benchmark {
+
+	private static final int TOKENS = 64;
+	private static final int STRIDE = 4099;	// prime, so we visit offsets all over the document
+	
+	private final boolean forward;
+	private IDocument document;
+	private int offset = 0;
+	
+	public TokenScannerBenchmark(boolean forward) {
+		this.forward = forward;
+	}
+	
+	@Override
+	public String getName() {
+		return (forward ? "token-forward" : "token-backward");	//$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	@Override
+	public void setUp(IDocument document) {
+		this.document = document;
+		this.offset = 0;
+	}
+
+	@Override
+	public long run() throws Exception {
+		int length = document.getLength();
+		offset = (offset + STRIDE) % length;
+		TokenScanner scanner = new TokenScanner(document);
+		int pos = offset;
+		long ops = 0;
+		for (int i = 0; i < TOKENS; i++) {
+			IRegion token = (forward ? scanner.nextToken(pos) : scanner.previousToken(pos));
+			++ops;
+			if (token == null) {
+				break;
+			}
+			pos = (forward ? token.getOffset() + token.getLength() : token.getOffset());
+		}
+		return ops;
+	}
+	
+	@Override
+	public void tearDown() {
+		document = null;
+	}
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2009-2021 Mark Feber, MulgaSoft
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.mulgasoft.emacsplus.benchmarks;
+
+import org.eclipse.jface.text.IDocument;
+
+import com.mulgasoft.emacsplus.execute.WhitespaceEngine;
+
+/**
+ * delete-trailing-whitespace over the whole document: read the document, scan it
+ * and build the edit list.  Each operation is one line of the document.
+ * 
+ * @author mfeber
+ */
+public class WhitespaceBenchmark extends Benchmark {
+
+	private IDocument document;
+	
+	@Override
+	public String getName() {
+		return "whitespace-trailing";	//$NON-NLS-1$
+	}
+
+	@Override
+	public void setUp(IDocument document) {
+		this.document = document;
+	}
+
+	@Override
+	public long run() throws Exception {
+		WhitespaceEngine engine = new WhitespaceEngine(document, 0, document.getLength()).deleteTrailing();
+		if (engine.size() < 0) {
+			throw new IllegalStateException();
+		}
+		return document.getNumberOfLines();
+	}
+
+	@Override
+	public void tearDown() {
+		document = null;
+	}
+}